@@ -0,0 +1,211 @@
+package com.smsrelay;
+
+import android.util.Log;
+
+import com.smsrelay.core.CircuitBreaker;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+// Tüm backend çağrıları için uygulama genelinde tek OkHttp istemcisi.
+// Bağlantı havuzu ve HTTP/2 sayesinde her 5 saniyelik sorguda yeni TLS
+// el sıkışması yapılmaz; gzip OkHttp tarafından şeffaf olarak eklenir.
+class BackendClient {
+    private static final String TAG = "BackendClient";
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private static volatile BackendClient instance;
+
+    private final OkHttpClient client;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    // 5 art arda hatada açılır; açık kalma 5sn'den 5dk'ya kadar, kapanınca 2dk'da tam yüke çıkar
+    private final CircuitBreaker breaker = new CircuitBreaker(5, 5000, 5 * 60 * 1000, 2 * 60 * 1000, new Random());
+
+    static BackendClient get() {
+        if (instance == null) {
+            synchronized (BackendClient.class) {
+                if (instance == null) {
+                    instance = new BackendClient();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private BackendClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(8);
+
+        client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(4, 5, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(20, TimeUnit.SECONDS)
+                .writeTimeout(10, TimeUnit.SECONDS)
+                .callTimeout(30, TimeUnit.SECONDS)
+                .pingInterval(30, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .addInterceptor(this::guard)
+                .addInterceptor(this::measure)
+                .build();
+    }
+
+    OkHttpClient getHttpClient() {
+        return client;
+    }
+
+    CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    // Senkron GET; çağıran thread'de çalışır, Response kapatılmalıdır
+    Response get(String url) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .get()
+                .build();
+        return client.newCall(request).execute();
+    }
+
+    // Senkron JSON POST; aynı anahtarla tekrarlanan istekleri backend tek sayar.
+    // Çağıran thread'de çalışır, Response kapatılmalıdır
+    Response post(String url, String json, String idempotencyKey) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Idempotency-Key", idempotencyKey)
+                .post(RequestBody.create(json, JSON))
+                .build();
+        return client.newCall(request).execute();
+    }
+
+    // Asenkron JSON POST; sonuç yalnızca loglanır
+    void postJson(String url, String json, String label) {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(json, JSON))
+                .build();
+
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                Log.d(TAG, label + ": " + response.code());
+                response.close();
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.e(TAG, label + " hatası: " + e.getMessage());
+            }
+        });
+    }
+
+    // Devre açıkken istek ağa çıkmadan hata döner; sonuç devre durumuna yansır
+    private Response guard(Interceptor.Chain chain) throws IOException {
+        if (!breaker.allowRequest(System.currentTimeMillis())) {
+            throw new IOException("Backend devresi açık");
+        }
+
+        // Sonuç her durumda bildirilir; beklenmeyen bir istisnada bildirilmezse
+        // yarı açık devrenin tek deneme hakkı kullanımda kalır ve devre hiç kapanmaz
+        boolean ok = false;
+        try {
+            Response response = chain.proceed(chain.request());
+            ok = response.code() < 500 && response.code() != 429;
+            return response;
+        } finally {
+            if (ok) {
+                breaker.onSuccess(System.currentTimeMillis());
+            } else {
+                breaker.onFailure(System.currentTimeMillis());
+            }
+        }
+    }
+
+    private Response measure(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        EndpointStats endpoint = stats.computeIfAbsent(request.url().encodedPath(), k -> new EndpointStats());
+        long start = System.nanoTime();
+
+        try {
+            Response response = chain.proceed(request);
+            endpoint.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), !response.isSuccessful());
+            return response;
+        } catch (IOException e) {
+            endpoint.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true);
+            throw e;
+        }
+    }
+
+    Map<String, EndpointStats> getStats() {
+        return new LinkedHashMap<>(stats);
+    }
+
+    String statsSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<String, EndpointStats> entry : stats.entrySet()) {
+            if (summary.length() > 0) {
+                summary.append("\n");
+            }
+            summary.append(entry.getKey()).append(" ").append(entry.getValue());
+        }
+        return summary.toString();
+    }
+
+    // Uç nokta başına gecikme istatistikleri
+    static class EndpointStats {
+        private long count;
+        private long errors;
+        private long totalMs;
+        private long maxMs;
+
+        synchronized void record(long elapsedMs, boolean failed) {
+            count++;
+            totalMs += elapsedMs;
+            if (elapsedMs > maxMs) {
+                maxMs = elapsedMs;
+            }
+            if (failed) {
+                errors++;
+            }
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized long getErrors() {
+            return errors;
+        }
+
+        synchronized long getAverageMs() {
+            return count == 0 ? 0 : totalMs / count;
+        }
+
+        synchronized long getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "n=" + count + " hata=" + errors + " ort=" + getAverageMs() + "ms max=" + maxMs + "ms";
+        }
+    }
+}
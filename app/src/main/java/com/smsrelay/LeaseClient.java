@@ -0,0 +1,161 @@
+package com.smsrelay;
+
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.smsrelay.core.PendingQuery;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+// Birden fazla relay telefonunun aynı backend kuyruğunu paylaşması için
+// kiralama (lease) protokolü. Relay sorguları süreli olarak kiralar (claim),
+// elindekilerin süresini uzatır (renew) ve göndermediklerini bırakır
+// (release). Süresi dolan kiralar (ör. çöken relay) backend'de havuza döner.
+// Her kiranın bitişi isteğin başladığı andan hesaplanarak yerelde de tutulur;
+// backend'deki bitiş bundan önce olamaz.
+class LeaseClient {
+    private static final String TAG = "LeaseClient";
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private final OkHttpClient client;
+    private final String relayId;
+    private final long leaseMs;
+    // Sorgu ID -> kiranın en erken bitebileceği an; gönderilene kadar tutulur
+    private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+
+    LeaseClient(OkHttpClient client, String relayId, long leaseMs) {
+        this.client = client;
+        this.relayId = relayId;
+        this.leaseMs = leaseMs;
+    }
+
+    String getRelayId() {
+        return relayId;
+    }
+
+    long getLeaseMs() {
+        return leaseMs;
+    }
+
+    // Gönderim için kiranın en az bir uzatma aralığı (süresinin üçte biri) daha geçerli
+    // olması gerekir; uzatma gecikirse sorgu başka relay'e geçmeden bırakılır
+    boolean canDispatch(String queryId, long now) {
+        Long expiresAt = expiries.get(queryId);
+        return expiresAt != null && expiresAt - now >= leaseMs / 3;
+    }
+
+    // Gönderilen ya da sonuçlanan sorgunun kirası artık gönderim için izlenmez
+    void forget(String queryId) {
+        expiries.remove(queryId);
+    }
+
+    // En fazla limit kadar sorguyu atomik olarak kiralar; her sorgu okunur okunmaz sink'e verilir
+    int claim(String backendUrl, int limit, PendingQuery.Sink sink) throws IOException {
+        long start = System.currentTimeMillis();
+        StringWriter body = new StringWriter();
+        JsonWriter writer = new JsonWriter(body);
+        writer.beginObject();
+        writer.name("relay_id").value(relayId);
+        writer.name("limit").value(limit);
+        writer.name("lease_ms").value(leaseMs);
+        writer.endObject();
+        writer.close();
+
+        try (Response response = post(backendUrl + "/api/queries/claim", body.toString())) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Kiralama cevabı: " + response.code());
+            }
+            return PendingQuery.readAll(response.body().charStream(), backendUrl, query -> {
+                expiries.put(query.queryId, start + leaseMs);
+                sink.accept(query);
+            }, reason -> Log.w(TAG, reason));
+        }
+    }
+
+    // Kiraları uzatır; artık bu relay'e ait olmayan (süresi dolmuş ve başkasına
+    // geçmiş) sorgu ID'lerini döner
+    List<String> renew(String backendUrl, Collection<String> queryIds) throws IOException {
+        long start = System.currentTimeMillis();
+        try (Response response = post(backendUrl + "/api/queries/lease/renew", idsBody(queryIds, true))) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Kira uzatma cevabı: " + response.code());
+            }
+
+            List<String> lost = new ArrayList<>();
+            JsonReader reader = new JsonReader(response.body().charStream());
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("lost".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        lost.add(reader.nextString());
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            for (String id : queryIds) {
+                expiries.computeIfPresent(id, (k, expiresAt) -> Math.max(expiresAt, start + leaseMs));
+            }
+            for (String id : lost) {
+                expiries.remove(id);
+            }
+            return lost;
+        }
+    }
+
+    // Gönderilmemiş sorgular havuza hemen geri verilir
+    void release(String backendUrl, Collection<String> queryIds) throws IOException {
+        for (String id : queryIds) {
+            expiries.remove(id);
+        }
+        try (Response response = post(backendUrl + "/api/queries/lease/release", idsBody(queryIds, false))) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Kira bırakma cevabı: " + response.code());
+            }
+        }
+    }
+
+    private String idsBody(Collection<String> queryIds, boolean withLease) throws IOException {
+        StringWriter body = new StringWriter();
+        JsonWriter writer = new JsonWriter(body);
+        writer.beginObject();
+        writer.name("relay_id").value(relayId);
+        if (withLease) {
+            writer.name("lease_ms").value(leaseMs);
+        }
+        writer.name("query_ids").beginArray();
+        for (String id : queryIds) {
+            writer.value(id);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+        return body.toString();
+    }
+
+    private Response post(String url, String json) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(json, JSON))
+                .build();
+        return client.newCall(request).execute();
+    }
+}
@@ -21,6 +21,19 @@ public class MainActivity extends AppCompatActivity {
     private EditText backendUrlEdit;
     private EditText targetNumberEdit;
     private EditText adminPhoneEdit;
+    private EditText maxConcurrentEdit;
+    private Switch pushModeSwitch;
+    private Switch claimModeSwitch;
+    private Switch adaptiveRateSwitch;
+    private EditText leaseSecondsEdit;
+    private EditText timeoutPercentileEdit;
+    private EditText resultCacheSizeEdit;
+    private EditText resultCacheTtlEdit;
+    private EditText heartbeatMinutesEdit;
+    private EditText alertWindowEdit;
+    private EditText smsFallbackEdit;
+    private EditText metricsPortEdit;
+    private Switch traceRepliesSwitch;
     private Switch activeSwitch;
     private Button saveButton;
 
@@ -36,6 +49,19 @@ public class MainActivity extends AppCompatActivity {
         backendUrlEdit = findViewById(R.id.backendUrlEdit);
         targetNumberEdit = findViewById(R.id.targetNumberEdit);
         adminPhoneEdit = findViewById(R.id.adminPhoneEdit);
+        maxConcurrentEdit = findViewById(R.id.maxConcurrentEdit);
+        pushModeSwitch = findViewById(R.id.pushModeSwitch);
+        claimModeSwitch = findViewById(R.id.claimModeSwitch);
+        adaptiveRateSwitch = findViewById(R.id.adaptiveRateSwitch);
+        leaseSecondsEdit = findViewById(R.id.leaseSecondsEdit);
+        timeoutPercentileEdit = findViewById(R.id.timeoutPercentileEdit);
+        resultCacheSizeEdit = findViewById(R.id.resultCacheSizeEdit);
+        resultCacheTtlEdit = findViewById(R.id.resultCacheTtlEdit);
+        heartbeatMinutesEdit = findViewById(R.id.heartbeatMinutesEdit);
+        alertWindowEdit = findViewById(R.id.alertWindowEdit);
+        smsFallbackEdit = findViewById(R.id.smsFallbackEdit);
+        metricsPortEdit = findViewById(R.id.metricsPortEdit);
+        traceRepliesSwitch = findViewById(R.id.traceRepliesSwitch);
         activeSwitch = findViewById(R.id.activeSwitch);
         saveButton = findViewById(R.id.saveButton);
 
@@ -60,11 +86,27 @@ public class MainActivity extends AppCompatActivity {
         String backendUrl = prefs.getString("backend_url", "");
         String targetNumber = prefs.getString("target_number", "5664");
         String adminPhone = prefs.getString("admin_phone", "");
+        boolean pushMode = "push".equals(prefs.getString("intake_mode", "poll"));
+        boolean claimMode = prefs.getBoolean("claim_mode", false);
+        boolean adaptiveRate = "adaptive".equals(prefs.getString("dispatch_scheduler", "fixed"));
         boolean isActive = prefs.getBoolean("is_active", false);
 
         backendUrlEdit.setText(backendUrl);
         targetNumberEdit.setText(targetNumber);
         adminPhoneEdit.setText(adminPhone);
+        maxConcurrentEdit.setText(String.valueOf(prefs.getInt("max_concurrent_queries", 1)));
+        pushModeSwitch.setChecked(pushMode);
+        claimModeSwitch.setChecked(claimMode);
+        adaptiveRateSwitch.setChecked(adaptiveRate);
+        leaseSecondsEdit.setText(String.valueOf(prefs.getInt("lease_seconds", 120)));
+        timeoutPercentileEdit.setText(String.valueOf(prefs.getInt("timeout_percentile", 99)));
+        resultCacheSizeEdit.setText(String.valueOf(prefs.getInt("result_cache_size", 500)));
+        resultCacheTtlEdit.setText(String.valueOf(prefs.getInt("result_cache_ttl_minutes", 360)));
+        heartbeatMinutesEdit.setText(String.valueOf(prefs.getInt("heartbeat_minutes", 5)));
+        alertWindowEdit.setText(String.valueOf(prefs.getInt("alert_window_minutes", 10)));
+        smsFallbackEdit.setText(String.valueOf(prefs.getInt("sms_fallback_minutes", 30)));
+        metricsPortEdit.setText(String.valueOf(prefs.getInt("metrics_port", 0)));
+        traceRepliesSwitch.setChecked(prefs.getBoolean("trace_replies", false));
         activeSwitch.setChecked(isActive);
 
         if (isActive) {
@@ -92,10 +134,37 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
+        Integer maxConcurrent = readNumber(maxConcurrentEdit, 1, 1, 10, "Eşzamanlı sorgu sayısı");
+        Integer leaseSeconds = readNumber(leaseSecondsEdit, 120, 30, 3600, "Kira süresi");
+        Integer timeoutPercentile = readNumber(timeoutPercentileEdit, 99, 50, 99, "Zaman aşımı yüzdeliği");
+        Integer resultCacheSize = readNumber(resultCacheSizeEdit, 500, 0, 10000, "Önbellek boyutu");
+        Integer resultCacheTtl = readNumber(resultCacheTtlEdit, 360, 0, 10080, "Önbellek süresi");
+        Integer heartbeatMinutes = readNumber(heartbeatMinutesEdit, 5, 1, 60, "Kalp atışı aralığı");
+        Integer alertWindow = readNumber(alertWindowEdit, 10, 1, 120, "Uyarı penceresi");
+        Integer smsFallback = readNumber(smsFallbackEdit, 30, 5, 1440, "SMS'e düşme süresi");
+        Integer metricsPort = readNumber(metricsPortEdit, 0, 0, 65535, "Metrik portu");
+        if (maxConcurrent == null || leaseSeconds == null || timeoutPercentile == null || resultCacheSize == null || resultCacheTtl == null
+                || heartbeatMinutes == null || alertWindow == null || smsFallback == null || metricsPort == null) {
+            return;
+        }
+
         prefs.edit()
                 .putString("backend_url", backendUrl)
                 .putString("target_number", targetNumber)
                 .putString("admin_phone", adminPhone)
+                .putInt("max_concurrent_queries", maxConcurrent)
+                .putString("intake_mode", pushModeSwitch.isChecked() ? "push" : "poll")
+                .putBoolean("claim_mode", claimModeSwitch.isChecked())
+                .putString("dispatch_scheduler", adaptiveRateSwitch.isChecked() ? "adaptive" : "fixed")
+                .putInt("lease_seconds", leaseSeconds)
+                .putInt("timeout_percentile", timeoutPercentile)
+                .putInt("result_cache_size", resultCacheSize)
+                .putInt("result_cache_ttl_minutes", resultCacheTtl)
+                .putInt("heartbeat_minutes", heartbeatMinutes)
+                .putInt("alert_window_minutes", alertWindow)
+                .putInt("sms_fallback_minutes", smsFallback)
+                .putInt("metrics_port", metricsPort)
+                .putBoolean("trace_replies", traceRepliesSwitch.isChecked())
                 .apply();
 
         Toast.makeText(this, "Ayarlar kaydedildi!", Toast.LENGTH_SHORT).show();
@@ -106,6 +175,23 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    // Boş alan varsayılanı alır; geçersiz ya da aralık dışı değerde uyarı gösterilir ve null döner
+    private Integer readNumber(EditText edit, int defaultValue, int min, int max, String name) {
+        String text = edit.getText().toString().trim();
+        int value;
+        try {
+            value = text.isEmpty() ? defaultValue : Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            value = min - 1;
+        }
+
+        if (value < min || value > max) {
+            Toast.makeText(this, name + " " + min + "-" + max + " arasında olmalı!", Toast.LENGTH_SHORT).show();
+            return null;
+        }
+        return value;
+    }
+
     private void checkPermissions() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECEIVE_SMS) != PackageManager.PERMISSION_GRANTED ||
                 ContextCompat.checkSelfPermission(this, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED ||
@@ -10,56 +10,84 @@ import android.content.SharedPreferences;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
 import android.telephony.SmsManager;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.text.SimpleDateFormat;
+import com.smsrelay.core.ActiveQuery;
+import com.smsrelay.core.AdaptiveDispatchScheduler;
+import com.smsrelay.core.CircuitBreaker;
+import com.smsrelay.core.FixedDispatchScheduler;
+import com.smsrelay.core.MetricsServer;
+import com.smsrelay.core.PendingQuery;
+import com.smsrelay.core.QueryDedupIndex;
+import com.smsrelay.core.QueryJournal;
+import com.smsrelay.core.QueryRegistry;
+import com.smsrelay.core.RelayEngine;
+import com.smsrelay.core.RelayMetrics;
+import com.smsrelay.core.ReplyTimingEstimator;
+import com.smsrelay.core.ResultCache;
+import com.smsrelay.core.SimSlot;
+
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.LinkedList;
-import java.util.Locale;
-import java.util.Queue;
-
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
-
-public class MessageCheckService extends Service {
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MessageCheckService extends Service implements RelayEngine.Host, RelayEngine.Listener {
     private static final String TAG = "MessageCheckService";
     private static final String CHANNEL_ID = "SMSRelayChannel";
     private static final int NOTIFICATION_ID = 1;
 
     private static final int CHECK_INTERVAL = 5000;
+    private static final int MAX_POLL_INTERVAL = 60000;
+    private static final int LONG_POLL_WAIT_SECONDS = 15;
+    private static final int STREAM_POLL_INTERVAL = 60000; // akış açıkken birikmiş sorgular için yavaş poll
+    private static final int MAX_QUEUED = 200; // poll başına en fazla bu kadar boş yer istenir
     private static final int WAIT_BETWEEN_QUERIES = 30000;
-    private static final int TIMEOUT = 120000;
-    private static final int HOURLY_STATUS_INTERVAL = 3600000; // 1 saat
 
     private Handler handler;
     private Runnable checkMessagesRunnable;
-    private Runnable hourlyStatusRunnable;
-    private boolean isRunning = false;
-    public static boolean isProcessingQuery = false;
-
-    public static String currentQueryId = null;
-    public static String currentUserPhone = null;
-    public static String currentVehicleId = null;
-    public static String currentBackendUrl = null;
-    public static boolean responseReceived = false;
-    public static String receivedResponse = null;
-
-    // İstatistikler
-    private static int successCount = 0;
-    private static int failCount = 0;
-
-    private Queue<PendingQuery> queryQueue = new LinkedList<>();
+    private Runnable heartbeatRunnable;
+    private volatile boolean isRunning = false;
+    // Başlangıç bildirimi servis örneği başına bir kez gider; tekrar eden
+    // onStartCommand çağrıları (ayar kaydı, START_STICKY) yeniden göndermez
+    private boolean startupAlerted = false;
+
+    // "push": WebSocket akışı, koparsa uyarlamalı long-poll; "poll": sabit aralıklı sorgulama
+    private boolean pushMode = false;
+    private QueryStream queryStream;
+    private final AtomicBoolean pollInFlight = new AtomicBoolean(false);
+    private final PendingQueryFetcher fetcher = new PendingQueryFetcher(BackendClient.get().getHttpClient());
+    private long pollDelay = CHECK_INTERVAL;
+
+    // Birden çok relay aynı kuyruğu paylaşıyorsa sorgular kiralanarak alınır
+    private boolean claimMode = false;
+    private LeaseClient leaseClient;
+    private Runnable leaseRenewRunnable;
+
+    // Sorgu akışı; SmsReceiver gelen parçaları çalışan servisin motoruna verir
+    private static volatile RelayEngine activeEngine;
+    private RelayEngine engine;
+
+    private SimPool simPool;
+
+    // Aşama gecikmeleri ve sayaçlar; süreç boyunca birikir
+    private final RelayMetrics metrics = RelayMetrics.get();
+    private MetricsServer metricsServer;
+    private Runnable metricsPushRunnable;
+    private String relayId;
+
+    private QueryJournal journal;
+    private ResultCache resultCache;
 
     @Override
     public void onCreate() {
@@ -68,119 +96,246 @@ public class MessageCheckService extends Service {
         createNotificationChannel();
         startForeground(NOTIFICATION_ID, createNotification("Başlatılıyor..."));
 
-        handler = new Handler(Looper.getMainLooper());
+        // Kuyruk işleme ve zamanlayıcılar ana thread yerine relay thread'inde çalışır
+        handler = new Handler(RelayWorker.looper());
 
         // Sorgu kontrol runnable
         checkMessagesRunnable = new Runnable() {
             @Override
             public void run() {
+                // Akış açıkken de yavaş poll sürer; sonraki tur checkForPendingQueries'te planlanır
                 if (isRunning) {
-                    if (!isProcessingQuery) {
-                        checkForPendingQueries();
-                    }
-                    handler.postDelayed(this, CHECK_INTERVAL);
+                    checkForPendingQueries();
                 }
             }
         };
 
-        // Saatlik durum bildirimi runnable
-        hourlyStatusRunnable = new Runnable() {
+        // Durum yönetici SMS'i yerine backend'e kalp atışı olarak gider
+        heartbeatRunnable = new Runnable() {
             @Override
             public void run() {
                 if (isRunning) {
-                    sendHourlyStatus();
-                    handler.postDelayed(this, HOURLY_STATUS_INTERVAL);
+                    sendHeartbeat();
+                    handler.postDelayed(this, heartbeatInterval());
                 }
             }
         };
-    }
 
-    @Override
-    public int onStartCommand(Intent intent, int flags, int startId) {
-        if (intent != null && "QUERY_COMPLETED".equals(intent.getAction())) {
-            Log.d(TAG, "SmsReceiver'dan sinyal alındı - işlem tamamlandı");
+        // Metrik özeti backend'e düzenli gönderilir
+        metricsPushRunnable = new Runnable() {
+            @Override
+            public void run() {
+                long interval = metricsPushInterval();
+                if (isRunning && interval > 0) {
+                    pushMetrics();
+                    handler.postDelayed(this, interval);
+                }
+            }
+        };
 
-            boolean success = intent.getBooleanExtra("success", false);
-            if (success) {
-                successCount++;
-            } else {
-                failCount++;
+        leaseRenewRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isRunning && claimMode) {
+                    renewLeases();
+                    handler.postDelayed(this, leaseClient.getLeaseMs() / 3);
+                }
             }
+        };
 
-            responseReceived = true;
-            receivedResponse = intent.getStringExtra("response");
+        journal = QueryJournal.get(getFilesDir());
+        journal.setErrorListener((operation, e) ->
+                Log.e(TAG, "Günlüğe yazılamadı (" + operation + "): " + e.getMessage()));
+        loadSettings();
+        // Önceki süreçten kalan bildirilmemiş sonuçlar gönderilmeye başlar
+        ResultOutbox outbox = ResultOutbox.get(getFilesDir());
+        metrics.setGauge("queued_queries", engine::queuedCount);
+        metrics.setGauge("inflight_queries", QueryRegistry.get()::size);
+        metrics.setGauge("outbox_pending", outbox::getPendingCount);
+        metrics.setGauge("queries_per_hour", () -> simPool.getQueriesPerHour(System.currentTimeMillis()));
+        activeEngine = engine;
+        handler.post(this::recoverFromJournal);
+    }
 
-            updateNotification("Son sorgu: " + (success ? "Başarılı" : "Başarısız") +
-                    " | Toplam: " + successCount + "/" + (successCount + failCount));
+    // Servis çalışmıyorsa null
+    static RelayEngine getEngine() {
+        return activeEngine;
+    }
 
-            clearCurrentQuery();
-            isProcessingQuery = false;
+    private void loadSettings() {
+        SharedPreferences prefs = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE);
+        pushMode = "push".equals(prefs.getString("intake_mode", "poll"));
 
-            handler.postDelayed(() -> processNextQuery(), WAIT_BETWEEN_QUERIES);
+        claimMode = prefs.getBoolean("claim_mode", false);
+        relayId = prefs.getString("relay_id", "");
+        if (relayId.isEmpty()) {
+            relayId = UUID.randomUUID().toString();
+            prefs.edit().putString("relay_id", relayId).apply();
+        }
+        leaseClient = new LeaseClient(BackendClient.get().getHttpClient(), relayId,
+                prefs.getInt("lease_seconds", 120) * 1000L);
+
+        // Her SIM kendi planlayıcısıyla kendi hız sınırına tabidir
+        boolean adaptive = "adaptive".equals(prefs.getString("dispatch_scheduler", "fixed"));
+        int minPerHour = prefs.getInt("min_queries_per_hour", 60);
+        int maxPerHour = prefs.getInt("max_queries_per_hour", 240);
+
+        // Zaman aşımları ölçülen cevap sürelerinin bu yüzdelik dilimi + payından türetilir
+        int percentile = Math.min(99, Math.max(50, prefs.getInt("timeout_percentile", 99)));
+        long margin = prefs.getLong("timeout_margin_ms", 2000);
+        ReplyTimingEstimator.get().configure(percentile / 100.0, margin);
+
+        // Aynı plaka bu süre içinde tekrar sorulursa 5664'e gitmeden cevaplanır
+        resultCache = ResultCache.get(getFilesDir());
+        resultCache.configure(prefs.getInt("result_cache_size", 500),
+                prefs.getInt("result_cache_ttl_minutes", 360) * 60 * 1000L);
+
+        simPool = new SimPool(this, QueryRegistry.get(), () -> adaptive
+                ? new AdaptiveDispatchScheduler(minPerHour, maxPerHour)
+                : new FixedDispatchScheduler(WAIT_BETWEEN_QUERIES));
+
+        engine = new RelayEngine(System::currentTimeMillis, this, RelayTimers.get(), simPool, QueryRegistry.get(),
+                QueryDedupIndex.get(), ReplyTimingEstimator.get(), journal, resultCache, metrics);
+        // Aynı anda 5664'te bekleyebilecek sorgu sayısı SIM başınadır; toplam sınır
+        // kullanılabilir SIM sayısıyla çarpılır. Yükte öncelik/son tarih yoksa
+        // varsayılanlar kullanılır. Varsayılan son tarih yoktur (0); ayarlanırsa bu
+        // süreyi kuyrukta aşan sorgular gönderilmeden başarısız bildirilir
+        engine.configure(prefs.getString("target_number", "5664"),
+                prefs.getInt("max_concurrent_queries", 1),
+                prefs.getInt("default_priority", 0),
+                prefs.getInt("default_deadline_minutes", 0) * 60 * 1000L);
+        engine.setListener(this);
+    }
 
-            return START_STICKY;
+    // Önceki süreçten kalan kuyruğu ve uçuştaki sorguları geri yükler.
+    // Gönderilmiş sorgular tekrar gönderilmez, yalnızca cevapları beklenir.
+    private void recoverFromJournal() {
+        long start = System.currentTimeMillis();
+        List<QueryJournal.Entry> entries;
+        try {
+            entries = journal.recover();
+        } catch (IOException e) {
+            Log.e(TAG, "Günlük okunamadı: " + e.getMessage());
+            return;
         }
 
+        // Kira modunda gönderilmemiş sorguların kirası başka relay'e geçmiş olabilir;
+        // tekrar gönderilmek yerine havuza bırakılır
+        releaseLeases(engine.recover(entries, !claimMode));
+
+        Log.d(TAG, "Günlük kurtarma: " + (System.currentTimeMillis() - start) + "ms | Kuyruk: " +
+                engine.queuedCount() + " | Uçuşta: " + QueryRegistry.get().size());
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "Service başlatıldı");
         isRunning = true;
 
+        SharedPreferences prefs = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE);
+
+        // Akış sorguları kiralamadan dağıttığı için kira modunda kullanılmaz
+        if (pushMode && !claimMode) {
+            startQueryStream(prefs.getString("backend_url", ""));
+        }
+
+        handler.removeCallbacks(leaseRenewRunnable);
+        if (claimMode) {
+            handler.postDelayed(leaseRenewRunnable, leaseClient.getLeaseMs() / 3);
+        }
+
         // Sorgu kontrolünü başlat
         handler.post(checkMessagesRunnable);
 
-        // Saatlik durum bildirimini başlat (ilk bildirim 1 saat sonra)
-        handler.postDelayed(hourlyStatusRunnable, HOURLY_STATUS_INTERVAL);
+        configureTelemetry(prefs);
+        handler.removeCallbacks(heartbeatRunnable);
+        handler.post(heartbeatRunnable);
 
-        // Başlangıç bildirimi gönder
-        sendStartupStatus();
+        if (metricsPushInterval() > 0) {
+            handler.removeCallbacks(metricsPushRunnable);
+            handler.postDelayed(metricsPushRunnable, metricsPushInterval());
+        }
+        startMetricsServer(prefs.getInt("metrics_port", 0));
+
+        // Başlangıç bildirimi
+        if (!startupAlerted) {
+            startupAlerted = true;
+            TelemetryChannel.get().alert(TelemetryChannel.STARTUP, "Durum: Calisiyor");
+        }
 
         return START_STICKY;
     }
 
-    private void sendStartupStatus() {
-        SharedPreferences prefs = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE);
+    // Uyarılar backend'e gider; SMS yalnızca backend ayarlanan süre boyunca
+    // ulaşılamazsa yöneticiye atılır
+    private void configureTelemetry(SharedPreferences prefs) {
         String adminPhone = prefs.getString("admin_phone", "");
+        TelemetryChannel.get().configure(prefs.getString("backend_url", ""), relayId,
+                prefs.getInt("alert_window_minutes", 10) * 60 * 1000L,
+                prefs.getInt("sms_fallback_minutes", 30) * 60 * 1000L,
+                adminPhone.isEmpty() ? null
+                        : message -> sendSmsToUser(SimPool.DEFAULT_SUBSCRIPTION, adminPhone, message));
+    }
 
-        if (!adminPhone.isEmpty()) {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-            String time = sdf.format(new Date());
+    private long heartbeatInterval() {
+        return getSharedPreferences("sms_relay_prefs", MODE_PRIVATE).getInt("heartbeat_minutes", 5) * 60 * 1000L;
+    }
 
-            String statusMsg = "SMS Relay AKTIF\n" +
-                    "Baslangic: " + time + "\n" +
-                    "Durum: Calisiyor";
+    private void sendHeartbeat() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("succeeded", succeeded());
+        fields.put("failed", failed());
+        fields.put("queued", engine.queuedCount());
+        fields.put("inflight", QueryRegistry.get().size());
+        fields.put("queries_per_hour", simPool.getQueriesPerHour(now));
+        fields.put("sims", simPool.getSlots().size());
+        fields.put("cache_hit_pct", Math.round(resultCache.getHitRate() * 100));
+        fields.put("backend", BackendClient.get().getBreaker().getState(now).toString());
+        fields.put("outbox_pending", ResultOutbox.get(getFilesDir()).getPendingCount());
+        TelemetryChannel.get().heartbeat(fields);
+
+        Log.d(TAG, "Backend gecikmeleri:\n" + BackendClient.get().statsSummary());
+        Log.d(TAG, "Cevap süreleri: " + ReplyTimingEstimator.get().summary());
+        Log.d(TAG, "Sonuç önbelleği: " + resultCache.summary());
+        Log.d(TAG, "Giden kutusu: " + ResultOutbox.get(getFilesDir()).summary());
+        Log.d(TAG, "Sorgu çekme: " + fetcher.summary());
+        Log.d(TAG, "Backend devresi: " + BackendClient.get().getBreaker().summary(now));
+        Log.d(TAG, "Metrikler:\n" + metrics.prometheus());
+    }
 
-            sendSmsToAdmin(adminPhone, statusMsg);
-            Log.d(TAG, "Başlangıç bildirimi gönderildi");
+    // Prometheus'un okuyabileceği uç; port 0 ise kapalı
+    private void startMetricsServer(int port) {
+        if (port <= 0 || metricsServer != null) {
+            return;
+        }
+        metricsServer = new MetricsServer(metrics, () -> metrics.toJson(relayId));
+        try {
+            metricsServer.start(port);
+            Log.d(TAG, "Metrik ucu açıldı: " + port);
+        } catch (IOException e) {
+            Log.e(TAG, "Metrik ucu açılamadı: " + e.getMessage());
+            metricsServer = null;
         }
     }
 
-    private void sendHourlyStatus() {
-        SharedPreferences prefs = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE);
-        String adminPhone = prefs.getString("admin_phone", "");
-
-        if (!adminPhone.isEmpty()) {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-            String time = sdf.format(new Date());
-
-            String statusMsg = "SMS Relay DURUM\n" +
-                    "Saat: " + time + "\n" +
-                    "Basarili: " + successCount + "\n" +
-                    "Basarisiz: " + failCount + "\n" +
-                    "Kuyruk: " + queryQueue.size() + "\n" +
-                    "Durum: Aktif";
+    private long metricsPushInterval() {
+        return getSharedPreferences("sms_relay_prefs", MODE_PRIVATE).getInt("metrics_push_minutes", 5) * 60 * 1000L;
+    }
 
-            sendSmsToAdmin(adminPhone, statusMsg);
-            Log.d(TAG, "Saatlik durum bildirimi gönderildi");
+    private void pushMetrics() {
+        String backendUrl = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE).getString("backend_url", "");
+        if (!backendUrl.isEmpty()) {
+            BackendClient.get().postJson(backendUrl + "/api/relay/metrics", metrics.toJson(relayId), "Metrik gönderimi");
         }
     }
 
-    private void sendSmsToAdmin(String phoneNumber, String message) {
-        try {
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-            Log.d(TAG, "Admin SMS gönderildi: " + phoneNumber);
-        } catch (Exception e) {
-            Log.e(TAG, "Admin SMS gönderilemedi: " + e.getMessage());
-        }
+    private long succeeded() {
+        return metrics.count(RelayMetrics.Counter.SUCCEEDED);
+    }
+
+    private long failed() {
+        return metrics.count(RelayMetrics.Counter.FAILED);
     }
 
     @Override
@@ -189,21 +344,38 @@ public class MessageCheckService extends Service {
         Log.d(TAG, "Service durduruluyor");
         isRunning = false;
         handler.removeCallbacksAndMessages(null);
+        if (activeEngine == engine) {
+            activeEngine = null;
+        }
+        engine.setListener(null);
 
-        // Kapanış bildirimi
-        SharedPreferences prefs = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE);
-        String adminPhone = prefs.getString("admin_phone", "");
-        if (!adminPhone.isEmpty()) {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-            String time = sdf.format(new Date());
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
+        }
+        metrics.setGauge("queued_queries", null);
+        metrics.setGauge("inflight_queries", null);
+        metrics.setGauge("outbox_pending", null);
+        metrics.setGauge("queries_per_hour", null);
+
+        if (queryStream != null) {
+            queryStream.close();
+            queryStream = null;
+        }
+        simPool.close();
 
-            String statusMsg = "SMS Relay KAPANDI\n" +
-                    "Saat: " + time + "\n" +
-                    "Toplam Basarili: " + successCount + "\n" +
-                    "Toplam Basarisiz: " + failCount;
+        // Uçuştaki sorgular günlükte kalır; yeni servis açılınca kaldığı yerden devam eder.
+        // Kira modunda kuyruktakiler diğer relay'ler için hemen havuza bırakılır
+        handler.post(() -> {
+            if (claimMode) {
+                releaseLeases(engine.drainQueue());
+            }
+            engine.abandonInFlight();
+        });
 
-            sendSmsToAdmin(adminPhone, statusMsg);
-        }
+        // Kapanış bildirimi
+        TelemetryChannel.get().alert(TelemetryChannel.SHUTDOWN,
+                "Toplam Basarili: " + succeeded() + ", Toplam Basarisiz: " + failed());
     }
 
     @Override
@@ -248,8 +420,83 @@ public class MessageCheckService extends Service {
         }
     }
 
+    private void startQueryStream(String backendUrl) {
+        if (backendUrl.isEmpty() || queryStream != null) {
+            return;
+        }
+
+        queryStream = new QueryStream(BackendClient.get().getHttpClient(), backendUrl, new QueryStream.Listener() {
+            @Override
+            public void onStreamOpen() {
+                // Akış yalnızca yeni sorguları iter; açılmadan önce birikenler hemen,
+                // sonrası yavaş poll ile çekilir
+                Log.d(TAG, "Push modu aktif, sorgulama yavaşlatıldı");
+                handler.post(() -> {
+                    handler.removeCallbacks(checkMessagesRunnable);
+                    handler.post(checkMessagesRunnable);
+                });
+            }
+
+            @Override
+            public void onQueries(String json) {
+                // Kuyruk sınırı akışta da geçerlidir; sığmayanlar backend'de bekler ve poll ile gelir
+                int free = MAX_QUEUED - engine.queuedCount();
+                int[] accepted = {0};
+                try {
+                    int count = PendingQuery.readAll(new StringReader(json), backendUrl, query -> {
+                        if (accepted[0] < free && engine.enqueue(query)) {
+                            accepted[0]++;
+                        }
+                    }, reason -> Log.w(TAG, reason));
+                    if (accepted[0] < count) {
+                        Log.d(TAG, "Akıştan " + (count - accepted[0]) + " sorgu alınmadı (kuyruk dolu ya da tekrar)");
+                    }
+                    onQueriesReceived(accepted[0]);
+                } catch (Exception e) {
+                    Log.e(TAG, "Akış mesajı okunamadı: " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void onStreamLost(long reconnectDelay) {
+                Log.d(TAG, "Akış koptu, long-poll'a dönülüyor. Yeniden bağlanma: " + reconnectDelay + "ms");
+                handler.post(() -> {
+                    if (!isRunning || queryStream == null) return;
+                    pollDelay = CHECK_INTERVAL;
+                    handler.removeCallbacks(checkMessagesRunnable);
+                    handler.post(checkMessagesRunnable);
+                    handler.postDelayed(() -> {
+                        if (isRunning && queryStream != null) queryStream.connect();
+                    }, reconnectDelay);
+                });
+            }
+        });
+        queryStream.connect();
+    }
+
+    private boolean isStreamOpen() {
+        return queryStream != null && queryStream.isOpen();
+    }
+
     private void checkForPendingQueries() {
+        // Devre açıkken thread açılmaz; jitter'lı süre dolunca tekrar denenir
+        CircuitBreaker breaker = BackendClient.get().getBreaker();
+        long retryDelay = breaker.retryDelay(System.currentTimeMillis());
+        if (retryDelay > 0) {
+            Log.d(TAG, "Backend devresi açık, " + retryDelay + "ms sonra denenecek");
+            handler.removeCallbacks(checkMessagesRunnable);
+            handler.postDelayed(checkMessagesRunnable, retryDelay);
+            return;
+        }
+
+        if (!pollInFlight.compareAndSet(false, true)) {
+            return;
+        }
+
+        boolean streaming = isStreamOpen();
         new Thread(() -> {
+            int found = 0;
+            long started = System.currentTimeMillis();
             try {
                 SharedPreferences prefs = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE);
                 String backendUrl = prefs.getString("backend_url", "");
@@ -258,140 +505,135 @@ public class MessageCheckService extends Service {
                     return;
                 }
 
-                OkHttpClient client = new OkHttpClient();
-                Request request = new Request.Builder()
-                        .url(backendUrl + "/api/queries/pending-5664")
-                        .get()
-                        .build();
-
-                Response response = client.newCall(request).execute();
-
-                if (response.isSuccessful()) {
-                    String responseBody = response.body().string();
-                    JSONArray queries = new JSONArray(responseBody);
-
-                    if (queries.length() > 0) {
-                        Log.d(TAG, "Backend'den " + queries.length() + " sorgu alındı");
-
-                        for (int i = 0; i < queries.length(); i++) {
-                            JSONObject query = queries.getJSONObject(i);
-                            String queryId = query.getString("id");
-                            String smsMessage = query.getString("sms_message");
-                            String userPhone = query.getString("user_phone");
-                            String vehicleId = query.optString("vehicle_id", smsMessage);
-
-                            boolean exists = false;
-                            for (PendingQuery pq : queryQueue) {
-                                if (pq.queryId.equals(queryId)) {
-                                    exists = true;
-                                    break;
-                                }
-                            }
-
-                            if (!exists && !queryId.equals(currentQueryId)) {
-                                queryQueue.offer(new PendingQuery(queryId, smsMessage, userPhone, vehicleId, backendUrl));
-                                Log.d(TAG, "Kuyruğa eklendi: " + queryId);
-                            }
-                        }
-
-                        if (!isProcessingQuery && !queryQueue.isEmpty()) {
-                            handler.post(() -> processNextQuery());
-                        }
-                    }
+                // Kuyrukta yer yoksa backend'e gidilmez. Backend yeni düzeldiyse
+                // boş yerin yalnızca bir kısmı istenir, yük kademeli artar
+                int free = MAX_QUEUED - engine.queuedCount();
+                if (free <= 0) {
+                    return;
                 }
-
-                response.close();
-
+                int limit = Math.max(1, (int) (free * breaker.rampFactor(System.currentTimeMillis())));
+
+                long requestStart = System.currentTimeMillis();
+                if (claimMode) {
+                    found = leaseClient.claim(backendUrl, limit, engine::enqueue);
+                } else {
+                    // Akış açıkken backend'i bekletmeye gerek yok; yeni sorgular akıştan gelir
+                    PendingQueryFetcher.Result result = fetcher.fetch(backendUrl, limit,
+                            pushMode && !streaming ? LONG_POLL_WAIT_SECONDS : 0, engine::enqueue);
+                    found = result.count;
+                }
+                // Long-poll'da backend'in bekletme süresi de dahildir
+                metrics.record(RelayMetrics.Stage.BACKEND_FETCH, System.currentTimeMillis() - requestStart);
+                onQueriesReceived(found);
             } catch (Exception e) {
+                metrics.increment(RelayMetrics.Counter.FETCH_ERRORS);
                 Log.e(TAG, "Sorgu kontrolünde hata: " + e.getMessage());
+            } finally {
+                long now = System.currentTimeMillis();
+                // Akış açıkken birikmiş sorgu kalmayınca yavaş poll'a geçilir
+                long next = !streaming ? nextPollDelay(found, now - started)
+                        : found > 0 ? CHECK_INTERVAL : STREAM_POLL_INTERVAL;
+                long delay = Math.max(next, breaker.retryDelay(now));
+                pollInFlight.set(false);
+                handler.post(() -> {
+                    if (isRunning) {
+                        handler.removeCallbacks(checkMessagesRunnable);
+                        handler.postDelayed(checkMessagesRunnable, delay);
+                    }
+                });
             }
         }).start();
     }
 
-    private void processNextQuery() {
-        if (queryQueue.isEmpty()) {
-            isProcessingQuery = false;
-            updateNotification("Bekleniyor... | Başarılı: " + successCount + " Başarısız: " + failCount);
-            Log.d(TAG, "Kuyruk boş");
+    // Relay thread'inde elde tutulan (kuyruk + uçuştaki) sorguların ve sonucu henüz
+    // backend'e ulaşmamış sorguların kiralarını uzatır; aksi halde sonuç giden kutusunda
+    // beklerken kira düşer ve sorgu başka relay'de tekrar gönderilir.
+    // Kirası kaybedilen ve henüz gönderilmemiş sorgular kuyruktan çıkarılır
+    private void renewLeases() {
+        Set<String> held = new LinkedHashSet<>(engine.heldQueryIds());
+        held.addAll(ResultOutbox.get(getFilesDir()).pendingQueryIds());
+        if (held.isEmpty()) {
             return;
         }
 
-        isProcessingQuery = true;
-        PendingQuery query = queryQueue.poll();
+        String backendUrl = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE).getString("backend_url", "");
+        new Thread(() -> {
+            try {
+                List<String> lost = leaseClient.renew(backendUrl, held);
+                if (!lost.isEmpty()) {
+                    handler.post(() -> dropLostLeases(lost));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Kira uzatılamadı: " + e.getMessage());
+            }
+        }).start();
+    }
 
-        if (query == null) {
-            isProcessingQuery = false;
-            return;
+    private void dropLostLeases(List<String> lost) {
+        for (String queryId : lost) {
+            if (engine.dropQueued(queryId)) {
+                Log.w(TAG, "Kira kaybedildi, kuyruktan çıkarıldı: " + queryId);
+            } else {
+                Log.w(TAG, "Kira kaybedildi ama sorgu zaten gönderildi: " + queryId);
+            }
         }
+    }
 
-        currentQueryId = query.queryId;
-        currentUserPhone = query.userPhone;
-        currentVehicleId = query.vehicleId;
-        currentBackendUrl = query.backendUrl;
-        responseReceived = false;
-        receivedResponse = null;
-
-        Log.d(TAG, "İşleniyor: " + query.queryId + " | Plaka: " + query.vehicleId);
-        updateNotification("Sorgulanıyor: " + query.vehicleId);
-
-        SharedPreferences prefs = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE);
-        String targetNumber = prefs.getString("target_number", "5664");
-        sendSms(targetNumber, query.smsMessage);
+    // Gönderilmemiş sorgular günlükten düşülür ve backend'de havuza bırakılır
+    private void releaseLeases(List<PendingQuery> queries) {
+        if (queries.isEmpty()) {
+            return;
+        }
 
-        Log.d(TAG, "5664'e gönderildi: " + query.smsMessage);
+        List<String> ids = new ArrayList<>();
+        for (PendingQuery query : queries) {
+            engine.forget(query.queryId);
+            ids.add(query.queryId);
+        }
 
-        handler.postDelayed(() -> {
-            if (!responseReceived && currentQueryId != null && currentQueryId.equals(query.queryId)) {
-                Log.e(TAG, "TIMEOUT! Cevap gelmedi: " + query.queryId);
-                handleTimeout();
+        String backendUrl = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE).getString("backend_url", "");
+        new Thread(() -> {
+            try {
+                leaseClient.release(backendUrl, ids);
+                Log.d(TAG, ids.size() + " sorgunun kirası bırakıldı");
+            } catch (Exception e) {
+                // Bırakılamayan kiralar süre sonunda kendiliğinden havuza döner
+                Log.e(TAG, "Kira bırakılamadı: " + e.getMessage());
             }
-        }, TIMEOUT);
+        }).start();
     }
 
-    private void handleTimeout() {
-        SharedPreferences prefs = getSharedPreferences("sms_relay_prefs", MODE_PRIVATE);
-        String adminPhone = prefs.getString("admin_phone", "");
-
-        String errorMessage = "Arac sorgulama sonucu alinamadi. Lutfen daha sonra tekrar deneyiniz.";
-        sendSmsToUser(currentUserPhone, errorMessage);
-
-        if (!adminPhone.isEmpty()) {
-            String adminMessage = "SORGU BASARISIZ!\nPlaka: " + currentVehicleId + "\nTelefon: " + currentUserPhone;
-            sendSmsToUser(adminPhone, adminMessage);
+    // Poll modunda sabit aralık. Push modunda akış yokken: sorgu geldiyse ya da
+    // backend isteği bekletip döndüyse hemen tekrar, boş ve hızlı dönüşlerde aralık ikiye katlanır
+    private long nextPollDelay(int found, long elapsed) {
+        if (!pushMode) {
+            return CHECK_INTERVAL;
         }
 
-        notifyBackendFailed();
-
-        failCount++;
-        updateNotification("HATA: " + currentVehicleId + " | Başarılı: " + successCount + " Başarısız: " + failCount);
-
-        clearCurrentQuery();
-        isProcessingQuery = false;
-
-        handler.postDelayed(() -> processNextQuery(), WAIT_BETWEEN_QUERIES);
-    }
+        if (found > 0 || elapsed >= LONG_POLL_WAIT_SECONDS * 1000L / 2) {
+            pollDelay = CHECK_INTERVAL;
+            return 0;
+        }
 
-    private void clearCurrentQuery() {
-        currentQueryId = null;
-        currentUserPhone = null;
-        currentVehicleId = null;
-        responseReceived = false;
-        receivedResponse = null;
+        long delay = pollDelay;
+        pollDelay = Math.min(pollDelay * 2, MAX_POLL_INTERVAL);
+        return delay;
     }
 
-    private void sendSms(String phoneNumber, String message) {
-        try {
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-            Log.d(TAG, "SMS gönderildi: " + phoneNumber + " -> " + message);
-        } catch (Exception e) {
-            Log.e(TAG, "SMS gönderilemedi: " + e.getMessage());
+    private void onQueriesReceived(int count) {
+        if (count == 0) {
+            return;
         }
+
+        Log.d(TAG, "Backend'den " + count + " sorgu alındı");
+
+        // Sorgular relay thread'inde kuyruğa alındıktan sonra işlenir
+        handler.post(engine::processNextQuery);
     }
 
-    private void sendSmsToUser(String phoneNumber, String message) {
+    private void sendSmsToUser(int subscriptionId, String phoneNumber, String message) {
         try {
-            SmsManager smsManager = SmsManager.getDefault();
+            SmsManager smsManager = SimPool.smsManagerFor(subscriptionId);
             ArrayList<String> parts = smsManager.divideMessage(message);
 
             if (parts.size() > 1) {
@@ -405,48 +647,122 @@ public class MessageCheckService extends Service {
         }
     }
 
-    private void notifyBackendFailed() {
-        new Thread(() -> {
-            try {
-                if (currentBackendUrl == null || currentQueryId == null) return;
-
-                JSONObject json = new JSONObject();
-                json.put("query_id", currentQueryId);
-                json.put("status", "failed");
-
-                OkHttpClient client = new OkHttpClient();
-                RequestBody body = RequestBody.create(
-                        json.toString(),
-                        MediaType.parse("application/json")
-                );
-
-                Request request = new Request.Builder()
-                        .url(currentBackendUrl + "/api/query/result-failed")
-                        .post(body)
-                        .build();
-
-                Response response = client.newCall(request).execute();
-                Log.d(TAG, "Backend'e başarısız bildirildi: " + response.code());
-                response.close();
-            } catch (Exception e) {
-                Log.e(TAG, "Backend bildirimi hatası: " + e.getMessage());
-            }
-        }).start();
+    // Sorgu başarısız olduysa uyarı verilir; tekrar edenler pencere başına tek uyarıda toplanır
+    private void notifyAdminOfFailure(ActiveQuery active) {
+        if (active.assembler.hasParts()) {
+            TelemetryChannel.get().alert(TelemetryChannel.QUERY_PARTIAL,
+                    "Plaka: " + active.query.vehicleId + ", Telefon: " + active.query.userPhone +
+                    ", Alinan: " + active.assembler.getReceivedCount() + "/" + active.assembler.getExpectedCount());
+        } else {
+            TelemetryChannel.get().alert(TelemetryChannel.QUERY_FAILED,
+                    "Plaka: " + active.query.vehicleId + ", Telefon: " + active.query.userPhone);
+        }
+    }
+
+    // RelayEngine.Host: akış relay thread'inde, SMS ve backend bildirimleri bu servis üzerinden
+
+    @Override
+    public void post(Runnable task) {
+        handler.post(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delay) {
+        handler.postDelayed(task, delay);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+
+    // Kira modunda kirası dolmak üzere olan sorgu gönderilmez; uzatma gecikmişse
+    // backend sorguyu başka relay'e vermiş olabilir
+    @Override
+    public boolean mayDispatch(PendingQuery query) {
+        return !claimMode || leaseClient.canDispatch(query.queryId, System.currentTimeMillis());
+    }
+
+    @Override
+    public void sendQuery(SimSlot slot, String targetNumber, String message) {
+        simPool.send(slot, targetNumber, message);
+        Log.d(TAG, "5664'e gönderildi: " + message);
+    }
+
+    @Override
+    public void sendSms(int subscriptionId, String phoneNumber, String message) {
+        sendSmsToUser(subscriptionId, phoneNumber, message);
+    }
+
+    // Sonuçlar giden kutusuna yazılır; backend'e toplu ve yeniden denemeli iletilir
+    @Override
+    public void reportSucceeded(PendingQuery query) {
+        leaseClient.forget(query.queryId);
+        ResultOutbox.get(getFilesDir()).received(query.backendUrl, query.queryId);
+    }
+
+    @Override
+    public void reportFailed(PendingQuery query, String status) {
+        leaseClient.forget(query.queryId);
+        ResultOutbox.get(getFilesDir()).failed(query.backendUrl, query.queryId, status);
     }
 
-    private static class PendingQuery {
-        String queryId;
-        String smsMessage;
-        String userPhone;
-        String vehicleId;
-        String backendUrl;
+    // RelayEngine.Listener: bildirim, sayaçlar ve günlük
 
-        PendingQuery(String queryId, String smsMessage, String userPhone, String vehicleId, String backendUrl) {
-            this.queryId = queryId;
-            this.smsMessage = smsMessage;
-            this.userPhone = userPhone;
-            this.vehicleId = vehicleId;
-            this.backendUrl = backendUrl;
+    @Override
+    public void onCoalesced(PendingQuery query, ActiveQuery into) {
+        Log.d(TAG, "Uçuştaki sorguya bağlandı: " + query.queryId + " -> " + into.getQueryId() +
+                " | Plaka: " + query.vehicleId);
+    }
+
+    @Override
+    public void onDispatched(ActiveQuery active, SimSlot slot) {
+        for (PendingQuery query : active.allQueries()) {
+            leaseClient.forget(query.queryId);
         }
+        Log.d(TAG, "İşleniyor: " + active.getQueryId() + " | Plaka: " + active.query.vehicleId + " | SIM: " + slot);
+        updateNotification("Sorgulanıyor: " + active.query.vehicleId + " | Bekleyen: " + QueryRegistry.get().size());
+    }
+
+    @Override
+    public void onAnsweredFromCache(PendingQuery query) {
+        Log.d(TAG, "Önbellekten cevaplandı: " + query.queryId + " | Plaka: " + query.vehicleId);
+        updateNotification("Önbellekten: " + query.vehicleId + " | Başarılı: " + succeeded() + " Başarısız: " + failed());
+    }
+
+    @Override
+    public void onShed(PendingQuery query) {
+        Log.w(TAG, "Son tarih geçti, gönderilmeden düşürüldü: " + query.queryId + " | Plaka: " + query.vehicleId);
+    }
+
+    @Override
+    public void onDispatchRefused(PendingQuery query) {
+        Log.w(TAG, "Kirası dolmak üzere, gönderilmeden bırakıldı: " + query.queryId);
+        releaseLeases(Collections.singletonList(query));
+    }
+
+    @Override
+    public void onUnmatchedPart(String part) {
+        Log.w(TAG, "Parça hiçbir sorguyla eşleşmedi, atlandı");
+    }
+
+    @Override
+    public void onIdle() {
+        updateNotification("Bekleniyor... | Başarılı: " + succeeded() + " Başarısız: " + failed());
+    }
+
+    @Override
+    public void onFinished(ActiveQuery active, boolean success) {
+        if (success) {
+            Log.d(TAG, "Sorgu BAŞARILI! Plaka: " + active.query.vehicleId);
+        } else {
+            Log.e(TAG, "TIMEOUT! Alınan: " + active.assembler.getReceivedCount() + "/" +
+                    active.assembler.getExpectedCount() + " | Plaka: " + active.query.vehicleId);
+            notifyAdminOfFailure(active);
+        }
+
+        updateNotification("Son sorgu: " + (success ? "Başarılı" : "Başarısız") +
+                " | Toplam: " + succeeded() + "/" + (succeeded() + failed()) +
+                " | " + simPool.getQueriesPerHour(System.currentTimeMillis()) + "/saat");
     }
-}
\ No newline at end of file
+}
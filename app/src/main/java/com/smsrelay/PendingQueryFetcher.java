@@ -0,0 +1,159 @@
+package com.smsrelay;
+
+import android.util.Log;
+
+import com.smsrelay.core.PendingQuery;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+// Bekleyen sorguları artımlı çeker: son görülen sorgudan sonrasını (since),
+// kuyruktaki boş yer kadar (limit) ister; liste değişmediyse backend
+// If-None-Match ile boş gövdeli 304 döner. Parametreleri tanımayan backend
+// tam listeyi döndürür, tekrarları QueryDedupIndex eler.
+// Tek poll thread'inden kullanılır.
+class PendingQueryFetcher {
+    private static final String TAG = "PendingQueryFetcher";
+
+    private final OkHttpClient client;
+
+    private String backendUrl = null;
+    private String cursor = null;
+    // ETag yalnızca aynı adrese (aynı imleç ve limit) yapılan istekte geçerlidir
+    private String etag = null;
+    private HttpUrl etagUrl = null;
+
+    // İstatistikler
+    private long polls = 0;
+    private long notModified = 0;
+    private long bytes = 0;
+    private long parseMs = 0;
+
+    static class Result {
+        final int count;
+        final boolean notModified;
+        final long bytes;
+        final long parseMs;
+
+        Result(int count, boolean notModified, long bytes, long parseMs) {
+            this.count = count;
+            this.notModified = notModified;
+            this.bytes = bytes;
+            this.parseMs = parseMs;
+        }
+    }
+
+    PendingQueryFetcher(OkHttpClient client) {
+        this.client = client;
+    }
+
+    Result fetch(String backendUrl, int limit, int waitSeconds, PendingQuery.Sink sink) throws IOException {
+        if (!backendUrl.equals(this.backendUrl)) {
+            reset();
+            this.backendUrl = backendUrl;
+        }
+
+        HttpUrl base = HttpUrl.parse(backendUrl + "/api/queries/pending-5664");
+        if (base == null) {
+            throw new IOException("Geçersiz backend adresi: " + backendUrl);
+        }
+
+        HttpUrl.Builder url = base.newBuilder().addQueryParameter("limit", String.valueOf(limit));
+        if (cursor != null) {
+            url.addQueryParameter("since", cursor);
+        }
+        if (waitSeconds > 0) {
+            // Destekleyen backend yeni sorgu gelene kadar isteği bekletir
+            url.addQueryParameter("wait", String.valueOf(waitSeconds));
+        }
+
+        HttpUrl requestUrl = url.build();
+        Request.Builder request = new Request.Builder().url(requestUrl).get();
+        if (etag != null && requestUrl.equals(etagUrl)) {
+            request.header("If-None-Match", etag);
+        }
+
+        polls++;
+        try (Response response = client.newCall(request.build()).execute()) {
+            if (response.code() == 304) {
+                notModified++;
+                return new Result(0, true, 0, 0);
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Backend cevabı: " + response.code());
+            }
+
+            ResponseBody body = response.body();
+            CountingInputStream counter = new CountingInputStream(body.byteStream());
+            long start = System.nanoTime();
+
+            // Her sorgu ayrıştırıldığı anda sink'e verilir; son ID bir sonraki isteğin imlecidir
+            String[] lastId = new String[1];
+            int count = PendingQuery.readAll(new InputStreamReader(counter, StandardCharsets.UTF_8), backendUrl, query -> {
+                lastId[0] = query.queryId;
+                sink.accept(query);
+            }, reason -> Log.w(TAG, reason));
+
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            bytes += counter.count;
+            parseMs += elapsed;
+
+            String nextCursor = response.header("X-Next-Cursor");
+            if (nextCursor != null && !nextCursor.isEmpty()) {
+                cursor = nextCursor;
+            } else if (lastId[0] != null) {
+                cursor = lastId[0];
+            }
+            etag = response.header("ETag");
+            etagUrl = requestUrl;
+
+            return new Result(count, false, counter.count, elapsed);
+        }
+    }
+
+    // Backend değiştiğinde ya da kuyruk baştan kurulduğunda tam liste çekilir
+    void reset() {
+        cursor = null;
+        etag = null;
+        etagUrl = null;
+    }
+
+    String getCursor() {
+        return cursor;
+    }
+
+    String summary() {
+        return "poll: " + polls + " | 304: " + notModified + " | bayt: " + bytes + " | ayrıştırma: " + parseMs + "ms";
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.smsrelay;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+// Backend'den yeni sorguları WebSocket üzerinden anlık alır.
+// Bağlantı koparsa dinleyiciye haber verir ve artan aralıklarla yeniden bağlanır;
+// bu sürede servis uzun sorgulamaya (long-poll) geri döner.
+class QueryStream {
+    private static final String TAG = "QueryStream";
+    private static final String STREAM_PATH = "/api/queries/stream";
+    private static final long MIN_RECONNECT_DELAY = 2000;
+    private static final long MAX_RECONNECT_DELAY = 300000; // 5 dakika
+
+    interface Listener {
+        void onStreamOpen();
+
+        // Mesaj gövdesi: tek bir sorgu nesnesi ya da sorgu dizisi (JSON)
+        void onQueries(String json);
+
+        void onStreamLost(long reconnectDelay);
+    }
+
+    private final OkHttpClient client;
+    private final String backendUrl;
+    private final Listener listener;
+
+    private WebSocket webSocket;
+    private boolean open = false;
+    private boolean closed = false;
+    private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+    QueryStream(OkHttpClient baseClient, String backendUrl, Listener listener) {
+        // Aynı bağlantı havuzunu kullanır, yalnızca okuma zaman aşımı kapatılır
+        this.client = baseClient.newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+        this.backendUrl = backendUrl;
+        this.listener = listener;
+    }
+
+    synchronized void connect() {
+        if (closed || webSocket != null) {
+            return;
+        }
+
+        Request request = new Request.Builder()
+                .url(backendUrl + STREAM_PATH)
+                .build();
+
+        webSocket = client.newWebSocket(request, new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket ws, Response response) {
+                synchronized (QueryStream.this) {
+                    if (ws != webSocket) return;
+                    open = true;
+                    reconnectDelay = MIN_RECONNECT_DELAY;
+                }
+                Log.d(TAG, "Akış bağlandı");
+                listener.onStreamOpen();
+            }
+
+            @Override
+            public void onMessage(WebSocket ws, String text) {
+                listener.onQueries(text);
+            }
+
+            @Override
+            public void onClosing(WebSocket ws, int code, String reason) {
+                ws.close(1000, null);
+            }
+
+            @Override
+            public void onClosed(WebSocket ws, int code, String reason) {
+                Log.d(TAG, "Akış kapandı: " + code);
+                lost(ws);
+            }
+
+            @Override
+            public void onFailure(WebSocket ws, Throwable t, Response response) {
+                Log.e(TAG, "Akış hatası: " + t.getMessage());
+                lost(ws);
+            }
+        });
+    }
+
+    private void lost(WebSocket ws) {
+        long delay;
+        synchronized (this) {
+            if (ws != webSocket) return;
+            webSocket = null;
+            open = false;
+            if (closed) return;
+
+            delay = reconnectDelay;
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        }
+        listener.onStreamLost(delay);
+    }
+
+    synchronized boolean isOpen() {
+        return open;
+    }
+
+    synchronized void close() {
+        closed = true;
+        open = false;
+        if (webSocket != null) {
+            webSocket.close(1000, "relay durdu");
+            webSocket = null;
+        }
+    }
+}
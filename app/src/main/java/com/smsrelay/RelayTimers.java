@@ -0,0 +1,64 @@
+package com.smsrelay;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.smsrelay.core.RelayEngine;
+import com.smsrelay.core.TimingWheel;
+
+// Relay thread'indeki tüm sorgu zaman aşımları tek bir TimingWheel'de tutulur.
+// Looper kuyruğunda sorgu başına mesaj yerine, çark boş değilken tek bir
+// tick mesajı bulunur. Yalnızca relay thread'inden çağrılmalıdır.
+class RelayTimers implements RelayEngine.Timers {
+    private static final long TICK_MS = 250;
+    private static final int WHEEL_SIZE = 512; // bir tur ≈ 2 dakika
+
+    private static final RelayTimers INSTANCE = new RelayTimers(RelayWorker.handler());
+
+    private final Handler handler;
+    private final TimingWheel wheel;
+    private final Runnable tickRunnable = this::tick;
+    private boolean ticking = false;
+
+    static RelayTimers get() {
+        return INSTANCE;
+    }
+
+    private RelayTimers(Handler handler) {
+        this.handler = handler;
+        this.wheel = new TimingWheel(TICK_MS, WHEEL_SIZE, KINDS, SystemClock.uptimeMillis());
+    }
+
+    @Override
+    public void schedule(String queryId, int kind, long delay, Runnable task) {
+        wheel.schedule(queryId, kind, SystemClock.uptimeMillis() + delay, task);
+        ensureTicking();
+    }
+
+    @Override
+    public void cancel(String queryId, int kind) {
+        wheel.cancel(queryId, kind);
+    }
+
+    @Override
+    public void cancelAll(String queryId) {
+        wheel.cancelAll(queryId);
+    }
+
+    int size() {
+        return wheel.size();
+    }
+
+    private void ensureTicking() {
+        if (!ticking && !wheel.isEmpty()) {
+            ticking = true;
+            handler.postAtTime(tickRunnable, wheel.nextTickAt());
+        }
+    }
+
+    private void tick() {
+        ticking = false;
+        wheel.advanceTo(SystemClock.uptimeMillis());
+        ensureTicking();
+    }
+}
@@ -0,0 +1,36 @@
+package com.smsrelay;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+// Tüm sorgu ve parça birleştirme durumunun sahibi olan tek arka plan thread'i.
+// SmsReceiver, MessageCheckService ve zamanlayıcılar bu looper üzerinde
+// çalışır; böylece durum kilitsiz ve sıralı işlenir, ana thread boş kalır.
+final class RelayWorker {
+    private static HandlerThread thread;
+    private static Handler handler;
+
+    private RelayWorker() {
+    }
+
+    static synchronized Looper looper() {
+        if (thread == null) {
+            thread = new HandlerThread("relay-worker", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+        }
+        return thread.getLooper();
+    }
+
+    static synchronized Handler handler() {
+        if (handler == null) {
+            handler = new Handler(looper());
+        }
+        return handler;
+    }
+
+    static boolean isCurrentThread() {
+        return Looper.myLooper() == looper();
+    }
+}
@@ -0,0 +1,502 @@
+package com.smsrelay;
+
+import android.util.Log;
+
+import com.google.gson.stream.JsonWriter;
+import com.smsrelay.core.RelayMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+
+// Sorgu sonuçlarının backend'e bildirimi için kalıcı giden kutusu. Olaylar
+// çağıran thread'de eklemeli günlüğe yazılıp diske indirildikten sonra kabul
+// edilir, sonra kısa bir pencerede biriktirilip toplu uca gönderilir; toplu
+// uç yoksa olay başına eski uçlara düşer. Hata durumunda jitter'lı üstel
+// geri çekilmeyle yeniden denenir (en az bir kez teslim); her olayın
+// idempotency anahtarı vardır, tekrarları backend eler. Gönderim tek
+// "result-outbox" thread'inde yapılır. Yazma hatasından sonra dosyaya ekleme
+// yapılmaz; sıradaki kayıttan önce dosya bellekteki olaylardan yeniden yazılır.
+class ResultOutbox {
+    private static final String TAG = "ResultOutbox";
+
+    static final String RECEIVED = "received";
+    static final String FAILED = "failed";
+
+    private static final long BATCH_WINDOW_MS = 2000;
+    private static final int MAX_BATCH = 50;
+    private static final long BASE_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private static final int MAGIC = 0x53524F42; // "SROB"
+    private static final int VERSION = 1;
+    private static final byte ADD = 1;
+    private static final byte DONE = 2;
+    private static final int COMPACT_THRESHOLD = 500;
+
+    static class Event {
+        final String key;
+        final String backendUrl;
+        final String queryId;
+        final String result;
+        final String status;
+        final long createdAt;
+
+        Event(String key, String backendUrl, String queryId, String result, String status, long createdAt) {
+            this.key = key;
+            this.backendUrl = backendUrl;
+            this.queryId = queryId;
+            this.result = result;
+            this.status = status;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static ResultOutbox instance;
+
+    private final File file;
+    private final long batchWindowMs;
+    private final long baseBackoffMs;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "result-outbox");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Random random = new Random();
+
+    // Kilitle korunur; olay ekleyen thread ile gönderen thread paylaşır
+    private final Map<String, Event> pending = new LinkedHashMap<>();
+    private FileOutputStream fileOut;
+    private BufferedOutputStream out;
+    // Kayıtlar önce burada tamamlanır, dosyaya bütün olarak eklenir
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private int deadRecords = 0;
+    // Son yazma başarısız oldu; dosya bellekteki olaylardan yeniden yazılmadan eklenmez
+    private boolean damaged = false;
+
+    // Yalnızca executor thread'inden erişilir
+    private final Set<String> batchUnsupported = new HashSet<>();
+    private boolean flushScheduled = false;
+    private int failures = 0;
+
+    private volatile int pendingCount = 0;
+    private volatile long delivered = 0;
+    private volatile long requests = 0;
+
+    static synchronized ResultOutbox get(File filesDir) {
+        if (instance == null) {
+            instance = new ResultOutbox(new File(filesDir, "result_outbox.bin"));
+            instance.load();
+        }
+        return instance;
+    }
+
+    ResultOutbox(File file) {
+        this(file, BATCH_WINDOW_MS, BASE_BACKOFF_MS);
+    }
+
+    // Testler kısa pencere ve geri çekilme süresiyle çalıştırır
+    ResultOutbox(File file, long batchWindowMs, long baseBackoffMs) {
+        this.file = file;
+        this.batchWindowMs = batchWindowMs;
+        this.baseBackoffMs = baseBackoffMs;
+    }
+
+    // Olay diske indikten sonra döner; çağıran sorguyu ancak bundan sonra
+    // tamamlanmış sayabilir
+    void received(String backendUrl, String queryId) {
+        add(backendUrl, queryId, RECEIVED, null);
+    }
+
+    void failed(String backendUrl, String queryId, String status) {
+        add(backendUrl, queryId, FAILED, status);
+    }
+
+    int getPendingCount() {
+        return pendingCount;
+    }
+
+    // Sonucu henüz teslim edilmemiş sorgular
+    synchronized Set<String> pendingQueryIds() {
+        Set<String> ids = new HashSet<>();
+        for (Event event : pending.values()) {
+            ids.add(event.queryId);
+        }
+        return ids;
+    }
+
+    String summary() {
+        return "bekleyen: " + pendingCount + " | teslim: " + delivered + " | istek: " + requests;
+    }
+
+    private void add(String backendUrl, String queryId, String result, String status) {
+        if (backendUrl == null || backendUrl.isEmpty() || queryId == null) {
+            return;
+        }
+        // Anahtar sorgudan türetilir: günlüğe "tamamlandı" yazılmadan çökülürse sorgu
+        // yeniden işlenir ve aynı sonuç aynı anahtarla gelir, backend tekrarı eler
+        String key = UUID.nameUUIDFromBytes((queryId + "/" + result).getBytes(StandardCharsets.UTF_8)).toString();
+        Event event = new Event(key, backendUrl, queryId, result, status, System.currentTimeMillis());
+        synchronized (this) {
+            pending.put(event.key, event);
+            pendingCount = pending.size();
+            try {
+                recordBytes.reset();
+                writeAdd(record, event);
+                appendRecords();
+                sync();
+            } catch (IOException e) {
+                onWriteFailed(e);
+            }
+        }
+        executor.execute(() -> scheduleFlush(batchWindowMs));
+    }
+
+    private void scheduleFlush(long delay) {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        flushScheduled = false;
+
+        // Backend URL'ine göre grupla; her grup en fazla MAX_BATCH olay
+        Map<String, List<Event>> byBackend = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Event event : pending.values()) {
+                List<Event> group = byBackend.get(event.backendUrl);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    byBackend.put(event.backendUrl, group);
+                }
+                if (group.size() < MAX_BATCH) {
+                    group.add(event);
+                }
+            }
+        }
+        if (byBackend.isEmpty()) {
+            return;
+        }
+
+        boolean ok = true;
+        for (Map.Entry<String, List<Event>> entry : byBackend.entrySet()) {
+            ok &= deliver(entry.getKey(), entry.getValue());
+        }
+
+        if (!ok) {
+            failures++;
+            long delay = retryDelay(failures);
+            Log.w(TAG, "Bildirim başarısız, " + delay + "ms sonra yeniden denenecek (" + pendingCount + " olay)");
+            scheduleFlush(delay);
+        } else {
+            failures = 0;
+            if (pendingCount > 0) {
+                scheduleFlush(0);
+            }
+        }
+    }
+
+    // Art arda failures kez başarısız olduktan sonraki bekleme: taban süre
+    // artı üstel büyüyen tavana kadar rastgele
+    long retryDelay(int failures) {
+        long cap = Math.min(MAX_BACKOFF_MS, baseBackoffMs << Math.min(failures - 1, 20));
+        return baseBackoffMs + (long) (random.nextDouble() * cap);
+    }
+
+    // Teslim edilen ya da kalıcı olarak reddedilen olaylar çıkarılır; hepsi çıktıysa true
+    private boolean deliver(String backendUrl, List<Event> events) {
+        if (!batchUnsupported.contains(backendUrl)) {
+            StringBuilder ids = new StringBuilder();
+            for (Event event : events) ids.append(event.key);
+            String batchKey = UUID.nameUUIDFromBytes(ids.toString().getBytes(StandardCharsets.UTF_8)).toString();
+
+            long start = System.currentTimeMillis();
+            try (Response response = BackendClient.get().post(backendUrl + "/api/query/results/batch",
+                    batchJson(events), batchKey)) {
+                requests++;
+                RelayMetrics.get().record(RelayMetrics.Stage.REPORT, System.currentTimeMillis() - start);
+                int code = response.code();
+                if (response.isSuccessful()) {
+                    complete(events);
+                    Log.d(TAG, events.size() + " sonuç toplu bildirildi");
+                    return true;
+                }
+                if (code == 404 || code == 405 || code == 501) {
+                    // Toplu uç yok: bu backend için olay başına bildirime geç
+                    batchUnsupported.add(backendUrl);
+                    Log.w(TAG, "Toplu uç desteklenmiyor (" + code + "), tek tek gönderilecek");
+                } else if (isPermanent(code)) {
+                    // Toplu istekte tek bir bozuk olay hepsini reddettirir; hangisi olduğu
+                    // olay başına gönderimde ortaya çıkar, diğerleri teslim edilir
+                    Log.w(TAG, "Toplu bildirim reddedildi (" + code + "), bu grup tek tek gönderilecek");
+                } else {
+                    RelayMetrics.get().increment(RelayMetrics.Counter.REPORT_ERRORS);
+                    return false;
+                }
+            } catch (IOException e) {
+                RelayMetrics.get().increment(RelayMetrics.Counter.REPORT_ERRORS);
+                Log.e(TAG, "Toplu bildirim hatası: " + e.getMessage());
+                return false;
+            }
+        }
+
+        for (Event event : events) {
+            String path = RECEIVED.equals(event.result) ? "/api/query/result-received" : "/api/query/result-failed";
+            long start = System.currentTimeMillis();
+            try (Response response = BackendClient.get().post(backendUrl + path, eventJson(event), event.key)) {
+                requests++;
+                RelayMetrics.get().record(RelayMetrics.Stage.REPORT, System.currentTimeMillis() - start);
+                int code = response.code();
+                if (response.isSuccessful() || isPermanent(code)) {
+                    // 4xx kalıcıdır; tekrar denemek sonucu değiştirmez
+                    if (!response.isSuccessful()) {
+                        Log.w(TAG, "Sonuç reddedildi (" + code + "): " + event.queryId);
+                    }
+                    complete(Collections.singletonList(event));
+                } else {
+                    RelayMetrics.get().increment(RelayMetrics.Counter.REPORT_ERRORS);
+                    return false;
+                }
+            } catch (IOException e) {
+                RelayMetrics.get().increment(RelayMetrics.Counter.REPORT_ERRORS);
+                Log.e(TAG, "Bildirim hatası: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPermanent(int code) {
+        return code >= 400 && code < 500 && code != 408 && code != 429;
+    }
+
+    // Teslim edilen olaylar için DONE kaydı eklenir; ölü kayıtlar birikince dosya sıkıştırılır
+    private synchronized void complete(List<Event> events) {
+        recordBytes.reset();
+        try {
+            for (Event event : events) {
+                if (pending.remove(event.key) != null) {
+                    delivered++;
+                    record.writeByte(DONE);
+                    record.writeUTF(event.key);
+                    deadRecords += 2;
+                }
+            }
+            appendRecords();
+            sync();
+        } catch (IOException e) {
+            onWriteFailed(e);
+        }
+        pendingCount = pending.size();
+
+        if (deadRecords >= COMPACT_THRESHOLD) {
+            try {
+                compact();
+            } catch (IOException e) {
+                Log.e(TAG, "Giden kutusu sıkıştırılamadı: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String batchJson(List<Event> events) throws IOException {
+        StringWriter buffer = new StringWriter();
+        JsonWriter writer = new JsonWriter(buffer);
+        writer.beginObject();
+        writer.name("results").beginArray();
+        for (Event event : events) {
+            writer.beginObject();
+            writer.name("idempotency_key").value(event.key);
+            writer.name("query_id").value(event.queryId);
+            writer.name("result").value(event.result);
+            if (event.status != null) writer.name("status").value(event.status);
+            writer.name("created_at").value(event.createdAt);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+        return buffer.toString();
+    }
+
+    // Eski uçların beklediği gövde + idempotency anahtarı
+    private static String eventJson(Event event) throws IOException {
+        StringWriter buffer = new StringWriter();
+        JsonWriter writer = new JsonWriter(buffer);
+        writer.beginObject();
+        writer.name("query_id").value(event.queryId);
+        if (event.status != null) writer.name("status").value(event.status);
+        writer.name("idempotency_key").value(event.key);
+        writer.endObject();
+        writer.close();
+        return buffer.toString();
+    }
+
+    // Günlüğü okuyup bekleyen olayları kurar, sonra dosyayı sıkıştırır
+    synchronized void load() {
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() <= VERSION) {
+                    readRecords(in);
+                }
+            } catch (EOFException e) {
+                // Yarım kalmış son kayıt: okunabilen kısım geçerlidir
+            } catch (IOException e) {
+                Log.e(TAG, "Giden kutusu okunamadı: " + e.getMessage());
+            }
+        }
+
+        try {
+            compact();
+        } catch (IOException e) {
+            Log.e(TAG, "Giden kutusu sıkıştırılamadı: " + e.getMessage());
+        }
+
+        pendingCount = pending.size();
+        if (!pending.isEmpty()) {
+            Log.d(TAG, pending.size() + " bildirilmemiş sonuç yüklendi");
+            executor.execute(() -> scheduleFlush(0));
+        }
+    }
+
+    private void readRecords(DataInputStream in) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            String key = in.readUTF();
+            if (type == ADD) {
+                String backendUrl = in.readUTF();
+                String queryId = in.readUTF();
+                String result = in.readUTF();
+                String status = in.readUTF();
+                long createdAt = in.readLong();
+                pending.put(key, new Event(key, backendUrl, queryId, result, status.isEmpty() ? null : status, createdAt));
+            } else if (type == DONE) {
+                pending.remove(key);
+            } else {
+                throw new EOFException("Bilinmeyen kayıt türü: " + type);
+            }
+        }
+    }
+
+    private static void writeAdd(DataOutputStream data, Event event) throws IOException {
+        data.writeByte(ADD);
+        data.writeUTF(event.key);
+        data.writeUTF(event.backendUrl);
+        data.writeUTF(event.queryId);
+        data.writeUTF(event.result);
+        data.writeUTF(event.status != null ? event.status : "");
+        data.writeLong(event.createdAt);
+    }
+
+    // Tamamlanan kayıtları dosyaya ekler. Önceki bir hatadan sonra dosya önce
+    // bellekteki olaylardan yeniden yazılır; o yazım bu kayıtları da içerir
+    private void appendRecords() throws IOException {
+        if (damaged) {
+            compact();
+            return;
+        }
+        ensureOpen();
+        recordBytes.writeTo(out);
+    }
+
+    // Yarım kalmış olabilecek tampon dosyaya yazılmaz; sonraki kayıt dosyayı baştan kurar
+    private void onWriteFailed(IOException e) {
+        Log.e(TAG, "Giden kutusu yazılamadı: " + e.getMessage());
+        discard();
+        damaged = true;
+    }
+
+    private void sync() throws IOException {
+        if (out == null) return;
+        out.flush();
+        fileOut.getFD().sync();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (out != null) return;
+        boolean fresh = !file.exists() || file.length() == 0;
+        fileOut = new FileOutputStream(file, true);
+        out = new BufferedOutputStream(fileOut);
+        if (fresh) {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+        }
+    }
+
+    // Yalnızca bekleyen olayları yeni dosyaya yazar ve eskisinin yerine koyar;
+    // önce geçici dosyaya yazılır, yarım kalan yazma eski dosyayı bozmaz
+    private void compact() throws IOException {
+        closeQuietly();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(tmpOut));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            for (Event event : pending.values()) {
+                writeAdd(data, event);
+            }
+            data.flush();
+            tmpOut.getFD().sync();
+        }
+
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Giden kutusu yerine konamadı: " + file);
+        }
+        deadRecords = 0;
+        damaged = false;
+    }
+
+    // Tampondaki kayıtlar bütündür (bkz. appendRecords); diske yazılıp kapatılır
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                sync();
+            } catch (IOException e) {
+                onWriteFailed(e);
+                return;
+            }
+        }
+        discard();
+    }
+
+    // Tamponu yazmadan kapatır
+    private void discard() {
+        if (fileOut != null) {
+            try {
+                fileOut.close();
+            } catch (IOException ignored) {
+                // Dosya zaten kullanılamıyor; sonraki yazım yeniden açar
+            }
+        }
+        out = null;
+        fileOut = null;
+    }
+}
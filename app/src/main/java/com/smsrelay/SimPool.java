@@ -0,0 +1,111 @@
+package com.smsrelay;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.telephony.SmsManager;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.smsrelay.core.DispatchScheduler;
+import com.smsrelay.core.QueryRegistry;
+import com.smsrelay.core.SimSlot;
+import com.smsrelay.core.SlotSelector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Cihazdaki aktif SIM'ler arasında 5664 sorgularını paylaştırır.
+// SIM seçimi SlotSelector'dadır; burada SIM'ler cihazdan okunur, gönderim
+// yapılır ve sonucu sentIntent ile takip edilir.
+class SimPool extends SlotSelector {
+    private static final String TAG = "SimPool";
+    private static final String ACTION_SMS_SENT = "com.smsrelay.SMS_SENT";
+    static final int DEFAULT_SUBSCRIPTION = SimSlot.DEFAULT_SUBSCRIPTION;
+
+    private final Context context;
+    private final AtomicInteger requestCodes = new AtomicInteger();
+
+    private final BroadcastReceiver sentReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            SimSlot slot = find(intent.getIntExtra("subscription_id", DEFAULT_SUBSCRIPTION));
+            if (slot != null) {
+                boolean ok = getResultCode() == Activity.RESULT_OK;
+                slot.onSendResult(ok, System.currentTimeMillis());
+                if (!ok) {
+                    Log.e(TAG, "SMS gönderilemedi: " + slot + " kod: " + getResultCode());
+                }
+            }
+        }
+    };
+
+    SimPool(Context context, QueryRegistry registry, Supplier<DispatchScheduler> schedulerFactory) {
+        super(Collections.unmodifiableList(loadSlots(context, schedulerFactory)), registry);
+        this.context = context.getApplicationContext();
+
+        ContextCompat.registerReceiver(this.context, sentReceiver,
+                new IntentFilter(ACTION_SMS_SENT), ContextCompat.RECEIVER_NOT_EXPORTED);
+        Log.d(TAG, "Aktif SIM'ler: " + getSlots());
+    }
+
+    private static List<SimSlot> loadSlots(Context context, Supplier<DispatchScheduler> schedulerFactory) {
+        List<SimSlot> loaded = new ArrayList<>();
+        try {
+            SubscriptionManager manager = context.getSystemService(SubscriptionManager.class);
+            List<SubscriptionInfo> infos = manager != null ? manager.getActiveSubscriptionInfoList() : null;
+            if (infos != null) {
+                for (SubscriptionInfo info : infos) {
+                    loaded.add(new SimSlot(info.getSubscriptionId(),
+                            String.valueOf(info.getDisplayName()), schedulerFactory.get()));
+                }
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "SIM listesi okunamadı: " + e.getMessage());
+        }
+
+        if (loaded.isEmpty()) {
+            loaded.add(new SimSlot(DEFAULT_SUBSCRIPTION, "Varsayılan", schedulerFactory.get()));
+        }
+        return loaded;
+    }
+
+    void send(SimSlot slot, String phoneNumber, String message) {
+        Intent sent = new Intent(ACTION_SMS_SENT)
+                .setPackage(context.getPackageName())
+                .putExtra("subscription_id", slot.subscriptionId);
+        PendingIntent sentIntent = PendingIntent.getBroadcast(context, requestCodes.incrementAndGet(), sent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_ONE_SHOT);
+
+        try {
+            smsManagerFor(slot.subscriptionId).sendTextMessage(phoneNumber, null, message, sentIntent, null);
+            Log.d(TAG, "SMS gönderildi (" + slot + "): " + phoneNumber + " -> " + message);
+        } catch (Exception e) {
+            slot.onSendResult(false, System.currentTimeMillis());
+            Log.e(TAG, "SMS gönderilemedi (" + slot + "): " + e.getMessage());
+        }
+    }
+
+    void close() {
+        try {
+            context.unregisterReceiver(sentReceiver);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    static SmsManager smsManagerFor(int subscriptionId) {
+        if (subscriptionId == DEFAULT_SUBSCRIPTION) {
+            return SmsManager.getDefault();
+        }
+        return SmsManager.getSmsManagerForSubscriptionId(subscriptionId);
+    }
+}
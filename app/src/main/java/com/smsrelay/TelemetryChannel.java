@@ -0,0 +1,242 @@
+package com.smsrelay;
+
+import android.util.Log;
+
+import com.google.gson.stream.JsonWriter;
+import com.smsrelay.core.AlertAggregator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+
+// Durum ve uyarıların backend'e HTTP ile iletildiği kanal. Yönetici SMS'i
+// yerine kısa bir kalp atışı (heartbeat) ve pencere başına toplanmış
+// uyarılar gönderilir. Backend ayarlanan süreden uzun süredir
+// ulaşılamıyorsa bekleyen uyarılar tek SMS'te özetlenir; SMS en fazla
+// bu süre başına bir kez atılır. Tüm durum tek "telemetry" thread'indedir.
+class TelemetryChannel {
+    private static final String TAG = "TelemetryChannel";
+
+    static final String STARTUP = "startup";
+    static final String SHUTDOWN = "shutdown";
+    static final String QUERY_FAILED = "query_failed";
+    static final String QUERY_PARTIAL = "query_partial";
+
+    private static final long RETRY_MS = 60 * 1000;
+    private static final int MAX_SMS_LINES = 5;
+
+    // Son çare SMS'i; yönetici numarası yoksa null
+    interface SmsFallback {
+        void send(String message);
+    }
+
+    private static TelemetryChannel instance;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "telemetry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Yalnızca executor thread'inden erişilir
+    private AlertAggregator alerts = new AlertAggregator(10 * 60 * 1000);
+    private String backendUrl = "";
+    private String relayId = "";
+    private long fallbackAfter = 30 * 60 * 1000;
+    private SmsFallback sms;
+    private ScheduledFuture<?> flushTask;
+    private long flushAt = 0;
+    // Backend'e son erişilemeyen anın başlangıcı; ulaşılabiliyorsa 0
+    private long unreachableSince = 0;
+    private long lastSmsAt = 0;
+
+    static synchronized TelemetryChannel get() {
+        if (instance == null) {
+            instance = new TelemetryChannel();
+        }
+        return instance;
+    }
+
+    void configure(String backendUrl, String relayId, long alertWindow, long fallbackAfter, SmsFallback sms) {
+        executor.execute(() -> {
+            this.backendUrl = backendUrl;
+            this.relayId = relayId;
+            this.fallbackAfter = fallbackAfter;
+            this.sms = sms;
+            // Pencere değiştiyse bekleyenler yeni toplayıcıya taşınır
+            AlertAggregator previous = alerts;
+            alerts = new AlertAggregator(alertWindow);
+            alerts.restore(previous.drain(System.currentTimeMillis(), true), System.currentTimeMillis());
+        });
+    }
+
+    // Aynı türden uyarılar pencere içinde tek uyarıda toplanır
+    void alert(String kind, String detail) {
+        long now = System.currentTimeMillis();
+        executor.execute(() -> {
+            alerts.record(kind, detail, now);
+            scheduleFlush(alerts.nextDueDelay(System.currentTimeMillis()));
+        });
+    }
+
+    // Alanlar sayı ya da metin olabilir
+    void heartbeat(Map<String, Object> fields) {
+        long now = System.currentTimeMillis();
+        executor.execute(() -> {
+            if (backendUrl.isEmpty()) {
+                return;
+            }
+            try {
+                StringWriter buffer = new StringWriter();
+                JsonWriter writer = new JsonWriter(buffer);
+                writer.beginObject();
+                writer.name("relay_id").value(relayId);
+                writer.name("time").value(now);
+                for (Map.Entry<String, Object> field : fields.entrySet()) {
+                    writer.name(field.getKey());
+                    if (field.getValue() instanceof Number) {
+                        writer.value((Number) field.getValue());
+                    } else {
+                        writer.value(String.valueOf(field.getValue()));
+                    }
+                }
+                writer.endObject();
+                writer.close();
+
+                if (post("/api/relay/heartbeat", buffer.toString(), relayId + "-" + now)) {
+                    // Backend döndü: geri konmuş uyarılar beklemeden gönderilir
+                    scheduleFlush(0);
+                } else {
+                    fallBackToSms(System.currentTimeMillis());
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Kalp atışı hazırlanamadı: " + e.getMessage());
+            }
+        });
+    }
+
+    // Daha erken bir gönderim gerekiyorsa bekleyen zamanlama öne çekilir
+    private void scheduleFlush(long delay) {
+        if (delay < 0) {
+            return;
+        }
+        long at = System.currentTimeMillis() + delay;
+        if (flushTask != null && !flushTask.isDone()) {
+            if (flushAt <= at) {
+                return;
+            }
+            flushTask.cancel(false);
+        }
+        flushAt = at;
+        flushTask = executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        flushTask = null;
+        long now = System.currentTimeMillis();
+        List<AlertAggregator.Alert> due = alerts.drain(now, false);
+        boolean sent = true;
+
+        if (!due.isEmpty()) {
+            sent = false;
+            try {
+                sent = !backendUrl.isEmpty() && post("/api/relay/alerts", alertsJson(due), UUID.randomUUID().toString());
+            } catch (IOException e) {
+                Log.e(TAG, "Uyarılar hazırlanamadı: " + e.getMessage());
+            }
+            if (!sent) {
+                alerts.restore(due, now);
+                fallBackToSms(now);
+            }
+        }
+
+        // Gönderilemeyenler bir dakika sonra tekrar denenir
+        scheduleFlush(sent ? alerts.nextDueDelay(now) : alerts.size() > 0 ? RETRY_MS : -1);
+    }
+
+    // Başarılıysa backend erişilebilir sayılır; değilse erişilemezlik süresi işlemeye başlar
+    private boolean post(String path, String json, String key) {
+        boolean ok = false;
+        try (Response response = BackendClient.get().post(backendUrl + path, json, key)) {
+            ok = response.isSuccessful();
+            if (!ok) {
+                Log.w(TAG, path + " cevabı: " + response.code());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, path + " gönderilemedi: " + e.getMessage());
+        }
+
+        if (ok) {
+            unreachableSince = 0;
+        } else if (unreachableSince == 0) {
+            unreachableSince = System.currentTimeMillis();
+        }
+        return ok;
+    }
+
+    // Backend uzun süredir ulaşılamıyorsa bekleyen uyarılar tek SMS'te özetlenir
+    private void fallBackToSms(long now) {
+        if (sms == null || unreachableSince == 0 || now - unreachableSince < fallbackAfter) {
+            return;
+        }
+        if (lastSmsAt > 0 && now - lastSmsAt < fallbackAfter) {
+            return;
+        }
+
+        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
+        StringBuilder message = new StringBuilder("SMS Relay: backend'e ")
+                .append((now - unreachableSince) / 60000).append(" dk'dir ulasilamiyor\n")
+                .append("Saat: ").append(sdf.format(new Date(now)));
+
+        List<AlertAggregator.Alert> pending = alerts.drain(now, true);
+        for (int i = 0; i < pending.size() && i < MAX_SMS_LINES; i++) {
+            AlertAggregator.Alert alert = pending.get(i);
+            message.append('\n').append(alert.kind);
+            if (alert.count > 1) {
+                message.append(" x").append(alert.count);
+            }
+            if (alert.detail != null && !alert.detail.isEmpty()) {
+                message.append(": ").append(alert.detail);
+            }
+        }
+        if (pending.size() > MAX_SMS_LINES) {
+            message.append("\n+").append(pending.size() - MAX_SMS_LINES).append(" uyari daha");
+        }
+
+        sms.send(message.toString());
+        lastSmsAt = now;
+        Log.w(TAG, "Backend'e ulaşılamıyor, uyarılar SMS ile gönderildi (" + pending.size() + ")");
+    }
+
+    private String alertsJson(List<AlertAggregator.Alert> due) throws IOException {
+        StringWriter buffer = new StringWriter();
+        JsonWriter writer = new JsonWriter(buffer);
+        writer.beginObject();
+        writer.name("relay_id").value(relayId);
+        writer.name("alerts").beginArray();
+        for (AlertAggregator.Alert alert : due) {
+            writer.beginObject();
+            writer.name("kind").value(alert.kind);
+            writer.name("count").value(alert.count);
+            writer.name("first_at").value(alert.firstAt);
+            writer.name("last_at").value(alert.lastAt);
+            if (alert.detail != null) writer.name("detail").value(alert.detail);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,180 @@
+package com.smsrelay;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Aynı backend kuyruğunu paylaşan birkaç relay'i simüle eder. Bir relay
+ * sorgu kiraladıktan sonra çöker; kiraları süre sonunda diğerlerine geçer.
+ * Hiçbir sorgu iki kez 5664'e gönderilmemeli ve hiçbiri kaybolmamalıdır.
+ */
+public class LeaseClaimSimulationTest {
+    private static final int QUERIES = 120;
+    private static final int RELAYS = 4;
+    private static final long LEASE_MS = 400;
+
+    private MockWebServer server;
+    private MockClaimBackend backend;
+    private final OkHttpClient client = new OkHttpClient();
+    private final Map<String, AtomicInteger> dispatches = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        backend = new MockClaimBackend();
+        for (int i = 0; i < QUERIES; i++) {
+            backend.add("q" + i, "34SIM" + i);
+        }
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private String backendUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    @Test
+    public void relaysShareQueueWithoutDuplicateDispatches() throws Exception {
+        // Çöken relay: kiralar, hiç göndermez ve kirasını uzatmaz
+        LeaseClient crashed = new LeaseClient(client, "relay-crashed", LEASE_MS);
+        List<String> orphaned = new ArrayList<>();
+        crashed.claim(backendUrl(), 10, q -> orphaned.add(q.queryId));
+        assertEquals(10, orphaned.size());
+
+        // Relay thread'lerindeki hatalar burada toplanır, ana thread'de doğrulanır
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> relays = new ArrayList<>();
+        for (int r = 0; r < RELAYS; r++) {
+            LeaseClient lease = new LeaseClient(client, "relay-" + r, LEASE_MS);
+            Thread thread = new Thread(() -> {
+                try {
+                    runRelay(lease, new Random(lease.getRelayId().hashCode()));
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            });
+            relays.add(thread);
+            thread.start();
+        }
+        for (Thread thread : relays) {
+            thread.join(30000);
+            assertFalse("Relay bitmedi", thread.isAlive());
+        }
+
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError("Relay hatası: " + failures.peek());
+            for (Throwable failure : failures) {
+                error.addSuppressed(failure);
+            }
+            throw error;
+        }
+        assertEquals(0, backend.remaining());
+        assertEquals(QUERIES, dispatches.size());
+        for (Map.Entry<String, AtomicInteger> entry : dispatches.entrySet()) {
+            assertEquals("Tekrarlanan gönderim: " + entry.getKey(), 1, entry.getValue().get());
+        }
+        for (String id : orphaned) {
+            assertTrue(dispatches.containsKey(id));
+        }
+    }
+
+    // Relay döngüsü servisteki gibi: kiralar kira süresinin üçte birinde bir ayrı
+    // thread'den uzatılır, gönderimden hemen önce yerel kira süresi kontrol edilir.
+    // Ara sıra relay kira süresinden uzun takılır; kirayı uzatmalar korur
+    private void runRelay(LeaseClient lease, Random random) throws Exception {
+        Set<String> held = ConcurrentHashMap.newKeySet();
+        Deque<String> queued = new ConcurrentLinkedDeque<>();
+        Queue<Throwable> renewFailures = new ConcurrentLinkedQueue<>();
+        ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor();
+        renewer.scheduleWithFixedDelay(() -> {
+            try {
+                if (!held.isEmpty()) {
+                    // Kirası kaybedilen ve gönderilmemiş sorgu kuyruktan çıkar
+                    List<String> lost = lease.renew(backendUrl(), new ArrayList<>(held));
+                    queued.removeAll(lost);
+                    held.removeAll(lost);
+                }
+            } catch (Throwable t) {
+                renewFailures.add(t);
+            }
+        }, LEASE_MS / 3, LEASE_MS / 3, TimeUnit.MILLISECONDS);
+
+        try {
+            long deadline = System.currentTimeMillis() + 20000;
+            while (System.currentTimeMillis() < deadline && backend.remaining() > 0) {
+                lease.claim(backendUrl(), 3, q -> {
+                    held.add(q.queryId);
+                    queued.add(q.queryId);
+                });
+                if (queued.isEmpty()) {
+                    Thread.sleep(50);
+                    continue;
+                }
+
+                String queryId;
+                while ((queryId = queued.poll()) != null) {
+                    if (random.nextInt(20) == 0) {
+                        Thread.sleep(LEASE_MS * 3 / 2);
+                    }
+                    if (!lease.canDispatch(queryId, System.currentTimeMillis())) {
+                        held.remove(queryId);
+                        lease.release(backendUrl(), Collections.singletonList(queryId));
+                        continue;
+                    }
+                    lease.forget(queryId);
+                    dispatches.computeIfAbsent(queryId, k -> new AtomicInteger()).incrementAndGet();
+                    Thread.sleep(5 + random.nextInt(20));
+                    complete(queryId);
+                    held.remove(queryId);
+                }
+            }
+        } finally {
+            renewer.shutdownNow();
+        }
+        if (!renewFailures.isEmpty()) {
+            throw new AssertionError("Kira uzatılamadı", renewFailures.peek());
+        }
+    }
+
+    private void complete(String queryId) throws Exception {
+        Request request = new Request.Builder()
+                .url(backendUrl() + "/api/query/result-received")
+                .post(RequestBody.create("{\"query_id\":\"" + queryId + "\"}", MediaType.parse("application/json")))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            assertTrue(response.isSuccessful());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.smsrelay;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Kiralama protokolünü uygulayan yerel sahte backend: claim, renew, release
+ * ve sonuç bildirimi. Süresi dolan kiralar bir sonraki claim'de havuza döner.
+ */
+class MockClaimBackend extends Dispatcher {
+    private static class Lease {
+        final String plate;
+        String relayId;
+        long expiresAt;
+        boolean done;
+
+        Lease(String plate) {
+            this.plate = plate;
+        }
+    }
+
+    private final Map<String, Lease> queries = new LinkedHashMap<>();
+
+    synchronized void add(String id, String plate) {
+        queries.put(id, new Lease(plate));
+    }
+
+    synchronized int remaining() {
+        int count = 0;
+        for (Lease lease : queries.values()) {
+            if (!lease.done) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized MockResponse dispatch(RecordedRequest request) {
+        String path = request.getPath();
+        long now = System.currentTimeMillis();
+        try {
+            Body body = Body.parse(request.getBody().readUtf8());
+            switch (path) {
+                case "/api/queries/claim":
+                    return claim(body, now);
+                case "/api/queries/lease/renew":
+                    return renew(body, now);
+                case "/api/queries/lease/release":
+                    for (String id : body.queryIds) {
+                        Lease lease = queries.get(id);
+                        if (lease != null && body.relayId.equals(lease.relayId)) {
+                            lease.relayId = null;
+                        }
+                    }
+                    return new MockResponse().setBody("{}");
+                case "/api/query/result-received":
+                    Lease lease = queries.get(body.queryId);
+                    if (lease != null) lease.done = true;
+                    return new MockResponse().setBody("{}");
+                default:
+                    return new MockResponse().setResponseCode(404);
+            }
+        } catch (IOException e) {
+            return new MockResponse().setResponseCode(400);
+        }
+    }
+
+    private MockResponse claim(Body body, long now) {
+        StringBuilder json = new StringBuilder("[");
+        int claimed = 0;
+        for (Map.Entry<String, Lease> entry : queries.entrySet()) {
+            Lease lease = entry.getValue();
+            boolean free = lease.relayId == null || lease.expiresAt <= now;
+            if (lease.done || !free || claimed >= body.limit) {
+                continue;
+            }
+            lease.relayId = body.relayId;
+            lease.expiresAt = now + body.leaseMs;
+            if (claimed++ > 0) json.append(',');
+            json.append("{\"id\":\"").append(entry.getKey())
+                    .append("\",\"sms_message\":\"").append(lease.plate)
+                    .append("\",\"user_phone\":\"5550000000\"}");
+        }
+        return new MockResponse().setBody(json.append(']').toString());
+    }
+
+    private MockResponse renew(Body body, long now) {
+        StringBuilder json = new StringBuilder("{\"lost\":[");
+        int lost = 0;
+        for (String id : body.queryIds) {
+            Lease lease = queries.get(id);
+            boolean mine = lease != null && !lease.done && body.relayId.equals(lease.relayId);
+            if (mine) {
+                lease.expiresAt = now + body.leaseMs;
+            } else if (lease == null || !lease.done) {
+                if (lost++ > 0) json.append(',');
+                json.append('"').append(id).append('"');
+            }
+        }
+        return new MockResponse().setBody(json.append("]}").toString());
+    }
+
+    private static class Body {
+        String relayId;
+        String queryId;
+        int limit;
+        long leaseMs;
+        final List<String> queryIds = new ArrayList<>();
+
+        static Body parse(String json) throws IOException {
+            Body body = new Body();
+            JsonReader reader = new JsonReader(new StringReader(json));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "relay_id":
+                        body.relayId = reader.nextString();
+                        break;
+                    case "query_id":
+                        body.queryId = reader.nextString();
+                        break;
+                    case "limit":
+                        body.limit = reader.nextInt();
+                        break;
+                    case "lease_ms":
+                        body.leaseMs = reader.nextLong();
+                        break;
+                    case "query_ids":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            body.queryIds.add(reader.nextString());
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return body;
+        }
+    }
+}
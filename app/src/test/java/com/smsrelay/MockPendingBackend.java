@@ -0,0 +1,69 @@
+package com.smsrelay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * /api/queries/pending-5664 için yerel sahte backend. since/limit/ETag
+ * parametrelerini destekler; parametresiz istekte eski davranışla tam
+ * listeyi döner.
+ */
+class MockPendingBackend extends Dispatcher {
+    private final List<String[]> pending = new ArrayList<>();
+    private int version = 0;
+
+    synchronized void add(String id, String plate, String phone) {
+        pending.add(new String[]{id, plate, phone});
+        version++;
+    }
+
+    @Override
+    public synchronized MockResponse dispatch(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        if (url == null || !"/api/queries/pending-5664".equals(url.encodedPath())) {
+            return new MockResponse().setResponseCode(404);
+        }
+
+        String since = url.queryParameter("since");
+        String limitParam = url.queryParameter("limit");
+        int limit = limitParam != null ? Integer.parseInt(limitParam) : Integer.MAX_VALUE;
+
+        int from = 0;
+        if (since != null) {
+            for (int i = 0; i < pending.size(); i++) {
+                if (pending.get(i)[0].equals(since)) {
+                    from = i + 1;
+                    break;
+                }
+            }
+        }
+        int to = (int) Math.min(pending.size(), (long) from + limit);
+
+        String etag = "\"" + version + ":" + since + ":" + limit + "\"";
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+        }
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = from; i < to; i++) {
+            String[] q = pending.get(i);
+            if (i > from) body.append(',');
+            body.append("{\"id\":\"").append(q[0])
+                    .append("\",\"sms_message\":\"").append(q[1])
+                    .append("\",\"user_phone\":\"").append(q[2])
+                    .append("\",\"vehicle_id\":\"").append(q[1]).append("\"}");
+        }
+        body.append(']');
+
+        MockResponse response = new MockResponse().setBody(body.toString()).setHeader("ETag", etag);
+        if (to > from) {
+            response.setHeader("X-Next-Cursor", pending.get(to - 1)[0]);
+        }
+        return response;
+    }
+}
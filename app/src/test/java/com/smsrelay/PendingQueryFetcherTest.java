@@ -0,0 +1,170 @@
+package com.smsrelay;
+
+import com.smsrelay.core.PendingQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Artımlı çekmeyi yerel sahte backend üzerinde eski tam liste poll'u ile
+ * karşılaştırır: aktarılan bayt ve ayrıştırma süresi.
+ */
+public class PendingQueryFetcherTest {
+    private static final int POLLS = 20;
+
+    private MockWebServer server;
+    private MockPendingBackend backend;
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Before
+    public void setUp() throws Exception {
+        backend = new MockPendingBackend();
+        for (int i = 0; i < 150; i++) {
+            backend.add("q" + i, "34ABC" + i, "555000" + i);
+        }
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private String backendUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    @Test
+    public void unchangedListCostsEmpty304() throws Exception {
+        PendingQueryFetcher fetcher = new PendingQueryFetcher(client);
+        List<String> ids = new ArrayList<>();
+
+        PendingQueryFetcher.Result first = fetcher.fetch(backendUrl(), 200, 0, q -> ids.add(q.queryId));
+        assertEquals(150, first.count);
+        assertEquals("q149", fetcher.getCursor());
+
+        // İmleç ilerledi: yeni adres için boş liste döner
+        PendingQueryFetcher.Result second = fetcher.fetch(backendUrl(), 200, 0, q -> ids.add(q.queryId));
+        assertEquals(0, second.count);
+        assertFalse(second.notModified);
+
+        PendingQueryFetcher.Result third = fetcher.fetch(backendUrl(), 200, 0, q -> ids.add(q.queryId));
+        assertTrue(third.notModified);
+        assertEquals(0, third.bytes);
+        assertEquals(150, ids.size());
+
+        server.takeRequest();
+        server.takeRequest();
+        RecordedRequest conditional = server.takeRequest();
+        assertEquals("/api/queries/pending-5664?limit=200&since=q149", conditional.getPath());
+        assertNotNull(conditional.getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void onlyNewQueriesAreFetchedWithinLimit() throws Exception {
+        PendingQueryFetcher fetcher = new PendingQueryFetcher(client);
+        List<String> ids = new ArrayList<>();
+
+        assertEquals(100, fetcher.fetch(backendUrl(), 100, 0, q -> ids.add(q.queryId)).count);
+        assertEquals(50, fetcher.fetch(backendUrl(), 100, 0, q -> ids.add(q.queryId)).count);
+
+        backend.add("q150", "06XYZ1", "5559999");
+        PendingQueryFetcher.Result result = fetcher.fetch(backendUrl(), 100, 0, q -> ids.add(q.queryId));
+        assertEquals(1, result.count);
+        assertEquals("q150", ids.get(ids.size() - 1));
+        assertEquals(151, ids.size());
+    }
+
+    @Test
+    public void malformedPriorityOrDeadlineDoesNotDropBatch() throws Exception {
+        String json = "[{\"id\":\"a\",\"sms_message\":\"34ABC1\",\"user_phone\":\"5550001\",\"priority\":\"high\",\"deadline\":\"yarın\"},"
+                + "{\"id\":\"b\",\"sms_message\":\"34ABC2\",\"user_phone\":\"5550002\",\"priority\":2.7,\"deadline\":\"1700000000\"},"
+                + "{\"id\":\"c\",\"sms_message\":\"34ABC3\",\"user_phone\":\"5550003\",\"priority\":{},\"deadline\":true}]";
+        List<PendingQuery> queries = new ArrayList<>();
+
+        assertEquals(3, PendingQuery.readAll(new StringReader(json), backendUrl(), queries::add));
+        assertEquals(PendingQuery.UNSET_PRIORITY, queries.get(0).priority);
+        assertEquals(0, queries.get(0).deadline);
+        assertEquals(2, queries.get(1).priority);
+        assertEquals(1700000000000L, queries.get(1).deadline);
+        assertEquals(PendingQuery.UNSET_PRIORITY, queries.get(2).priority);
+        assertEquals(0, queries.get(2).deadline);
+    }
+
+    @Test
+    public void rowMissingRequiredFieldIsSkippedNotWholeBatch() throws Exception {
+        String json = "[{\"id\":\"a\",\"sms_message\":\"34ABC1\",\"user_phone\":\"5550001\"},"
+                + "{\"id\":\"b\",\"user_phone\":\"5550002\"},"
+                + "{\"sms_message\":\"34ABC3\",\"user_phone\":\"5550003\"},"
+                + "\"c\","
+                + "{\"id\":\"d\",\"sms_message\":\"34ABC4\",\"user_phone\":null},"
+                + "{\"id\":\"e\",\"sms_message\":\"34ABC5\",\"user_phone\":\"5550005\"}]";
+        List<PendingQuery> queries = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+
+        assertEquals(2, PendingQuery.readAll(new StringReader(json), backendUrl(), queries::add, skipped::add));
+        assertEquals("a", queries.get(0).queryId);
+        assertEquals("e", queries.get(1).queryId);
+        assertEquals(4, skipped.size());
+    }
+
+    @Test
+    public void incrementalPollTransfersLessThanFullList() throws Exception {
+        // Eski davranış: her poll'da tam liste indirilir ve ayrıştırılır.
+        // İki yolda da süre isteğin başından ayrıştırmanın sonuna kadar ölçülür
+        long fullBytes = 0;
+        long fullNs = 0;
+        for (int i = 0; i < POLLS; i++) {
+            long start = System.nanoTime();
+            Request request = new Request.Builder().url(backendUrl() + "/api/queries/pending-5664").build();
+            try (Response response = client.newCall(request).execute()) {
+                byte[] body = response.body().bytes();
+                fullBytes += body.length;
+                PendingQuery.readAll(new StringReader(new String(body, StandardCharsets.UTF_8)), backendUrl(), q -> { });
+            }
+            fullNs += System.nanoTime() - start;
+        }
+
+        PendingQueryFetcher fetcher = new PendingQueryFetcher(client);
+        long incrementalBytes = 0;
+        long incrementalNs = 0;
+        int notModified = 0;
+        for (int i = 0; i < POLLS; i++) {
+            if (i % 5 == 4) {
+                backend.add("n" + i, "35DEF" + i, "555111" + i);
+            }
+            long start = System.nanoTime();
+            PendingQueryFetcher.Result result = fetcher.fetch(backendUrl(), 200, 0, q -> { });
+            incrementalNs += System.nanoTime() - start;
+            incrementalBytes += result.bytes;
+            if (result.notModified) {
+                // 304 gövdesizdir; ayrıştırılacak bir şey yoktur
+                assertEquals(0, result.bytes);
+                assertEquals(0, result.count);
+                notModified++;
+            }
+        }
+
+        // Değişiklik olmayan poll'ların çoğu koşullu istekle 304 döner
+        assertTrue("304 sayısı: " + notModified, notModified >= POLLS / 2);
+        assertTrue("Tam liste: " + fullBytes + " bayt, " + fullNs / 1000000 + "ms | Artımlı: " + incrementalBytes
+                + " bayt, " + incrementalNs / 1000000 + "ms (" + POLLS + " poll)", incrementalBytes * 5 < fullBytes);
+    }
+}
@@ -0,0 +1,99 @@
+package com.smsrelay;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Push modunu yerel bir MockWebServer üzerinde, backend olmadan doğrular.
+ */
+public class QueryStreamTest {
+    private static final String QUERY_JSON =
+            "[{\"id\":\"q1\",\"sms_message\":\"34ABC123\",\"user_phone\":\"5551234567\"}]";
+
+    private MockWebServer server;
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    private final QueryStream.Listener listener = new QueryStream.Listener() {
+        @Override
+        public void onStreamOpen() {
+            events.add("open");
+        }
+
+        @Override
+        public void onQueries(String json) {
+            events.add(json);
+        }
+
+        @Override
+        public void onStreamLost(long reconnectDelay) {
+            events.add("lost:" + reconnectDelay);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private String backendUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    @Test
+    public void pushedQueriesReachListener() throws Exception {
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                webSocket.send(QUERY_JSON);
+                webSocket.close(1000, "bitti");
+            }
+        }));
+
+        QueryStream stream = new QueryStream(new OkHttpClient(), backendUrl(), listener);
+        stream.connect();
+
+        assertEquals("open", events.poll(5, TimeUnit.SECONDS));
+        assertEquals(QUERY_JSON, events.poll(5, TimeUnit.SECONDS));
+        assertEquals("lost:2000", events.poll(5, TimeUnit.SECONDS));
+        assertFalse(stream.isOpen());
+        assertEquals("/api/queries/stream", server.takeRequest().getPath());
+
+        stream.close();
+    }
+
+    @Test
+    public void failedUpgradeBacksOffReconnect() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        QueryStream stream = new QueryStream(new OkHttpClient(), backendUrl(), listener);
+        stream.connect();
+        assertEquals("lost:2000", events.poll(5, TimeUnit.SECONDS));
+
+        stream.connect();
+        assertEquals("lost:4000", events.poll(5, TimeUnit.SECONDS));
+
+        stream.close();
+    }
+}
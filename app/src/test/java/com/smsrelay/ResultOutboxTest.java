@@ -0,0 +1,203 @@
+package com.smsrelay;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Giden kutusunu yerel sahte backend üzerinde çalıştırır: yeniden başlatmada
+ * kalıcılık, toplu uçtan olay başına uca düşme, geri çekilme, idempotency anahtarı
+ * ve yazma hatasından sonra dosyanın yeniden kurulması.
+ */
+public class ResultOutboxTest {
+    private static final long WINDOW_MS = 20;
+    private static final long BACKOFF_MS = 100;
+
+    private MockWebServer server;
+    private ResultsBackend backend;
+    private File dir;
+
+    // Sırayla dönecek durum kodları; bitince 200
+    private static class ResultsBackend extends Dispatcher {
+        final List<Integer> batchCodes = new ArrayList<>();
+        final List<RecordedRequest> requests = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+        boolean batchSupported = true;
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            requests.add(request);
+            times.add(System.nanoTime());
+            String path = request.getPath();
+            if (path.endsWith("/batch")) {
+                if (!batchSupported) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                int code = batchCodes.isEmpty() ? 200 : batchCodes.remove(0);
+                return new MockResponse().setResponseCode(code);
+            }
+            return new MockResponse().setResponseCode(200);
+        }
+
+        synchronized List<RecordedRequest> requests() {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        backend = new ResultsBackend();
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+        dir = Files.createTempDirectory("result-outbox").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private String backendUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    @Test
+    public void pendingResultsSurviveRestartAndGoInOneBatch() throws Exception {
+        File file = new File(dir, "result_outbox.bin");
+        // Pencere kapanmadan süreç öldü: hiçbir istek gitmedi
+        ResultOutbox first = new ResultOutbox(file, TimeUnit.HOURS.toMillis(1), BACKOFF_MS);
+        first.received(backendUrl(), "q1");
+        first.failed(backendUrl(), "q2", "timeout");
+        first.received(backendUrl(), "q3");
+        assertEquals(3, first.getPendingCount());
+
+        ResultOutbox restarted = new ResultOutbox(file, WINDOW_MS, BACKOFF_MS);
+        restarted.load();
+        assertEquals(3, restarted.getPendingCount());
+        awaitDelivered(restarted);
+
+        List<RecordedRequest> requests = backend.requests();
+        assertEquals(1, requests.size());
+        assertEquals("/api/query/results/batch", requests.get(0).getPath());
+        String body = requests.get(0).getBody().readUtf8();
+        assertTrue(body.contains("\"q1\"") && body.contains("\"q2\"") && body.contains("\"q3\""));
+        assertTrue(body.contains("\"status\":\"timeout\""));
+
+        // Teslim edilenler DONE ile düştü; sonraki açılışta gönderilecek bir şey kalmaz
+        ResultOutbox again = new ResultOutbox(file, WINDOW_MS, BACKOFF_MS);
+        again.load();
+        assertEquals(0, again.getPendingCount());
+    }
+
+    @Test
+    public void missingBatchEndpointFallsBackToPerEventCalls() throws Exception {
+        backend.batchSupported = false;
+        ResultOutbox outbox = new ResultOutbox(new File(dir, "result_outbox.bin"), WINDOW_MS, BACKOFF_MS);
+        outbox.received(backendUrl(), "q1");
+        outbox.failed(backendUrl(), "q2", "failed");
+        awaitDelivered(outbox);
+
+        List<RecordedRequest> requests = backend.requests();
+        assertEquals(3, requests.size());
+        assertEquals("/api/query/results/batch", requests.get(0).getPath());
+        assertEquals("/api/query/result-received", requests.get(1).getPath());
+        assertEquals("/api/query/result-failed", requests.get(2).getPath());
+
+        // Toplu uç yoksa sonraki olaylar doğrudan olay başına gider
+        outbox.received(backendUrl(), "q3");
+        awaitDelivered(outbox);
+        requests = backend.requests();
+        assertEquals(4, requests.size());
+        assertEquals("/api/query/result-received", requests.get(3).getPath());
+    }
+
+    @Test
+    public void serverErrorsAreRetriedWithBackoff() throws Exception {
+        backend.batchCodes.add(503);
+        backend.batchCodes.add(503);
+        ResultOutbox outbox = new ResultOutbox(new File(dir, "result_outbox.bin"), WINDOW_MS, BACKOFF_MS);
+        outbox.received(backendUrl(), "q1");
+        awaitDelivered(outbox);
+
+        assertEquals(3, backend.requests().size());
+        for (int i = 1; i < 3; i++) {
+            long gapMs = TimeUnit.NANOSECONDS.toMillis(backend.times.get(i) - backend.times.get(i - 1));
+            assertTrue("deneme arası: " + gapMs + "ms", gapMs >= BACKOFF_MS);
+        }
+
+        // Bekleme tabandan az olmaz, tavan her başarısızlıkta ikiye katlanır
+        for (int failures = 1; failures <= 12; failures++) {
+            long cap = Math.min(5 * 60 * 1000, BACKOFF_MS << (failures - 1));
+            for (int i = 0; i < 100; i++) {
+                long delay = outbox.retryDelay(failures);
+                assertTrue(delay >= BACKOFF_MS);
+                assertTrue(delay <= BACKOFF_MS + cap);
+            }
+        }
+    }
+
+    @Test
+    public void idempotencyKeyIsDerivedFromQueryAndResult() throws Exception {
+        File file = new File(dir, "result_outbox.bin");
+        ResultOutbox outbox = new ResultOutbox(file, TimeUnit.HOURS.toMillis(1), BACKOFF_MS);
+        outbox.received(backendUrl(), "q1");
+        // Günlüğe "tamamlandı" yazılmadan çökülüp sorgu yeniden işlendi: aynı olay tek kalır
+        outbox.received(backendUrl(), "q1");
+        outbox.failed(backendUrl(), "q1", "timeout");
+        assertEquals(2, outbox.getPendingCount());
+
+        backend.batchSupported = false;
+        ResultOutbox restarted = new ResultOutbox(file, WINDOW_MS, BACKOFF_MS);
+        restarted.load();
+        awaitDelivered(restarted);
+
+        List<RecordedRequest> requests = backend.requests();
+        RecordedRequest received = requests.get(1);
+        String expected = UUID.nameUUIDFromBytes("q1/received".getBytes(StandardCharsets.UTF_8)).toString();
+        assertEquals(expected, received.getHeader("Idempotency-Key"));
+        assertTrue(received.getBody().readUtf8().contains("\"idempotency_key\":\"" + expected + "\""));
+        assertNotEquals(expected, requests.get(2).getHeader("Idempotency-Key"));
+    }
+
+    @Test
+    public void failedAppendIsRewrittenFromMemory() throws Exception {
+        File missing = new File(dir, "missing");
+        File file = new File(missing, "result_outbox.bin");
+        ResultOutbox outbox = new ResultOutbox(file, TimeUnit.HOURS.toMillis(1), BACKOFF_MS);
+        outbox.received(backendUrl(), "q1");
+        assertFalse(file.exists());
+
+        // Dizin geri gelince dosya bekleyen olayların hepsiyle baştan yazılır
+        assertTrue(missing.mkdirs());
+        outbox.received(backendUrl(), "q2");
+
+        ResultOutbox restarted = new ResultOutbox(file, TimeUnit.HOURS.toMillis(1), BACKOFF_MS);
+        restarted.load();
+        assertEquals(2, restarted.getPendingCount());
+    }
+
+    private static void awaitDelivered(ResultOutbox outbox) throws InterruptedException {
+        long until = System.currentTimeMillis() + 10000;
+        while (outbox.getPendingCount() > 0 && System.currentTimeMillis() < until) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, outbox.getPendingCount());
+    }
+}
@@ -0,0 +1,60 @@
+package com.smsrelay.bench;
+
+import com.smsrelay.core.PduHeaderParser;
+import com.smsrelay.core.ReplyText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Gelen her parça için yapılan sınıflandırma: gönderen kontrolü,
+// PDU birleştirme başlığı ve "Mesaj (n/m)" başlığı
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PartClassificationBenchmark {
+    private static final String[] SENDERS = {"5664", "TRAMER", "+905321234567", "0532 123 45 67", "BANKA"};
+
+    private String[] parts;
+    private byte[][] pdus;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        parts = new String[64];
+        pdus = new byte[64][];
+        for (int i = 0; i < parts.length; i++) {
+            int m = 2 + i % 4;
+            int n = 1 + i % m;
+            parts[i] = i % 5 == 4 ? Samples.fragment(i) : Samples.headedPart(Samples.plate(i), n, m);
+            pdus[i] = Samples.concatPdu(i, 3, 1 + i % 3, parts[i]);
+        }
+    }
+
+    @Benchmark
+    public void parseHeader(Blackhole bh) {
+        bh.consume(ReplyText.parseHeader(parts[cursor++ & 63]));
+    }
+
+    @Benchmark
+    public void parseConcat(Blackhole bh) {
+        bh.consume(PduHeaderParser.parseConcat(pdus[cursor++ & 63]));
+    }
+
+    @Benchmark
+    public boolean matchSender() {
+        return ReplyText.isFromTarget(SENDERS[cursor++ % SENDERS.length], Samples.TARGET);
+    }
+
+    @Benchmark
+    public String replaceFooter() {
+        return ReplyText.replaceFooter(parts[cursor++ & 63]);
+    }
+}
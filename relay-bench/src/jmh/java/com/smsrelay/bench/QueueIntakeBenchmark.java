@@ -0,0 +1,64 @@
+package com.smsrelay.bench;
+
+import com.smsrelay.core.DispatchQueue;
+import com.smsrelay.core.PendingQuery;
+import com.smsrelay.core.QueryDedupIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// Backend'den gelen pending listesinin kuyruğa alınması: akış halinde
+// okuma, tekrar eleme, öncelik/son tarih sıralı kuyruğa ekleme ve boşaltma
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QueueIntakeBenchmark {
+    // Tek poll'da gelen bekleyen sorgu sayısı
+    @Param({"10", "200", "1000"})
+    public int backlog;
+
+    private String body;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        now = System.currentTimeMillis();
+        body = Samples.pendingJson(backlog, now);
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        return PendingQuery.readAll(new StringReader(body), "http://backend", query -> { });
+    }
+
+    @Benchmark
+    public void intakeAndDrain(Blackhole bh) throws IOException {
+        QueryDedupIndex dedup = new QueryDedupIndex(2000, 30 * 60 * 1000);
+        DispatchQueue queue = new DispatchQueue();
+
+        PendingQuery.readAll(new StringReader(body), "http://backend", query -> {
+            if (dedup.tryAdd(query.queryId)) {
+                queue.offer(query);
+            }
+        });
+        // Aynı liste bir sonraki poll'da tekrar gelirse hepsi elenir
+        PendingQuery.readAll(new StringReader(body), "http://backend", query -> bh.consume(dedup.tryAdd(query.queryId)));
+
+        queue.shedExpired(now, query -> bh.consume(query));
+        PendingQuery next;
+        while ((next = queue.poll()) != null) {
+            bh.consume(next);
+        }
+    }
+}
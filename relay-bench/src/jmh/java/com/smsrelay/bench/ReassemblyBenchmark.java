@@ -0,0 +1,79 @@
+package com.smsrelay.bench;
+
+import com.smsrelay.core.PduHeaderParser;
+import com.smsrelay.core.ReplyAssembler;
+import com.smsrelay.core.ReplyText;
+import com.smsrelay.core.SegmentReassembler;
+import com.smsrelay.core.SimSlot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Tek bir cevabın baştan sona birleştirilmesi: PDU segmentleri tam mesaja,
+// tam mesajlar "Mesaj (n/m)" sırasına göre tek metne
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReassemblyBenchmark {
+    // Cevaptaki "Mesaj (n/m)" sayısı
+    @Param({"1", "4", "12"})
+    public int messages;
+
+    // Her mesajın taşındığı SMS segmenti sayısı
+    @Param({"1", "3"})
+    public int segmentsPerMessage;
+
+    private String[][] segmentBodies;
+    private PduHeaderParser.ConcatInfo[][] segmentInfo;
+
+    @Setup
+    public void setUp() {
+        segmentBodies = new String[messages][segmentsPerMessage];
+        segmentInfo = new PduHeaderParser.ConcatInfo[messages][segmentsPerMessage];
+        for (int n = 0; n < messages; n++) {
+            String text = Samples.headedPart("34 ABC 123", n + 1, messages);
+            int size = (text.length() + segmentsPerMessage - 1) / segmentsPerMessage;
+            for (int s = 0; s < segmentsPerMessage; s++) {
+                int from = Math.min(text.length(), s * size);
+                int to = Math.min(text.length(), from + size);
+                segmentBodies[n][s] = text.substring(from, to);
+                segmentInfo[n][s] = segmentsPerMessage > 1
+                        ? new PduHeaderParser.ConcatInfo(n, segmentsPerMessage, s + 1) : null;
+            }
+        }
+    }
+
+    @Benchmark
+    public String reassembleReply() {
+        SegmentReassembler segments = new SegmentReassembler();
+        ReplyAssembler assembler = new ReplyAssembler();
+        long now = 0;
+
+        // Operatörler segmentleri ters sırayla da teslim edebilir
+        for (int n = 0; n < messages; n++) {
+            for (int s = segmentsPerMessage - 1; s >= 0; s--) {
+                String complete = segments.add(Samples.TARGET, SimSlot.DEFAULT_SUBSCRIPTION,
+                        segmentInfo[n][s], segmentBodies[n][s], now++);
+                if (complete == null) {
+                    continue;
+                }
+                ReplyText.Header header = ReplyText.parseHeader(complete);
+                if (header != null) {
+                    assembler.startMessage(header.number, header.total, complete);
+                } else {
+                    assembler.appendFragment(complete);
+                }
+            }
+        }
+        assembler.flush();
+        return ReplyText.replaceFooter(assembler.combine());
+    }
+}
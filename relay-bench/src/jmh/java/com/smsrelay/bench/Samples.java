@@ -0,0 +1,78 @@
+package com.smsrelay.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+// Ölçümlerde kullanılan, sahadaki 5664 cevaplarına benzeyen örnek veriler
+final class Samples {
+    static final String TARGET = "5664";
+
+    private Samples() {
+    }
+
+    static String plate(int i) {
+        return String.format(Locale.ROOT, "%02d ABC %03d", 1 + i % 81, i % 1000);
+    }
+
+    // "Mesaj (n/m)" başlıklı tam bir cevap parçası
+    static String headedPart(String plate, int n, int m) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Mesaj (").append(n).append('/').append(m).append(") ");
+        if (n == 1) {
+            sb.append(plate).append(" plakali aracin hasar kayitlari: ");
+        }
+        sb.append("01.02.2023 tarihli kaza, onarim bedeli 12.345 TL, parca degisimi: on tampon, far. ");
+        if (n == m) {
+            sb.append("Detayli yasal bilgi icin https://sbm.org.tr/yu58 adresini ziyaret ediniz. B002");
+        }
+        return sb.toString();
+    }
+
+    // Başlıksız devam parçası
+    static String fragment(int i) {
+        return "Devam " + i + ": 14.07.2022 tarihli kaza, onarim bedeli 4.500 TL.";
+    }
+
+    // UDH'de 8 bitlik birleştirme başlığı taşıyan 3GPP SMS-DELIVER PDU'su
+    static byte[] concatPdu(int reference, int total, int sequence, String body) {
+        byte[] text = body.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] pdu = new byte[1 + 1 + 1 + 1 + 2 + 1 + 1 + 7 + 1 + 6 + text.length];
+        int i = 0;
+        pdu[i++] = 0x00;         // SMSC yok
+        pdu[i++] = 0x44;         // SMS-DELIVER + UDHI
+        pdu[i++] = 0x04;         // adres: 4 hane
+        pdu[i++] = (byte) 0x81;
+        pdu[i++] = 0x65;         // "5664" yarım-bayt ters sıralı
+        pdu[i++] = 0x46;
+        pdu[i++] = 0x00;         // PID
+        pdu[i++] = 0x04;         // DCS: 8 bit
+        i += 7;                  // zaman damgası
+        pdu[i++] = (byte) (6 + text.length);
+        pdu[i++] = 0x05;         // UDH uzunluğu
+        pdu[i++] = 0x00;         // IEI: 8 bit birleştirme
+        pdu[i++] = 0x03;
+        pdu[i++] = (byte) reference;
+        pdu[i++] = (byte) total;
+        pdu[i++] = (byte) sequence;
+        System.arraycopy(text, 0, pdu, i, text.length);
+        return pdu;
+    }
+
+    // Backend'in pending listesi biçiminde n sorgu
+    static String pendingJson(int count, long now) {
+        StringBuilder sb = new StringBuilder(count * 160);
+        sb.append('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"q-").append(i)
+                    .append("\",\"sms_message\":\"").append(plate(i))
+                    .append("\",\"user_phone\":\"+90532").append(String.format(Locale.ROOT, "%07d", i))
+                    .append("\",\"vehicle_id\":\"").append(plate(i))
+                    .append("\",\"priority\":").append(i % 3)
+                    .append(",\"deadline\":").append(now + 60000 + (i * 7919L) % 1800000)
+                    .append('}');
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package com.smsrelay.bench;
+
+import com.smsrelay.core.ActiveQuery;
+import com.smsrelay.core.PendingQuery;
+import com.smsrelay.core.QueryRegistry;
+import com.smsrelay.core.SimSlot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Gelen parçanın uçuştaki sorgulardan hangisine ait olduğunun bulunması
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SenderMatchingBenchmark {
+    // Aynı anda cevap bekleyen sorgu sayısı
+    @Param({"1", "4", "16", "64"})
+    public int inFlight;
+
+    private QueryRegistry registry;
+    private String[] platedParts;
+    private String[] plainParts;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        registry = new QueryRegistry();
+        platedParts = new String[inFlight];
+        plainParts = new String[inFlight];
+        for (int i = 0; i < inFlight; i++) {
+            String plate = Samples.plate(i);
+            PendingQuery query = new PendingQuery("q-" + i, plate, "+90532000" + i, plate, "http://backend");
+            registry.add(new ActiveQuery(query, 0, i));
+            platedParts[i] = Samples.headedPart(plate, 1, 3);
+            plainParts[i] = Samples.headedPart(plate, 2, 3);
+        }
+    }
+
+    // Plakayı taşıyan ilk parça
+    @Benchmark
+    public ActiveQuery routeByPlate() {
+        return registry.route(platedParts[cursor++ % inFlight], 1, 2, SimSlot.DEFAULT_SUBSCRIPTION, 1);
+    }
+
+    // Plakasız parça: geldiği SIM'de cevap bekleyen tek sorguya eşleşir
+    @Benchmark
+    public ActiveQuery routeBySim() {
+        int i = cursor++ % inFlight;
+        return registry.route(plainParts[i], 2, 2, i, 1);
+    }
+}
@@ -0,0 +1,42 @@
+package com.smsrelay.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 5664'e gönderilmiş ve cevabı beklenen sorgu
+public class ActiveQuery {
+    public final PendingQuery query;
+    public final long sentAt;
+    // Sorgunun gönderildiği SIM; cevap parçaları da bu SIM'e gelir
+    public final int subscriptionId;
+    public final ReplyAssembler assembler = new ReplyAssembler();
+
+    // Aynı plaka için bu sorguya bağlanan, 5664'e ayrıca gönderilmeyen sorgular.
+    // Yalnızca relay thread'inden erişilir
+    public final List<PendingQuery> waiters = new ArrayList<>();
+    // Son parçanın geliş zamanı; parçalar arası boşluk ölçümü için
+    public long lastPartAt;
+    // İlk parçanın geliş zamanı; günlükten kurtarılan sorgularda 0
+    public long firstPartAt;
+    // Plakasız bir parça bu sorguyla başkası arasında ayırt edilemedi;
+    // cevabı eksik olabileceği için başarılı sayılmaz
+    public boolean ambiguous;
+
+    public ActiveQuery(PendingQuery query, long sentAt, int subscriptionId) {
+        this.query = query;
+        this.sentAt = sentAt;
+        this.subscriptionId = subscriptionId;
+    }
+
+    public String getQueryId() {
+        return query.queryId;
+    }
+
+    // Sonucu bekleyen tüm sorgular: önce gönderilen, ardından bağlananlar
+    public List<PendingQuery> allQueries() {
+        List<PendingQuery> all = new ArrayList<>(waiters.size() + 1);
+        all.add(query);
+        all.addAll(waiters);
+        return all;
+    }
+}
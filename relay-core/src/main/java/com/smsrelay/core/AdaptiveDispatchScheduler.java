@@ -0,0 +1,79 @@
+package com.smsrelay.core;
+
+// Token bucket + AIMD: gönderim hızı başarılı cevaplarla doğrusal artar,
+// timeout ya da belirgin gecikme artışında yarıya/azaltılarak düşer.
+// Hız her zaman [minPerHour, maxPerHour] aralığında kalır; böylece
+// operatörün hız sınırı aşılmaz.
+public class AdaptiveDispatchScheduler implements DispatchScheduler {
+    private static final double BURST = 2.0;
+    private static final double ADDITIVE_STEP = 6.0;      // sorgu/saat
+    private static final double TIMEOUT_FACTOR = 0.5;
+    private static final double SLOWDOWN_FACTOR = 0.8;
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final double minPerHour;
+    private final double maxPerHour;
+    private final SendWindow window = new SendWindow();
+
+    private double ratePerHour;
+    private double tokens = 1.0;
+    private long lastRefill = 0;
+    private double avgLatency = 0;
+
+    public AdaptiveDispatchScheduler(double minPerHour, double maxPerHour) {
+        this.minPerHour = Math.max(1, minPerHour);
+        this.maxPerHour = Math.max(this.minPerHour, maxPerHour);
+        this.ratePerHour = this.minPerHour;
+    }
+
+    private void refill(long now) {
+        if (lastRefill > 0 && now > lastRefill) {
+            tokens = Math.min(BURST, tokens + (now - lastRefill) * ratePerHour / 3600000.0);
+        }
+        lastRefill = now;
+    }
+
+    @Override
+    public synchronized long delayUntilNextSend(long now) {
+        refill(now);
+        if (tokens >= 1.0) {
+            return 0;
+        }
+        return (long) Math.ceil((1.0 - tokens) * 3600000.0 / ratePerHour);
+    }
+
+    @Override
+    public synchronized void onSent(long now) {
+        refill(now);
+        tokens -= 1.0;
+        window.record(now);
+    }
+
+    @Override
+    public synchronized void onCompleted(long now, long latency) {
+        refill(now);
+        boolean slower = avgLatency > 0 && latency > 2 * avgLatency;
+        avgLatency = avgLatency == 0 ? latency : avgLatency + LATENCY_ALPHA * (latency - avgLatency);
+
+        if (slower) {
+            ratePerHour = Math.max(minPerHour, ratePerHour * SLOWDOWN_FACTOR);
+        } else {
+            ratePerHour = Math.min(maxPerHour, ratePerHour + ADDITIVE_STEP);
+        }
+    }
+
+    @Override
+    public synchronized void onTimeout(long now) {
+        refill(now);
+        ratePerHour = Math.max(minPerHour, ratePerHour * TIMEOUT_FACTOR);
+    }
+
+    @Override
+    public synchronized int getQueriesPerHour(long now) {
+        return window.count(now);
+    }
+
+    public synchronized double getRatePerHour() {
+        return ratePerHour;
+    }
+}
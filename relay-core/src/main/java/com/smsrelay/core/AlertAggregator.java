@@ -0,0 +1,115 @@
+package com.smsrelay.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Aynı türden tekrar eden uyarıları pencere başına tek uyarıda toplar.
+// Bir türün penceredeki ilk uyarısı hemen verilir; pencere kapanana kadar
+// gelenler sayılıp pencere sonunda tek uyarı olarak çıkar.
+public class AlertAggregator {
+    public static class Alert {
+        public final String kind;
+        public int count;
+        public long firstAt;
+        public long lastAt;
+        // Son uyarının ayrıntısı
+        public String detail;
+        long dueAt;
+
+        Alert(String kind, String detail, long now, long dueAt) {
+            this.kind = kind;
+            this.count = 1;
+            this.firstAt = now;
+            this.lastAt = now;
+            this.detail = detail;
+            this.dueAt = dueAt;
+        }
+    }
+
+    private final long window;
+    private final List<Alert> pending = new ArrayList<>();
+    // Türe göre açık pencerenin bitişi
+    private final Map<String, Long> windowEnds = new HashMap<>();
+
+    public AlertAggregator(long window) {
+        this.window = window;
+    }
+
+    public synchronized void record(String kind, String detail, long now) {
+        Long end = windowEnds.get(kind);
+        if (end == null || now >= end) {
+            windowEnds.put(kind, now + window);
+            pending.add(new Alert(kind, detail, now, now));
+            return;
+        }
+
+        for (Alert alert : pending) {
+            if (alert.kind.equals(kind) && alert.dueAt == end) {
+                alert.count++;
+                alert.lastAt = now;
+                alert.detail = detail;
+                return;
+            }
+        }
+        pending.add(new Alert(kind, detail, now, end));
+    }
+
+    // Zamanı gelen uyarıları çıkarıp döndürür; all ise hepsini
+    public synchronized List<Alert> drain(long now, boolean all) {
+        List<Alert> due = new ArrayList<>();
+        Iterator<Alert> it = pending.iterator();
+        while (it.hasNext()) {
+            Alert alert = it.next();
+            if (all || alert.dueAt <= now) {
+                it.remove();
+                due.add(alert);
+            }
+        }
+        windowEnds.values().removeIf(end -> end <= now);
+        return due;
+    }
+
+    // Teslim edilemeyen uyarılar geri konur; aynı türden bekleyenle birleşir
+    public synchronized void restore(List<Alert> alerts, long now) {
+        for (Alert alert : alerts) {
+            Alert same = null;
+            for (Alert other : pending) {
+                if (other.kind.equals(alert.kind)) {
+                    same = other;
+                    break;
+                }
+            }
+            if (same == null) {
+                alert.dueAt = now;
+                pending.add(alert);
+            } else {
+                same.count += alert.count;
+                same.firstAt = Math.min(same.firstAt, alert.firstAt);
+                if (alert.lastAt > same.lastAt) {
+                    same.lastAt = alert.lastAt;
+                    same.detail = alert.detail;
+                }
+                same.dueAt = Math.min(same.dueAt, now);
+            }
+        }
+    }
+
+    // Bir sonraki uyarının zamanına kalan süre; bekleyen yoksa -1
+    public synchronized long nextDueDelay(long now) {
+        long next = -1;
+        for (Alert alert : pending) {
+            long delay = Math.max(0, alert.dueAt - now);
+            if (next < 0 || delay < next) {
+                next = delay;
+            }
+        }
+        return next;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,110 @@
+package com.smsrelay.core;
+
+import java.util.Random;
+
+// Backend çağrıları için devre kesici. Art arda hatalarda devre açılır ve
+// çağrılar ağa çıkmadan reddedilir; açık kalma süresinin üst sınırı her
+// açılışta ikiye katlanır. Süre sıfır ile üst sınır arasında tamamen
+// rastgeledir (full jitter), backend düzeldiğinde relay'ler aynı anda gelmez;
+// yalnızca kısa bir alt sınır vardır. Süre dolunca tek bir deneme isteğine
+// izin verilir (yarı açık); başarılıysa devre kapanır ve yük yavaşça artırılır.
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // Devre bundan kısa açık kalmaz; deneme isteği hatanın hemen ardından gitmesin
+    static final long MIN_OPEN_MS = 500;
+
+    private final int failureThreshold;
+    private final long baseOpenMs;
+    private final long maxOpenMs;
+    private final long rampMs;
+    private final Random random;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private int trips = 0;
+    private long openUntil = 0;
+    private long closedAt = 0;
+    private boolean probeInFlight = false;
+    private long rejected = 0;
+
+    public CircuitBreaker(int failureThreshold, long baseOpenMs, long maxOpenMs, long rampMs, Random random) {
+        this.failureThreshold = failureThreshold;
+        this.baseOpenMs = baseOpenMs;
+        this.maxOpenMs = maxOpenMs;
+        this.rampMs = rampMs;
+        this.random = random;
+    }
+
+    // false ise çağrı yapılmamalıdır
+    public synchronized boolean allowRequest(long now) {
+        if (state == State.OPEN && now >= openUntil) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (!probeInFlight) {
+                    probeInFlight = true;
+                    return true;
+                }
+                rejected++;
+                return false;
+            default:
+                rejected++;
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess(long now) {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            trips = 0;
+            closedAt = now;
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized void onFailure(long now) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            trips++;
+            long ceiling = Math.min(maxOpenMs, baseOpenMs << Math.min(trips - 1, 20));
+            openUntil = now + Math.max(Math.min(MIN_OPEN_MS, ceiling), (long) (random.nextDouble() * ceiling));
+            state = State.OPEN;
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized State getState(long now) {
+        if (state == State.OPEN && now >= openUntil) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    // Bir sonraki çağrının yapılabileceği zamana kalan süre; kapalıysa 0
+    public synchronized long retryDelay(long now) {
+        return state == State.OPEN ? Math.max(0, openUntil - now) : 0;
+    }
+
+    // Devre kapandıktan sonra yük 0.1'den 1'e doğrusal artar
+    public synchronized double rampFactor(long now) {
+        if (state != State.CLOSED) {
+            return 0.1;
+        }
+        if (closedAt == 0 || now - closedAt >= rampMs) {
+            return 1.0;
+        }
+        return 0.1 + 0.9 * (now - closedAt) / rampMs;
+    }
+
+    public synchronized String summary(long now) {
+        return getState(now) + " | art arda hata: " + consecutiveFailures + " | açılma: " + trips +
+                " | reddedilen: " + rejected + (state == State.OPEN ? " | kalan: " + retryDelay(now) + "ms" : "");
+    }
+}
@@ -0,0 +1,122 @@
+package com.smsrelay.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Gönderim sırası: önce öncelik (büyük olan), sonra en yakın son tarih,
+// eşitlikte geliş sırası. Son tarihi geçmiş kayıtlar 5664'e gönderilmeden
+// ayıklanır. Relay thread'i ve durum okumaları için senkronizedir.
+public class DispatchQueue {
+    public interface ShedSink {
+        void onShed(PendingQuery query);
+    }
+
+    private static final class Item {
+        final PendingQuery query;
+        final long sequence;
+
+        Item(PendingQuery query, long sequence) {
+            this.query = query;
+            this.sequence = sequence;
+        }
+
+        long effectiveDeadline() {
+            return query.deadline > 0 ? query.deadline : Long.MAX_VALUE;
+        }
+    }
+
+    private final PriorityQueue<Item> heap = new PriorityQueue<>(16, (a, b) -> {
+        if (a.query.priority != b.query.priority) {
+            return Integer.compare(b.query.priority, a.query.priority);
+        }
+        int byDeadline = Long.compare(a.effectiveDeadline(), b.effectiveDeadline());
+        return byDeadline != 0 ? byDeadline : Long.compare(a.sequence, b.sequence);
+    });
+    private long sequence = 0;
+    // Kuyruktaki en yakın son tarih; bu zamandan önce tarama yapılmaz
+    private long earliestDeadline = Long.MAX_VALUE;
+
+    public synchronized void offer(PendingQuery query) {
+        Item item = new Item(query, sequence++);
+        heap.offer(item);
+        earliestDeadline = Math.min(earliestDeadline, item.effectiveDeadline());
+    }
+
+    public synchronized PendingQuery poll() {
+        Item item = heap.poll();
+        return item != null ? item.query : null;
+    }
+
+    public synchronized boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    public synchronized int size() {
+        return heap.size();
+    }
+
+    // Son tarihi geçmiş kayıtları çıkarır ve sink'e verir (kilit dışında)
+    public int shedExpired(long now, ShedSink sink) {
+        List<PendingQuery> shed = new ArrayList<>();
+        synchronized (this) {
+            if (now < earliestDeadline) {
+                return 0;
+            }
+
+            long earliest = Long.MAX_VALUE;
+            Iterator<Item> it = heap.iterator();
+            while (it.hasNext()) {
+                Item item = it.next();
+                long deadline = item.effectiveDeadline();
+                if (deadline <= now) {
+                    it.remove();
+                    shed.add(item.query);
+                } else {
+                    earliest = Math.min(earliest, deadline);
+                }
+            }
+            earliestDeadline = earliest;
+        }
+
+        for (PendingQuery query : shed) {
+            sink.onShed(query);
+        }
+        return shed.size();
+    }
+
+    public synchronized boolean remove(String queryId) {
+        Iterator<Item> it = heap.iterator();
+        while (it.hasNext()) {
+            if (it.next().query.queryId.equals(queryId)) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized List<String> ids() {
+        List<String> ids = new ArrayList<>(heap.size());
+        for (Item item : heap) {
+            ids.add(item.query.queryId);
+        }
+        return ids;
+    }
+
+    // Plakası eşleşen kayıtları kuyruktan çıkarıp döner
+    public synchronized List<PendingQuery> removeByPlate(String vehicleId) {
+        String plate = QueryRegistry.normalizePlate(vehicleId);
+        List<PendingQuery> removed = new ArrayList<>();
+        Iterator<Item> it = heap.iterator();
+        while (it.hasNext()) {
+            PendingQuery queued = it.next().query;
+            if (plate.equals(QueryRegistry.normalizePlate(queued.vehicleId))) {
+                it.remove();
+                removed.add(queued);
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,19 @@
+package com.smsrelay.core;
+
+// 5664'e ne zaman yeni sorgu gönderilebileceğine karar verir.
+// Tüm zamanlar System.currentTimeMillis() cinsindendir.
+public interface DispatchScheduler {
+    // Bir sonraki gönderime kadar beklenmesi gereken süre (0 = hemen)
+    long delayUntilNextSend(long now);
+
+    void onSent(long now);
+
+    // Sorgu cevabı tamamlandı; latency gönderimden tamamlanmaya kadar geçen süre
+    void onCompleted(long now, long latency);
+
+    // Cevap gelmedi ya da eksik kaldı
+    void onTimeout(long now);
+
+    // Son bir saatte gönderilen sorgu sayısı
+    int getQueriesPerHour(long now);
+}
@@ -0,0 +1,38 @@
+package com.smsrelay.core;
+
+// Eski davranış: her gönderimden ve her sonuçtan sonra sabit süre bekle
+public class FixedDispatchScheduler implements DispatchScheduler {
+    private final long wait;
+    private final SendWindow window = new SendWindow();
+    private long lastEvent = 0;
+
+    public FixedDispatchScheduler(long wait) {
+        this.wait = wait;
+    }
+
+    @Override
+    public synchronized long delayUntilNextSend(long now) {
+        return Math.max(0, lastEvent + wait - now);
+    }
+
+    @Override
+    public synchronized void onSent(long now) {
+        lastEvent = Math.max(lastEvent, now);
+        window.record(now);
+    }
+
+    @Override
+    public synchronized void onCompleted(long now, long latency) {
+        lastEvent = Math.max(lastEvent, now);
+    }
+
+    @Override
+    public synchronized void onTimeout(long now) {
+        lastEvent = Math.max(lastEvent, now);
+    }
+
+    @Override
+    public synchronized int getQueriesPerHour(long now) {
+        return window.count(now);
+    }
+}
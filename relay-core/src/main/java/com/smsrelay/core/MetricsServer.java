@@ -0,0 +1,115 @@
+package com.smsrelay.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+// Cihaz üzerinde metrikleri veren küçük HTTP sunucusu:
+// GET /metrics Prometheus metni, GET /metrics.json JSON özeti.
+// İstekler tek "metrics-server" thread'inde sırayla cevaplanır.
+public class MetricsServer {
+    private static final int READ_TIMEOUT_MS = 5000;
+    private static final int MAX_HEADER_LINES = 100;
+
+    private final RelayMetrics metrics;
+    private final Supplier<String> json;
+    private ServerSocket socket;
+    private Thread thread;
+
+    public MetricsServer(RelayMetrics metrics, Supplier<String> json) {
+        this.metrics = metrics;
+        this.json = json;
+    }
+
+    // port 0 ise sistem boş bir port seçer
+    public synchronized void start(int port) throws IOException {
+        if (socket != null) {
+            return;
+        }
+        socket = new ServerSocket(port);
+        ServerSocket server = socket;
+        thread = new Thread(() -> serve(server), "metrics-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized int getPort() {
+        return socket != null ? socket.getLocalPort() : -1;
+    }
+
+    public synchronized void stop() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        socket = null;
+        thread = null;
+    }
+
+    private void serve(ServerSocket server) {
+        while (!server.isClosed()) {
+            try (Socket client = server.accept()) {
+                client.setSoTimeout(READ_TIMEOUT_MS);
+                handle(client);
+            } catch (SocketException e) {
+                // stop() ile kapatıldı ya da istemci bağlantıyı kopardı
+            } catch (IOException e) {
+                // tek isteğin hatası sunucuyu durdurmaz
+            }
+        }
+    }
+
+    private void handle(Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+        String requestLine = in.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        // Başlıklar okunup atlanır
+        String line;
+        int headers = 0;
+        while ((line = in.readLine()) != null && !line.isEmpty() && ++headers < MAX_HEADER_LINES) {
+            // boş satıra kadar
+        }
+
+        String[] parts = requestLine.split(" ");
+        String method = parts[0];
+        String path = parts.length > 1 ? parts[1] : "/";
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+
+        OutputStream out = client.getOutputStream();
+        if (!"GET".equals(method)) {
+            respond(out, 405, "text/plain; charset=utf-8", "Yalnızca GET\n");
+        } else if ("/metrics".equals(path)) {
+            respond(out, 200, "text/plain; version=0.0.4; charset=utf-8", metrics.prometheus());
+        } else if ("/metrics.json".equals(path)) {
+            respond(out, 200, "application/json; charset=utf-8", json.get());
+        } else {
+            respond(out, 404, "text/plain; charset=utf-8", "Bulunamadı\n");
+        }
+    }
+
+    private static void respond(OutputStream out, int code, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String reason = code == 200 ? "OK" : code == 404 ? "Not Found" : "Method Not Allowed";
+        String head = "HTTP/1.1 " + code + " " + reason + "\r\n" +
+                "Content-Type: " + contentType + "\r\n" +
+                "Content-Length: " + bytes.length + "\r\n" +
+                "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.flush();
+    }
+}
@@ -0,0 +1,180 @@
+package com.smsrelay.core;
+
+import java.nio.charset.StandardCharsets;
+
+// 3GPP SMS-DELIVER PDU'sunu Android'e ihtiyaç duymadan çözer: gönderen,
+// metin ve birleştirme bilgisi. Kayıtlı izler cihaz dışında bu sınıfla
+// yeniden oynatılır. GSM 7 bit (varsayılan ve Türkçe tek kaydırma tablosu),
+// 8 bit ve UCS-2 desteklenir; kilitli kaydırma tabloları desteklenmez.
+public final class PduDecoder {
+    private static final String GSM_DEFAULT =
+            "@£$¥èéùìòÇ\nØø\rÅåΔ_ΦΓΛΩΠΨΣΘΞ\u001BÆæßÉ !\"#¤%&'()*+,-./0123456789:;<=>?" +
+            "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§¿abcdefghijklmnopqrstuvwxyzäöñüà";
+    private static final int ESCAPE = 0x1B;
+
+    private static final int IEI_SINGLE_SHIFT = 0x24;
+    private static final int LANGUAGE_TURKISH = 1;
+
+    private static final char[] EXTENSION = new char[128];
+    private static final char[] EXTENSION_TURKISH = new char[128];
+
+    static {
+        char[][] common = {
+                {0x0A, '\f'}, {0x14, '^'}, {0x28, '{'}, {0x29, '}'}, {0x2F, '\\'},
+                {0x3C, '['}, {0x3D, '~'}, {0x3E, ']'}, {0x40, '|'}, {0x65, '€'}};
+        for (char[] entry : common) {
+            EXTENSION[entry[0]] = entry[1];
+            EXTENSION_TURKISH[entry[0]] = entry[1];
+        }
+        char[][] turkish = {
+                {0x47, 'Ğ'}, {0x49, 'İ'}, {0x53, 'Ş'}, {0x63, 'ç'}, {0x67, 'ğ'}, {0x69, 'ı'}, {0x73, 'ş'}};
+        for (char[] entry : turkish) {
+            EXTENSION_TURKISH[entry[0]] = entry[1];
+        }
+    }
+
+    private PduDecoder() {
+    }
+
+    // Çözülmüş tek bir SMS segmenti
+    public static final class Decoded {
+        public final String sender;
+        public final String body;
+        public final PduHeaderParser.ConcatInfo concat;
+
+        Decoded(String sender, String body, PduHeaderParser.ConcatInfo concat) {
+            this.sender = sender;
+            this.body = body;
+            this.concat = concat;
+        }
+    }
+
+    // PDU SMS-DELIVER değilse ya da bozuksa null döner
+    public static Decoded decode(byte[] pdu) {
+        try {
+            int i = 0;
+            int smscLength = pdu[i++] & 0xFF;
+            i += smscLength;
+
+            int firstOctet = pdu[i++] & 0xFF;
+            if ((firstOctet & 0x03) != 0x00) {
+                return null; // SMS-DELIVER değil
+            }
+            boolean hasHeader = (firstOctet & 0x40) != 0;
+
+            int addressDigits = pdu[i++] & 0xFF;
+            int addressType = pdu[i++] & 0xFF;
+            int addressBytes = (addressDigits + 1) / 2;
+            String sender = decodeAddress(pdu, i, addressDigits, addressType);
+            i += addressBytes;
+
+            i += 1;                       // PID
+            int dcs = pdu[i++] & 0xFF;
+            i += 7;                       // zaman damgası
+            int userDataLength = pdu[i++] & 0xFF;
+            int userData = i;
+
+            int headerLength = hasHeader ? (pdu[userData] & 0xFF) + 1 : 0;
+            if (userData + headerLength > pdu.length) {
+                return null;
+            }
+            boolean turkish = hasHeader && usesTurkishShift(pdu, userData + 1, userData + headerLength);
+
+            String body;
+            switch (alphabet(dcs)) {
+                case 1:
+                    body = new String(pdu, userData + headerLength,
+                            Math.min(userDataLength, pdu.length - userData) - headerLength, StandardCharsets.ISO_8859_1);
+                    break;
+                case 2:
+                    body = new String(pdu, userData + headerLength,
+                            Math.min(userDataLength, pdu.length - userData) - headerLength, StandardCharsets.UTF_16BE);
+                    break;
+                default: {
+                    // Başlık septet sınırına hizalanır; dolgu bitleri atlanır
+                    int skip = (headerLength * 8 + 6) / 7;
+                    body = unpackSeptets(pdu, userData, userDataLength, skip, turkish);
+                }
+            }
+
+            PduHeaderParser.ConcatInfo concat = hasHeader ? PduHeaderParser.parseConcat(pdu) : null;
+            return new Decoded(sender, body, concat);
+        } catch (ArrayIndexOutOfBoundsException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    // 0: GSM 7 bit, 1: 8 bit, 2: UCS-2
+    private static int alphabet(int dcs) {
+        if ((dcs & 0xC0) == 0x00) {
+            int value = (dcs >> 2) & 0x03;
+            return value == 3 ? 0 : value;
+        }
+        if ((dcs & 0xF0) == 0xF0) {
+            return (dcs & 0x04) != 0 ? 1 : 0;
+        }
+        if ((dcs & 0xF0) == 0xE0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    private static boolean usesTurkishShift(byte[] pdu, int from, int end) {
+        int i = from;
+        while (i + 1 < end) {
+            int iei = pdu[i++] & 0xFF;
+            int length = pdu[i++] & 0xFF;
+            if (iei == IEI_SINGLE_SHIFT && length == 1 && (pdu[i] & 0xFF) == LANGUAGE_TURKISH) {
+                return true;
+            }
+            i += length;
+        }
+        return false;
+    }
+
+    private static String decodeAddress(byte[] pdu, int from, int digits, int type) {
+        if ((type & 0x70) == 0x50) {
+            // Alfanümerik gönderen adı (ör. operatör kısa adı)
+            return unpackSeptets(pdu, from, digits * 4 / 7, 0, false);
+        }
+
+        StringBuilder address = new StringBuilder(digits + 1);
+        if ((type & 0x70) == 0x10) {
+            address.append('+');
+        }
+        for (int d = 0; d < digits; d++) {
+            int octet = pdu[from + d / 2] & 0xFF;
+            int nibble = d % 2 == 0 ? octet & 0x0F : octet >> 4;
+            address.append(nibble < 10 ? (char) ('0' + nibble) : "*#abc".charAt(nibble - 10));
+        }
+        return address.toString();
+    }
+
+    private static String unpackSeptets(byte[] pdu, int from, int count, int skip, boolean turkish) {
+        char[] extension = turkish ? EXTENSION_TURKISH : EXTENSION;
+        StringBuilder text = new StringBuilder(count);
+        boolean escaped = false;
+
+        for (int s = skip; s < count; s++) {
+            int bit = s * 7;
+            int index = from + bit / 8;
+            int shift = bit % 8;
+            int value = (pdu[index] & 0xFF) >> shift;
+            if (shift > 1) {
+                value |= (pdu[index + 1] & 0xFF) << (8 - shift);
+            }
+            value &= 0x7F;
+
+            if (escaped) {
+                char c = extension[value];
+                text.append(c != 0 ? c : ' ');
+                escaped = false;
+            } else if (value == ESCAPE) {
+                escaped = true;
+            } else {
+                text.append(GSM_DEFAULT.charAt(value));
+            }
+        }
+        return text.toString();
+    }
+}
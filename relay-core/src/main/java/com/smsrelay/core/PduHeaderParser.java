@@ -0,0 +1,74 @@
+package com.smsrelay.core;
+
+// 3GPP SMS-DELIVER PDU'sunun kullanıcı veri başlığından (UDH) birleştirme
+// bilgisini okur. SmsMessage bu alanları dışarı açmadığı için ham baytlar
+// doğrudan çözülür.
+public final class PduHeaderParser {
+    private static final int IEI_CONCAT_8BIT = 0x00;
+    private static final int IEI_CONCAT_16BIT = 0x08;
+
+    private PduHeaderParser() {
+    }
+
+    // Çok parçalı SMS'in bir parçası
+    public static final class ConcatInfo {
+        public final int reference;
+        public final int total;
+        public final int sequence;
+
+        public ConcatInfo(int reference, int total, int sequence) {
+            this.reference = reference;
+            this.total = total;
+            this.sequence = sequence;
+        }
+    }
+
+    // PDU birleştirme başlığı taşımıyorsa ya da çözülemiyorsa null döner
+    public static ConcatInfo parseConcat(byte[] pdu) {
+        try {
+            int i = 0;
+            int smscLength = pdu[i++] & 0xFF;
+            i += smscLength;
+
+            int firstOctet = pdu[i++] & 0xFF;
+            if ((firstOctet & 0x03) != 0x00 || (firstOctet & 0x40) == 0) {
+                return null; // SMS-DELIVER değil ya da UDH yok
+            }
+
+            int addressDigits = pdu[i++] & 0xFF;
+            i += 1 + (addressDigits + 1) / 2; // adres türü + adres
+            i += 1 + 1 + 7;                   // PID, DCS, zaman damgası
+            i += 1;                           // UDL
+
+            int headerLength = pdu[i++] & 0xFF;
+            int end = i + headerLength;
+            if (end > pdu.length) {
+                return null;
+            }
+
+            while (i + 1 < end) {
+                int iei = pdu[i++] & 0xFF;
+                int length = pdu[i++] & 0xFF;
+
+                if (iei == IEI_CONCAT_8BIT && length == 3) {
+                    return concat(pdu[i] & 0xFF, pdu[i + 1] & 0xFF, pdu[i + 2] & 0xFF);
+                }
+                if (iei == IEI_CONCAT_16BIT && length == 4) {
+                    int reference = ((pdu[i] & 0xFF) << 8) | (pdu[i + 1] & 0xFF);
+                    return concat(reference, pdu[i + 2] & 0xFF, pdu[i + 3] & 0xFF);
+                }
+                i += length;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // Bozuk PDU: tek parça kabul edilir
+        }
+        return null;
+    }
+
+    private static ConcatInfo concat(int reference, int total, int sequence) {
+        if (total < 2 || sequence < 1 || sequence > total) {
+            return null;
+        }
+        return new ConcatInfo(reference, total, sequence);
+    }
+}
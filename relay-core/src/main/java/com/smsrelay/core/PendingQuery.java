@@ -0,0 +1,181 @@
+package com.smsrelay.core;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+public class PendingQuery {
+    // Tüm okumalarda paylaşılan, durumsuz adaptör
+    public static final TypeAdapter<PendingQuery> ADAPTER = new Adapter();
+
+    // Yükte öncelik yoksa; servis yapılandırılmış varsayılanı uygular
+    public static final int UNSET_PRIORITY = Integer.MIN_VALUE;
+
+    public interface Sink {
+        void accept(PendingQuery query);
+    }
+
+    // Zorunlu alanı eksik ya da nesne olmayan eleman atlandığında neden verilir
+    public interface SkipListener {
+        void onSkipped(String reason);
+    }
+
+    public String queryId;
+    public String smsMessage;
+    public String userPhone;
+    public String vehicleId;
+    public String backendUrl;
+    // Büyük olan önce gönderilir
+    public int priority = UNSET_PRIORITY;
+    // Bu zamandan (epoch ms) sonra sorgu anlamını yitirir; 0 = süresiz
+    public long deadline = 0;
+    // Relay'in sorguyu kabul ettiği an; kuyrukta bekleme ölçümü için, yükte yer almaz
+    public long enqueuedAt = 0;
+
+    public PendingQuery(String queryId, String smsMessage, String userPhone, String vehicleId, String backendUrl) {
+        this.queryId = queryId;
+        this.smsMessage = smsMessage;
+        this.userPhone = userPhone;
+        this.vehicleId = vehicleId;
+        this.backendUrl = backendUrl;
+    }
+
+    public static int readAll(Reader source, String backendUrl, Sink sink) throws IOException {
+        return readAll(source, backendUrl, sink, reason -> { });
+    }
+
+    // Sorgu dizisini (ya da tek sorgu nesnesini) akış halinde okur;
+    // her sorgu okunur okunmaz sink'e verilir, gövde belleğe alınmaz.
+    // Bozuk eleman atlanıp bildirilir, partinin geri kalanı okunur.
+    // Dönen sayı sink'e verilen sorgu sayısıdır
+    public static int readAll(Reader source, String backendUrl, Sink sink, SkipListener skipped) throws IOException {
+        JsonReader reader = new JsonReader(source);
+        int count = 0;
+
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            PendingQuery query = read(reader, backendUrl, skipped);
+            if (query == null) {
+                return 0;
+            }
+            sink.accept(query);
+            return 1;
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            PendingQuery query = read(reader, backendUrl, skipped);
+            if (query != null) {
+                sink.accept(query);
+                count++;
+            }
+        }
+        reader.endArray();
+        return count;
+    }
+
+    private static PendingQuery read(JsonReader reader, String backendUrl, SkipListener skipped) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            skipped.onSkipped("Sorgu nesnesi değil: " + reader.peek());
+            reader.skipValue();
+            return null;
+        }
+        PendingQuery query = ADAPTER.read(reader);
+        if (query.queryId == null || query.smsMessage == null || query.userPhone == null) {
+            skipped.onSkipped("Eksik sorgu alanı, atlandı: " + query.queryId);
+            return null;
+        }
+        query.backendUrl = backendUrl;
+        return query;
+    }
+
+    private static class Adapter extends TypeAdapter<PendingQuery> {
+        @Override
+        public PendingQuery read(JsonReader in) throws IOException {
+            String id = null;
+            String smsMessage = null;
+            String userPhone = null;
+            String vehicleId = null;
+            int priority = UNSET_PRIORITY;
+            long deadline = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        id = in.nextString();
+                        break;
+                    case "sms_message":
+                        smsMessage = in.nextString();
+                        break;
+                    case "user_phone":
+                        userPhone = in.nextString();
+                        break;
+                    case "vehicle_id":
+                        vehicleId = in.nextString();
+                        break;
+                    case "priority": {
+                        double value = readNumber(in);
+                        if (!Double.isNaN(value)) {
+                            priority = (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, value));
+                        }
+                        break;
+                    }
+                    case "deadline": {
+                        // Saniye cinsinden epoch da kabul edilir
+                        double value = readNumber(in);
+                        if (!Double.isNaN(value) && value > 0) {
+                            deadline = (long) value;
+                            if (deadline < 100000000000L) deadline *= 1000;
+                        }
+                        break;
+                    }
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            PendingQuery query = new PendingQuery(id, smsMessage, userPhone, vehicleId != null ? vehicleId : smsMessage, null);
+            query.priority = priority;
+            query.deadline = deadline;
+            return query;
+        }
+
+        // Sayı ya da sayı içeren metin kabul edilir (ör. "5", 2.0). Okunamayan değer
+        // NaN döner ve alan atlanır; tek bir bozuk alan tüm partiyi düşürmez
+        private static double readNumber(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+                in.skipValue();
+                return Double.NaN;
+            }
+            try {
+                double value = Double.parseDouble(in.nextString().trim());
+                return Double.isInfinite(value) ? Double.NaN : value;
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        @Override
+        public void write(JsonWriter out, PendingQuery query) throws IOException {
+            out.beginObject();
+            out.name("id").value(query.queryId);
+            out.name("sms_message").value(query.smsMessage);
+            out.name("user_phone").value(query.userPhone);
+            out.name("vehicle_id").value(query.vehicleId);
+            if (query.priority != UNSET_PRIORITY) out.name("priority").value(query.priority);
+            if (query.deadline > 0) out.name("deadline").value(query.deadline);
+            out.endObject();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.smsrelay.core;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+// Kuyruktaki/uçuştaki sorgu ID'leri için karma küme ve yakın zamanda
+// biten sorgular için süreli, sınırlı bir liste. Backend bir sorguyu geç
+// kapatsa bile aynı ID ikinci kez kuyruğa girip 5664'e gönderilmez.
+public class QueryDedupIndex {
+    private static final int RECENT_CAPACITY = 2000;
+    private static final long RECENT_TTL = 30 * 60 * 1000; // 30 dakika
+
+    private static final QueryDedupIndex INSTANCE = new QueryDedupIndex(RECENT_CAPACITY, RECENT_TTL);
+
+    private final int recentCapacity;
+    private final long recentTtl;
+    // Bitiş zamanları ve süre aşımı için; RelayEngine ile aynı saat verilmelidir
+    private final LongSupplier clock;
+    private final Set<String> pending = new HashSet<>();
+    // Ekleme sırası = bitiş sırası; en eski kayıt her zaman baştadır
+    private final LinkedHashMap<String, Long> recentlyFinished = new LinkedHashMap<>();
+
+    public static QueryDedupIndex get() {
+        return INSTANCE;
+    }
+
+    public QueryDedupIndex(int recentCapacity, long recentTtl) {
+        this(recentCapacity, recentTtl, System::currentTimeMillis);
+    }
+
+    public QueryDedupIndex(int recentCapacity, long recentTtl, LongSupplier clock) {
+        this.recentCapacity = recentCapacity;
+        this.recentTtl = recentTtl;
+        this.clock = clock;
+    }
+
+    // Sorgu yeni ise kaydeder ve true döner; kuyrukta, uçuşta ya da
+    // yakın zamanda bitmişse false döner
+    public synchronized boolean tryAdd(String queryId) {
+        long now = clock.getAsLong();
+        expire(now);
+
+        if (pending.contains(queryId) || recentlyFinished.containsKey(queryId)) {
+            return false;
+        }
+        pending.add(queryId);
+        return true;
+    }
+
+    public synchronized void markFinished(String queryId) {
+        long now = clock.getAsLong();
+        pending.remove(queryId);
+        recentlyFinished.remove(queryId);
+        recentlyFinished.put(queryId, now);
+
+        if (recentlyFinished.size() > recentCapacity) {
+            Iterator<String> it = recentlyFinished.keySet().iterator();
+            it.next();
+            it.remove();
+        }
+        expire(now);
+    }
+
+    // Sorgu bu relay'den çıktı ama bitmedi (ör. kirası başka relay'e geçti);
+    // ileride tekrar gelirse kabul edilir
+    public synchronized void forget(String queryId) {
+        pending.remove(queryId);
+    }
+
+    public synchronized boolean contains(String queryId) {
+        expire(clock.getAsLong());
+        return pending.contains(queryId) || recentlyFinished.containsKey(queryId);
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Long>> it = recentlyFinished.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue() < recentTtl) {
+                break;
+            }
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.smsrelay.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Kuyruk ve uçuştaki sorgular için eklemeli (append-only) günlük dosyası.
+// Süreç öldürülse de servis yeniden başlarken kuyruğu ve gelen parçaları
+// buradan kurar; gönderilmiş sorgular için 5664'e tekrar SMS atılmaz.
+// Yazma hatasından sonra dosyaya ekleme yapılmaz; sıradaki kayıttan önce
+// dosya bellekteki durumdan yeniden yazılır, yarım kayıt ortada kalmaz.
+public class QueryJournal {
+    private static final int MAGIC = 0x534A524E; // "SJRN"
+    private static final int VERSION = 3; // 2: DISPATCH kaydına SIM, 3: ENQUEUE kaydına öncelik/son tarih eklendi
+
+    private static final byte ENQUEUE = 1;
+    private static final byte DISPATCH = 2;
+    private static final byte PART = 3;
+    private static final byte DONE = 4;
+
+    private static final long SYNC_DELAY_MS = 200;
+    private static final int COMPACT_THRESHOLD = 500;
+
+    private final File file;
+    // Kayıt zamanları; RelayEngine ile aynı saat verilmelidir, kurtarmada süreler buna göre hesaplanır
+    private final LongSupplier clock;
+    private final Map<String, Entry> live = new LinkedHashMap<>();
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "query-journal");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Yazma ve sync hataları buraya bildirilir
+    public interface ErrorListener {
+        void onError(String operation, IOException e);
+    }
+
+    private FileOutputStream fileOut;
+    private BufferedOutputStream out;
+    // Kayıt önce burada tamamlanır, dosyaya bütün olarak eklenir
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private boolean syncScheduled = false;
+    private int deadRecords = 0;
+    // Son yazma başarısız oldu; dosya bellekteki durumdan yeniden yazılmadan eklenmez
+    private boolean damaged = false;
+    private volatile ErrorListener errorListener = (operation, e) -> { };
+
+    // Günlükteki tek bir sorgunun son durumu
+    public static class Entry {
+        public final PendingQuery query;
+        public long enqueuedAt;
+        public long dispatchedAt = 0;
+        public int subscriptionId = SimSlot.DEFAULT_SUBSCRIPTION;
+        public final List<Part> parts = new ArrayList<>();
+
+        public Entry(PendingQuery query, long enqueuedAt) {
+            this.query = query;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        public boolean isDispatched() {
+            return dispatchedAt > 0;
+        }
+    }
+
+    public static class Part {
+        public final int msgNum;
+        public final int totalNum;
+        public final String text;
+        public final long receivedAt;
+
+        public Part(int msgNum, int totalNum, String text, long receivedAt) {
+            this.msgNum = msgNum;
+            this.totalNum = totalNum;
+            this.text = text;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    private static QueryJournal instance;
+
+    public QueryJournal(File file) {
+        this(file, System::currentTimeMillis);
+    }
+
+    public QueryJournal(File file, LongSupplier clock) {
+        this.file = file;
+        this.clock = clock;
+    }
+
+    public void setErrorListener(ErrorListener listener) {
+        this.errorListener = listener != null ? listener : (operation, e) -> { };
+    }
+
+    public static synchronized QueryJournal get(File filesDir) {
+        if (instance == null) {
+            instance = new QueryJournal(new File(filesDir, "query_journal.bin"));
+        }
+        return instance;
+    }
+
+    // Dosyayı okuyup canlı durumu kurar, ardından sıkıştırılmış halini yazar.
+    // Dönen liste günlük sırasını korur (önce eklenen önce).
+    public synchronized List<Entry> recover() throws IOException {
+        closeQuietly();
+        live.clear();
+
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC) {
+                    int version = in.readInt();
+                    if (version >= 1 && version <= VERSION) {
+                        readRecords(in, version);
+                    }
+                }
+            } catch (EOFException e) {
+                // Yarım kalmış son kayıt: okunabilen kısım geçerlidir
+            }
+        }
+
+        compact();
+        return new ArrayList<>(live.values());
+    }
+
+    private void readRecords(DataInputStream in, int version) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            long time = in.readLong();
+            String queryId = in.readUTF();
+
+            switch (type) {
+                case ENQUEUE: {
+                    PendingQuery query = new PendingQuery(queryId, in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+                    if (version >= 3) {
+                        query.priority = in.readInt();
+                        query.deadline = in.readLong();
+                    }
+                    if (!live.containsKey(queryId)) {
+                        live.put(queryId, new Entry(query, time));
+                    }
+                    break;
+                }
+                case DISPATCH: {
+                    int subscriptionId = version >= 2 ? in.readInt() : SimSlot.DEFAULT_SUBSCRIPTION;
+                    Entry entry = live.get(queryId);
+                    if (entry != null) {
+                        entry.dispatchedAt = time;
+                        entry.subscriptionId = subscriptionId;
+                    }
+                    break;
+                }
+                case PART: {
+                    int msgNum = in.readInt();
+                    int totalNum = in.readInt();
+                    String text = in.readUTF();
+                    Entry entry = live.get(queryId);
+                    if (entry != null) entry.parts.add(new Part(msgNum, totalNum, text, time));
+                    break;
+                }
+                case DONE:
+                    live.remove(queryId);
+                    break;
+                default:
+                    throw new EOFException("Bilinmeyen kayıt türü: " + type);
+            }
+        }
+    }
+
+    public synchronized void recordEnqueue(PendingQuery query) {
+        if (live.containsKey(query.queryId)) return;
+        long now = clock.getAsLong();
+        live.put(query.queryId, new Entry(query, now));
+        try {
+            writeEnqueue(beginRecord(), now, query);
+            appendRecord();
+        } catch (IOException e) {
+            onWriteFailed("enqueue", e);
+        }
+        scheduleSync();
+    }
+
+    // SMS gönderilmeden önce çağrılır ve diske yazılana kadar bekler;
+    // böylece yeniden başlatmada aynı sorgu ikinci kez gönderilmez.
+    // false dönerse kayıt diske ulaşmamıştır ve SMS gönderilmemelidir
+    public synchronized boolean recordDispatch(String queryId, int subscriptionId) {
+        Entry entry = live.get(queryId);
+        if (entry == null) return true;
+        long now = clock.getAsLong();
+        entry.dispatchedAt = now;
+        entry.subscriptionId = subscriptionId;
+        try {
+            DataOutputStream data = beginRecord();
+            writeTo(data, DISPATCH, now, queryId);
+            data.writeInt(subscriptionId);
+            appendRecord();
+            flushAndSync();
+        } catch (IOException e) {
+            // Gönderilmeyecek; dosya yeniden yazılırken gönderilmiş sayılmasın
+            entry.dispatchedAt = 0;
+            entry.subscriptionId = SimSlot.DEFAULT_SUBSCRIPTION;
+            onWriteFailed("dispatch", e);
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void recordPart(String queryId, int msgNum, int totalNum, String text) {
+        Entry entry = live.get(queryId);
+        if (entry == null) return;
+        long now = clock.getAsLong();
+        entry.parts.add(new Part(msgNum, totalNum, text, now));
+        try {
+            writePart(beginRecord(), now, queryId, msgNum, totalNum, text);
+            appendRecord();
+        } catch (IOException e) {
+            onWriteFailed("part", e);
+        }
+        scheduleSync();
+    }
+
+    public synchronized void recordDone(String queryId) {
+        Entry entry = live.remove(queryId);
+        if (entry == null) return;
+        try {
+            writeTo(beginRecord(), DONE, clock.getAsLong(), queryId);
+            appendRecord();
+        } catch (IOException e) {
+            onWriteFailed("done", e);
+        }
+        deadRecords += 2 + entry.parts.size() + (entry.isDispatched() ? 1 : 0);
+        scheduleSync();
+
+        if (deadRecords >= COMPACT_THRESHOLD) {
+            try {
+                compact();
+            } catch (IOException e) {
+                onWriteFailed("compact", e);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return live.size();
+    }
+
+    private DataOutputStream beginRecord() {
+        recordBytes.reset();
+        return record;
+    }
+
+    // Tamamlanan kaydı dosyaya ekler. Önceki bir hatadan sonra dosya önce
+    // bellekteki durumdan yeniden yazılır; o yazım bu kaydı da içerir
+    private void appendRecord() throws IOException {
+        if (damaged) {
+            compact();
+            return;
+        }
+        ensureOpen();
+        recordBytes.writeTo(out);
+    }
+
+    // Yarım kalmış olabilecek tampon dosyaya yazılmaz; sonraki kayıt
+    // dosyayı baştan kurar
+    private void onWriteFailed(String operation, IOException e) {
+        discard();
+        damaged = true;
+        errorListener.onError(operation, e);
+    }
+
+    private void scheduleSync() {
+        if (syncScheduled) return;
+        syncScheduled = true;
+        syncExecutor.schedule(() -> {
+            synchronized (QueryJournal.this) {
+                syncScheduled = false;
+                sync();
+            }
+        }, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void sync() {
+        if (out == null) return;
+        try {
+            flushAndSync();
+        } catch (IOException e) {
+            onWriteFailed("sync", e);
+        }
+    }
+
+    private void flushAndSync() throws IOException {
+        if (out == null) return;
+        out.flush();
+        fileOut.getFD().sync();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (out != null) return;
+        boolean fresh = !file.exists() || file.length() == 0;
+        fileOut = new FileOutputStream(file, true);
+        out = new BufferedOutputStream(fileOut);
+        if (fresh) {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+        }
+    }
+
+    // Yalnızca canlı kayıtları yeni dosyaya yazar ve eskisinin yerine koyar;
+    // kurtarma süresi tamamlanmış sorgu sayısıyla değil kuyruk boyuyla sınırlı kalır
+    private void compact() throws IOException {
+        closeQuietly();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(tmpOut));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+
+            for (Entry entry : live.values()) {
+                PendingQuery q = entry.query;
+                writeEnqueue(data, entry.enqueuedAt, q);
+                if (entry.isDispatched()) {
+                    writeTo(data, DISPATCH, entry.dispatchedAt, q.queryId);
+                    data.writeInt(entry.subscriptionId);
+                }
+                for (Part part : entry.parts) {
+                    writePart(data, part.receivedAt, q.queryId, part.msgNum, part.totalNum, part.text);
+                }
+            }
+            data.flush();
+            tmpOut.getFD().sync();
+        }
+
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Günlük sıkıştırılamadı: " + file);
+        }
+        deadRecords = 0;
+        damaged = false;
+    }
+
+    private static void writeEnqueue(DataOutputStream data, long time, PendingQuery q) throws IOException {
+        writeTo(data, ENQUEUE, time, q.queryId, q.smsMessage, q.userPhone, q.vehicleId, q.backendUrl);
+        data.writeInt(q.priority);
+        data.writeLong(q.deadline);
+    }
+
+    private static void writePart(DataOutputStream data, long time, String queryId, int msgNum, int totalNum,
+                                  String text) throws IOException {
+        data.writeByte(PART);
+        data.writeLong(time);
+        data.writeUTF(queryId);
+        data.writeInt(msgNum);
+        data.writeInt(totalNum);
+        data.writeUTF(text);
+    }
+
+    private static void writeTo(DataOutputStream data, byte type, long time, String queryId, String... fields)
+            throws IOException {
+        data.writeByte(type);
+        data.writeLong(time);
+        data.writeUTF(queryId);
+        for (String field : fields) {
+            data.writeUTF(field != null ? field : "");
+        }
+    }
+
+    // Tampondaki kayıtlar bütündür (bkz. appendRecord); diske yazılıp kapatılır
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                flushAndSync();
+            } catch (IOException e) {
+                onWriteFailed("close", e);
+                return;
+            }
+        }
+        discard();
+    }
+
+    // Tamponu yazmadan kapatır; hatadan sonra yarım kayıt dosyaya eklenmesin
+    private void discard() {
+        if (fileOut != null) {
+            try {
+                fileOut.close();
+            } catch (IOException ignored) {
+                // Dosya zaten kullanılamıyor; sonraki yazım yeniden açar
+            }
+        }
+        out = null;
+        fileOut = null;
+    }
+
+    public synchronized void close() {
+        closeQuietly();
+    }
+}
@@ -0,0 +1,350 @@
+package com.smsrelay.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Aynı anda uçuşta olan sorgular. Gönderen taraf ekler, gelen parçalar
+// plaka ya da geldiği SIM üzerinden doğru sorguya yönlendirilir. Plakasız
+// parça için olası sahipler "Mesaj (n/m)" numarasına göre elenir; tek sahip
+// kalmazsa tahmin yapılmaz, parça sonraki parçalar sahibini belirleyene kadar
+// bekletilir. Başarısız sorgular geç cevapları gelebileceği süre boyunca
+// olası sahip sayılmaya devam eder.
+public class QueryRegistry {
+    private static final QueryRegistry INSTANCE = new QueryRegistry();
+    // Geç gelen cevabı tanımak için hatırlanan son sonuçlanmış plaka sayısı
+    private static final int RETIRED_PLATES = 64;
+    private static final int LATE_QUERIES = 64;
+    private static final int MAX_HELD_PARTS = 256;
+
+    // Bekletilen parçanın sahibi belli oldu; motor parçayı bu sorguya ekler
+    public static class Resolved {
+        public final ActiveQuery active;
+        public final String part;
+        public final long receivedAt;
+
+        Resolved(ActiveQuery active, String part, long receivedAt) {
+            this.active = active;
+            this.part = part;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    // Sahibi henüz ayırt edilemeyen plakasız parça ve olası sahipleri
+    private static class HeldPart {
+        final String part;
+        final int msgNum;
+        final int totalNum;
+        final long receivedAt;
+        final List<ActiveQuery> owners;
+
+        HeldPart(String part, int msgNum, int totalNum, long receivedAt, List<ActiveQuery> owners) {
+            this.part = part;
+            this.msgNum = msgNum;
+            this.totalNum = totalNum;
+            this.receivedAt = receivedAt;
+            this.owners = owners;
+        }
+    }
+
+    private final Map<String, ActiveQuery> activeQueries = new LinkedHashMap<>();
+    // Kayıttan düşmüş sorguların plakaları; zaman aşımından sonra gelen cevap
+    // aynı SIM'deki yeni sorguya eklenmesin diye tutulur
+    private final Map<String, Boolean> retiredPlates = new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RETIRED_PLATES;
+        }
+    };
+    // Geç cevabı gelmekte olan SIM'ler; yeni bir cevap başlayana kadar
+    // plakasız parçalar da o cevaba ait sayılır
+    private final Set<Integer> lateReplies = new HashSet<>();
+    // Başarısız sorgu -> geç cevabının gelebileceği son an. Bu sorgulara gelen
+    // parçalar yalnızca sahipliği belirlemek için izlenir, kullanıcıya gitmez
+    private final Map<ActiveQuery, Long> lateQueries = new LinkedHashMap<ActiveQuery, Long>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ActiveQuery, Long> eldest) {
+            return size() > LATE_QUERIES;
+        }
+    };
+    private final List<HeldPart> heldParts = new ArrayList<>();
+
+    public static QueryRegistry get() {
+        return INSTANCE;
+    }
+
+    public synchronized void add(ActiveQuery active) {
+        activeQueries.put(active.getQueryId(), active);
+    }
+
+    public synchronized ActiveQuery remove(String queryId) {
+        ActiveQuery removed = activeQueries.remove(queryId);
+        if (removed != null) {
+            String plate = normalizePlate(removed.query.vehicleId);
+            if (!plate.isEmpty()) {
+                retiredPlates.put(plate, Boolean.TRUE);
+            }
+            // Olası sahiplerinden hiçbiri uçuşta kalmayan parça kimseye verilemez
+            heldParts.removeIf(held -> !hasActiveOwner(held));
+        }
+        return removed;
+    }
+
+    // Başarısız sorgunun cevabı until'e kadar gelebilir; o zamana kadar gelen
+    // plakasız parçalar için olası sahip sayılır
+    public synchronized void retire(ActiveQuery active, long until) {
+        lateQueries.put(active, until);
+    }
+
+    public synchronized int heldCount() {
+        return heldParts.size();
+    }
+
+    public synchronized ActiveQuery find(String queryId) {
+        return activeQueries.get(queryId);
+    }
+
+    public synchronized boolean contains(String queryId) {
+        return activeQueries.containsKey(queryId);
+    }
+
+    public synchronized int size() {
+        return activeQueries.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return activeQueries.isEmpty();
+    }
+
+    public synchronized int countBySubscription(int subscriptionId) {
+        int count = 0;
+        for (ActiveQuery active : activeQueries.values()) {
+            if (active.subscriptionId == subscriptionId) count++;
+        }
+        return count;
+    }
+
+    // Aynı plakayı sorgulayan uçuştaki sorgu
+    public synchronized ActiveQuery findByPlate(String vehicleId) {
+        String plate = normalizePlate(vehicleId);
+        if (plate.isEmpty()) {
+            return null;
+        }
+        for (ActiveQuery active : activeQueries.values()) {
+            if (plate.equals(normalizePlate(active.query.vehicleId))) {
+                return active;
+            }
+        }
+        return null;
+    }
+
+    public synchronized List<ActiveQuery> snapshot() {
+        return new ArrayList<>(activeQueries.values());
+    }
+
+    // Gelen parçanın hangi sorguya ait olduğunu bulur.
+    // msgNum/totalNum: başlıklı parçalarda "Mesaj (n/m)" içindeki n ve m, başlıksızlarda 0.
+    // subscriptionId: parçanın geldiği SIM; biliniyorsa yalnızca o SIM'den
+    // gönderilmiş sorgu aday olur. receivedAt: parçanın geliş zamanı; ondan
+    // sonra gönderilmiş sorgu parçanın sahibi olamaz. Plakasız parçanın birden
+    // fazla olası sahibi varsa null döner ve parça bekletilir (bkz. heldCount)
+    public synchronized ActiveQuery route(String part, int msgNum, int totalNum, int subscriptionId, long receivedAt) {
+        List<ActiveQuery> candidates = candidatesFor(subscriptionId, receivedAt);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        ActiveQuery target = matchByPlate(candidates, part);
+        if (target != null) {
+            lateReplies.remove(subscriptionId);
+            if (lateQueries.containsKey(target)) {
+                // Aynı plakayı soran uçuştaki sorgu varsa içerik aynıdır, ona verilir
+                ActiveQuery live = liveWithPlate(candidates, target);
+                if (live == null) {
+                    track(target, part, msgNum, totalNum);
+                    return null;
+                }
+                target = live;
+            }
+            return target;
+        }
+
+        if (mentionsRetiredPlate(part)) {
+            // İzlenmeyen eski sorgunun geç cevabı; başka sorguya eklenmez
+            lateReplies.add(subscriptionId);
+            return null;
+        }
+        if (msgNum == 1) {
+            lateReplies.remove(subscriptionId);
+        } else if (lateReplies.contains(subscriptionId)) {
+            // Geç cevabın devam parçası
+            return null;
+        }
+
+        List<ActiveQuery> owners = possibleOwners(candidates, msgNum, totalNum);
+        if (owners.isEmpty()) {
+            return null;
+        }
+        ActiveQuery owner = soleOwner(owners);
+        if (owner == null) {
+            if (msgNum == 0) {
+                // Başlıksız parça yalnızca geldiği anda açık olan mesaja eklenebilir,
+                // sonradan yerine konamaz: eksik kalan sorgular başarılı sayılmaz
+                for (ActiveQuery active : owners) {
+                    active.ambiguous = true;
+                }
+            } else if (heldParts.size() < MAX_HELD_PARTS) {
+                heldParts.add(new HeldPart(part, msgNum, totalNum, receivedAt, owners));
+            }
+            return null;
+        }
+        if (lateQueries.containsKey(owner)) {
+            track(owner, part, msgNum, totalNum);
+            return null;
+        }
+        return owner;
+    }
+
+    // Yeni parçalar eklendikçe bekletilen parçaların olası sahipleri yeniden elenir.
+    // Tek sahibi kalan parçalar döner; motor onları ekledikten sonra tekrar çağırır
+    public synchronized List<Resolved> resolveHeld() {
+        List<Resolved> resolved = new ArrayList<>();
+        Iterator<HeldPart> it = heldParts.iterator();
+        while (it.hasNext()) {
+            HeldPart held = it.next();
+            List<ActiveQuery> owners = possibleOwners(held.owners, held.msgNum, held.totalNum);
+            ActiveQuery owner = soleOwner(owners);
+            if (owners.isEmpty() || !hasActiveOwner(held)) {
+                it.remove();
+            } else if (owner != null) {
+                it.remove();
+                if (lateQueries.containsKey(owner) || !activeQueries.containsValue(owner)) {
+                    track(owner, held.part, held.msgNum, held.totalNum);
+                } else {
+                    resolved.add(new Resolved(owner, held.part, held.receivedAt));
+                }
+            }
+        }
+        return resolved;
+    }
+
+    // Numaralı parçanın sahibi o numarayı henüz almamış ve toplamı uyan sorgu
+    // olabilir; başlıksız parça için eleme yapılamaz
+    private static List<ActiveQuery> possibleOwners(List<ActiveQuery> candidates, int msgNum, int totalNum) {
+        List<ActiveQuery> owners = new ArrayList<>();
+        for (ActiveQuery active : candidates) {
+            if (msgNum > 0) {
+                int expected = active.assembler.getExpectedCount();
+                if (active.assembler.hasArrived(msgNum) || (expected > 0 && totalNum > 0 && expected != totalNum)) {
+                    continue;
+                }
+            }
+            owners.add(active);
+        }
+        return owners;
+    }
+
+    // Tek olası sahip ya da hepsi aynı plakayı soruyorsa (içerik aynıdır) uçuştaki ilki
+    private ActiveQuery soleOwner(List<ActiveQuery> owners) {
+        if (owners.size() == 1) {
+            return owners.get(0);
+        }
+        String plate = null;
+        ActiveQuery live = null;
+        for (ActiveQuery active : owners) {
+            String p = normalizePlate(active.query.vehicleId);
+            if (p.isEmpty() || (plate != null && !plate.equals(p))) {
+                return null;
+            }
+            plate = p;
+            if (live == null && !lateQueries.containsKey(active)) {
+                live = active;
+            }
+        }
+        return live != null ? live : owners.get(0);
+    }
+
+    private ActiveQuery liveWithPlate(List<ActiveQuery> candidates, ActiveQuery late) {
+        String plate = normalizePlate(late.query.vehicleId);
+        for (ActiveQuery active : candidates) {
+            if (!lateQueries.containsKey(active) && plate.equals(normalizePlate(active.query.vehicleId))) {
+                return active;
+            }
+        }
+        return null;
+    }
+
+    // Başarısız sorgunun geç gelen parçası yalnızca numarası için kaydedilir
+    private static void track(ActiveQuery late, String part, int msgNum, int totalNum) {
+        if (msgNum > 0) {
+            late.assembler.startMessage(msgNum, totalNum, part);
+        }
+    }
+
+    private boolean hasActiveOwner(HeldPart held) {
+        for (ActiveQuery owner : held.owners) {
+            if (activeQueries.get(owner.getQueryId()) == owner) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Başka SIM'den gönderilmiş sorgu bu parçanın sahibi olamaz;
+    // varsayılan SIM ile gönderilenlerin cevabı herhangi bir SIM'e gelebilir.
+    // Geç cevabı hâlâ gelebilecek başarısız sorgular da aday sayılır
+    private List<ActiveQuery> candidatesFor(int subscriptionId, long receivedAt) {
+        List<ActiveQuery> candidates = new ArrayList<>();
+        for (ActiveQuery active : activeQueries.values()) {
+            if (canOwn(active, subscriptionId, receivedAt)) {
+                candidates.add(active);
+            }
+        }
+        for (Map.Entry<ActiveQuery, Long> late : lateQueries.entrySet()) {
+            if (late.getValue() >= receivedAt && canOwn(late.getKey(), subscriptionId, receivedAt)) {
+                candidates.add(late.getKey());
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean canOwn(ActiveQuery active, int subscriptionId, long receivedAt) {
+        return active.sentAt <= receivedAt && (subscriptionId == SimSlot.DEFAULT_SUBSCRIPTION
+                || active.subscriptionId == subscriptionId || active.subscriptionId == SimSlot.DEFAULT_SUBSCRIPTION);
+    }
+
+    private ActiveQuery matchByPlate(List<ActiveQuery> candidates, String part) {
+        String body = normalizePlate(part);
+        ActiveQuery best = null;
+        int bestLength = 0;
+
+        for (ActiveQuery active : candidates) {
+            String plate = normalizePlate(active.query.vehicleId);
+            if (plate.length() > bestLength && body.contains(plate)) {
+                best = active;
+                bestLength = plate.length();
+            }
+        }
+        return best;
+    }
+
+    private boolean mentionsRetiredPlate(String part) {
+        String body = normalizePlate(part);
+        for (String plate : retiredPlates.keySet()) {
+            if (body.contains(plate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String normalizePlate(String text) {
+        if (text == null) return "";
+        return text.replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,664 @@
+package com.smsrelay.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+// Sorgunun kabulünden cevabın kullanıcıya iletilmesine kadar relay akışı:
+// tekrar eleme, önbellek, aynı plakanın birleştirilmesi, kuyruk, SIM seçimi,
+// parça birleştirme ve zaman aşımları. SMS gönderme, backend bildirimi ve
+// thread gibi platforma ait uçlar Host üzerinden verilir, zaman clock'tan
+// okunur. enqueue() dışındaki tüm çağrılar relay thread'inden yapılmalıdır.
+public class RelayEngine {
+    private static final long SEGMENT_TIMEOUT = 60000; // eksik SMS segmentleri için 1 dakika
+    private static final long GAP_TIMEOUT = 60000;     // araya eksik parça düştüyse en fazla 1 dakika
+    private static final long FINAL_PART_QUIET = 5000; // son numara geldikten sonra başlıksız devam parçası için
+    private static final long JOURNAL_RETRY_DELAY = 5000; // günlüğe yazılamayan gönderim için
+
+    private static final String ERROR_MESSAGE = "Arac sorgulama sonucu alinamadi. Lutfen daha sonra tekrar deneyiniz.";
+    private static final String PARTIAL_NOTE = "Not: Sorgulama sonucu eksik olabilir. Detay icin destek hattini arayiniz.";
+
+    // Relay thread'i ve dış dünya
+    public interface Host {
+        void post(Runnable task);
+
+        void postDelayed(Runnable task, long delay);
+
+        void removeCallbacks(Runnable task);
+
+        // Sorgu SMS'i hedef numaraya verilen SIM'den gönderilir
+        void sendQuery(SimSlot slot, String targetNumber, String message);
+
+        void sendSms(int subscriptionId, String phoneNumber, String message);
+
+        // Sonuç kalıcı olarak kaydedildikten sonra dönmelidir; sorgu ardından günlükten düşülür
+        void reportSucceeded(PendingQuery query);
+
+        void reportFailed(PendingQuery query, String status);
+
+        // Sorgu SMS'i atılmadan hemen önce sorulur; false ise (ör. kirası doldu)
+        // sorgu bu relay'de gönderilmez ve unutulur
+        default boolean mayDispatch(PendingQuery query) {
+            return true;
+        }
+    }
+
+    // Sorgu başına zaman aşımları; her sorgunun her türden en fazla bir zamanlayıcısı olur
+    public interface Timers {
+        int FIRST_PART = 0; // gönderimden sonra ilk parça bekleniyor
+        int COLLECT = 1;    // son parçadan sonraki sessizlik
+        int GIVE_UP = 2;    // eksik parçalar için vazgeçme
+        int KINDS = 3;
+
+        void schedule(String queryId, int kind, long delay, Runnable task);
+
+        void cancel(String queryId, int kind);
+
+        void cancelAll(String queryId);
+    }
+
+    // Akıştaki olaylar (bildirim, sayaç, günlük için); relay thread'inde çağrılır
+    public interface Listener {
+        default void onCoalesced(PendingQuery query, ActiveQuery into) {
+        }
+
+        default void onDispatched(ActiveQuery active, SimSlot slot) {
+        }
+
+        default void onAnsweredFromCache(PendingQuery query) {
+        }
+
+        default void onShed(PendingQuery query) {
+        }
+
+        // Host gönderime izin vermedi; sorgu günlükten düştü, sonucu bildirilmedi
+        default void onDispatchRefused(PendingQuery query) {
+        }
+
+        default void onUnmatchedPart(String part) {
+        }
+
+        // Kuyruk boşaldı ve uçuşta sorgu kalmadı
+        default void onIdle() {
+        }
+
+        // Sorgu sonuçlandı; bağlanan sorgular da aynı sonucu almıştır
+        default void onFinished(ActiveQuery active, boolean success) {
+        }
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {
+    };
+
+    private final LongSupplier clock;
+    private final Host host;
+    private final Timers timers;
+    private final SlotSelector slots;
+    private final QueryRegistry registry;
+    private final QueryDedupIndex dedupIndex;
+    private final ReplyTimingEstimator estimator;
+    private final QueryJournal journal;
+    private final ResultCache resultCache;
+    private final RelayMetrics metrics;
+
+    // Relay thread'i ekler ve tüketir; öncelik ve son tarihe göre sıralı
+    private final DispatchQueue queue = new DispatchQueue();
+    // Yalnızca relay thread'inden erişilir
+    private final SegmentReassembler segments = new SegmentReassembler();
+    private final Runnable dispatchRunnable = this::processNextQuery;
+    private final Runnable segmentExpiryRunnable = this::expireSegments;
+    private boolean segmentExpiryScheduled = false;
+
+    private volatile Listener listener = NO_LISTENER;
+    private volatile String targetNumber = "5664";
+    // Bir SIM'de aynı anda cevap bekleyebilecek sorgu sayısı
+    private volatile int maxConcurrentQueries = 1;
+    // Yükte öncelik/son tarih yoksa kullanılır
+    private volatile int defaultPriority = 0;
+    private volatile long defaultDeadline = 0;
+
+    public RelayEngine(LongSupplier clock, Host host, Timers timers, SlotSelector slots, QueryRegistry registry,
+                       QueryDedupIndex dedupIndex, ReplyTimingEstimator estimator, QueryJournal journal,
+                       ResultCache resultCache, RelayMetrics metrics) {
+        this.clock = clock;
+        this.host = host;
+        this.timers = timers;
+        this.slots = slots;
+        this.registry = registry;
+        this.dedupIndex = dedupIndex;
+        this.estimator = estimator;
+        this.journal = journal;
+        this.resultCache = resultCache;
+        this.metrics = metrics;
+    }
+
+    public void configure(String targetNumber, int maxConcurrentQueries, int defaultPriority, long defaultDeadline) {
+        this.targetNumber = targetNumber;
+        this.maxConcurrentQueries = Math.max(1, maxConcurrentQueries);
+        this.defaultPriority = defaultPriority;
+        this.defaultDeadline = defaultDeadline;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : NO_LISTENER;
+    }
+
+    public QueryRegistry getRegistry() {
+        return registry;
+    }
+
+    public int queuedCount() {
+        return queue.size();
+    }
+
+    // Backend'den gelen sorgu; herhangi bir thread'den çağrılabilir.
+    // Yeni ise true döner, kabul ve gönderim relay thread'inde devam eder
+    public boolean enqueue(PendingQuery query) {
+        if (!dedupIndex.tryAdd(query.queryId)) {
+            metrics.increment(RelayMetrics.Counter.DUPLICATES);
+            return false;
+        }
+
+        long now = clock.getAsLong();
+        query.enqueuedAt = now;
+        String cached = resultCache.lookup(query.vehicleId, now);
+        if (cached != null) {
+            host.post(() -> answerFromCache(query, cached));
+            return true;
+        }
+
+        applyDefaults(query, now);
+        journal.recordEnqueue(query);
+        host.post(() -> admit(query));
+        return true;
+    }
+
+    // Önceki süreçten kalan kuyruğu ve uçuştaki sorguları geri yükler.
+    // Gönderilmiş sorgular tekrar gönderilmez, yalnızca cevapları beklenir.
+    // requeue false ise gönderilmemiş sorgular kuyruğa alınmaz, döndürülür
+    public List<PendingQuery> recover(List<QueryJournal.Entry> entries, boolean requeue) {
+        long now = clock.getAsLong();
+
+        // Önce uçuştakiler kurulur ki kuyruktaki aynı plakalı sorgular onlara bağlanabilsin
+        for (QueryJournal.Entry entry : entries) {
+            dedupIndex.tryAdd(entry.query.queryId);
+
+            if (!entry.isDispatched()) {
+                continue;
+            }
+
+            ActiveQuery active = new ActiveQuery(entry.query, entry.dispatchedAt, entry.subscriptionId);
+            active.assembler.replay(entry.parts);
+            registry.add(active);
+
+            if (active.assembler.hasParts()) {
+                resetCollectTimer(active);
+            } else {
+                long remaining = estimator.firstPartTimeout() - (now - entry.dispatchedAt);
+                scheduleFirstPartTimeout(active, Math.max(0, remaining), false);
+            }
+        }
+
+        List<PendingQuery> skipped = new ArrayList<>();
+        for (QueryJournal.Entry entry : entries) {
+            if (entry.isDispatched()) {
+                continue;
+            }
+            if (!requeue) {
+                skipped.add(entry.query);
+                continue;
+            }
+            entry.query.enqueuedAt = entry.enqueuedAt;
+            applyDefaults(entry.query, entry.enqueuedAt);
+            admit(entry.query);
+        }
+
+        if (!queue.isEmpty()) {
+            scheduleDispatch(0);
+        }
+        return skipped;
+    }
+
+    // Kuyruktaki ve uçuştaki (bağlananlar dahil) tüm sorgu ID'leri
+    public List<String> heldQueryIds() {
+        List<String> held = new ArrayList<>(queue.ids());
+        for (ActiveQuery active : registry.snapshot()) {
+            for (PendingQuery query : active.allQueries()) {
+                held.add(query.queryId);
+            }
+        }
+        return held;
+    }
+
+    // Henüz gönderilmemiş sorguyu kuyruktan çıkarır ve unutur; gönderildiyse false
+    public boolean dropQueued(String queryId) {
+        if (!queue.remove(queryId)) {
+            return false;
+        }
+        forget(queryId);
+        return true;
+    }
+
+    // Sorgu günlükten düşülür; aynı ID sonradan tekrar kabul edilebilir
+    public void forget(String queryId) {
+        journal.recordDone(queryId);
+        dedupIndex.forget(queryId);
+    }
+
+    // Kuyruktaki tüm sorguları çıkarıp döndürür (günlükte kalırlar)
+    public List<PendingQuery> drainQueue() {
+        List<PendingQuery> queued = new ArrayList<>();
+        PendingQuery query;
+        while ((query = queue.poll()) != null) {
+            queued.add(query);
+        }
+        return queued;
+    }
+
+    // Uçuştaki sorguları bırakır; günlükte kaldıkları için sonra kurtarılabilirler
+    public void abandonInFlight() {
+        for (ActiveQuery active : registry.snapshot()) {
+            timers.cancelAll(active.getQueryId());
+            registry.remove(active.getQueryId());
+        }
+        host.removeCallbacks(dispatchRunnable);
+        host.removeCallbacks(segmentExpiryRunnable);
+        segmentExpiryScheduled = false;
+    }
+
+    private void applyDefaults(PendingQuery query, long enqueuedAt) {
+        if (query.priority == PendingQuery.UNSET_PRIORITY) {
+            query.priority = defaultPriority;
+        }
+        if (query.deadline == 0 && defaultDeadline > 0) {
+            query.deadline = enqueuedAt + defaultDeadline;
+        }
+    }
+
+    // Aynı plaka zaten 5664'te sorgulanıyorsa yeni SMS atılmaz,
+    // sorgu uçuştakine bağlanır; değilse kuyruğa girer
+    private void admit(PendingQuery query) {
+        ActiveQuery inFlight = registry.findByPlate(query.vehicleId);
+        if (inFlight != null) {
+            inFlight.waiters.add(query);
+            metrics.increment(RelayMetrics.Counter.COALESCED);
+            listener.onCoalesced(query, inFlight);
+            return;
+        }
+
+        queue.offer(query);
+    }
+
+    // Gönderilen sorguyla aynı plakayı bekleyen kuyruk kayıtlarını ona bağlar
+    private void attachQueuedDuplicates(ActiveQuery active) {
+        for (PendingQuery query : queue.removeByPlate(active.query.vehicleId)) {
+            active.waiters.add(query);
+            metrics.increment(RelayMetrics.Counter.COALESCED);
+            listener.onCoalesced(query, active);
+        }
+    }
+
+    // Önbellekteki cevap kullanıcıya gönderilir; 5664 kapasitesi kullanılmaz
+    private void answerFromCache(PendingQuery query, String message) {
+        dedupIndex.markFinished(query.queryId);
+
+        if (query.userPhone != null && !query.userPhone.isEmpty()) {
+            host.sendSms(SimSlot.DEFAULT_SUBSCRIPTION, query.userPhone, message);
+        }
+        host.reportSucceeded(query);
+        metrics.increment(RelayMetrics.Counter.CACHE_HITS);
+        metrics.increment(RelayMetrics.Counter.SUCCEEDED);
+        listener.onAnsweredFromCache(query);
+    }
+
+    // Son tarihi geçmiş sorgu 5664'e gönderilmez, backend'e başarısız bildirilir
+    private void shedQuery(PendingQuery query) {
+        dedupIndex.markFinished(query.queryId);
+
+        if (query.userPhone != null && !query.userPhone.isEmpty()) {
+            host.sendSms(SimSlot.DEFAULT_SUBSCRIPTION, query.userPhone, ERROR_MESSAGE);
+        }
+        host.reportFailed(query, "expired");
+        journal.recordDone(query.queryId);
+        metrics.increment(RelayMetrics.Counter.SHED);
+        metrics.increment(RelayMetrics.Counter.FAILED);
+        listener.onShed(query);
+    }
+
+    private void scheduleDispatch(long delay) {
+        host.removeCallbacks(dispatchRunnable);
+        host.postDelayed(dispatchRunnable, delay);
+    }
+
+    // Boş yer ve hazır SIM varsa kuyruğun başındaki sorguyu gönderir
+    public void processNextQuery() {
+        long now = clock.getAsLong();
+
+        int max = maxConcurrentQueries;
+
+        queue.shedExpired(now, this::shedQuery);
+
+        if (registry.size() >= slots.capacity(now, max)) {
+            return;
+        }
+
+        if (queue.isEmpty()) {
+            if (registry.isEmpty()) {
+                listener.onIdle();
+            }
+            return;
+        }
+
+        SimSlot slot = slots.pickReady(now, max);
+        if (slot == null) {
+            long wait = slots.nextReadyDelay(now, max);
+            if (wait >= 0) {
+                scheduleDispatch(wait);
+            }
+            return;
+        }
+
+        PendingQuery query = queue.poll();
+        if (query == null) {
+            return;
+        }
+
+        if (!host.mayDispatch(query)) {
+            forget(query.queryId);
+            listener.onDispatchRefused(query);
+            scheduleDispatch(0);
+            return;
+        }
+
+        // Gönderim diske yazılamadıysa SMS atılmaz; yeniden başlatmada aynı sorgu
+        // ikinci kez gönderilebilirdi. Sorgu kuyruğa döner, biraz sonra denenir
+        if (!journal.recordDispatch(query.queryId, slot.subscriptionId)) {
+            queue.offer(query);
+            scheduleDispatch(JOURNAL_RETRY_DELAY);
+            return;
+        }
+
+        if (query.enqueuedAt > 0) {
+            metrics.record(RelayMetrics.Stage.QUEUED, now - query.enqueuedAt);
+        }
+
+        ActiveQuery active = new ActiveQuery(query, now, slot.subscriptionId);
+        registry.add(active);
+        attachQueuedDuplicates(active);
+
+        host.sendQuery(slot, targetNumber, query.smsMessage);
+        slot.scheduler.onSent(now);
+        listener.onDispatched(active, slot);
+
+        scheduleFirstPartTimeout(active, estimator.firstPartTimeout(), true);
+
+        // Boş yer varsa sıradaki sorguyu ilk hazır olan SIM'den gönder
+        if (!queue.isEmpty()) {
+            long wait = slots.nextReadyDelay(now, max);
+            if (wait >= 0) {
+                scheduleDispatch(wait);
+            }
+        }
+    }
+
+    // measured: süre bu süreçte ölçüldüyse zaman aşımı tahminciye örnek olarak verilir;
+    // günlükten kurtarılan sorguların gönderim zamanı eskidir
+    private void scheduleFirstPartTimeout(ActiveQuery active, long delay, boolean measured) {
+        timers.schedule(active.getQueryId(), Timers.FIRST_PART, delay, () -> {
+            // Parça gelmeye başladıysa süreyi toplama ve vazgeçme zamanlayıcıları yönetir
+            if (registry.find(active.getQueryId()) == active && !active.assembler.hasParts()) {
+                if (measured) {
+                    estimator.recordFirstPartTimeout(delay);
+                }
+                fail(active);
+            }
+        });
+    }
+
+    // Hedef numaradan gelen SMS segmenti. Önce PDU başlığına göre segmentler
+    // birleştirilir, "Mesaj (n/m)" gruplaması tam mesajlar üzerinde çalışır
+    public void onSegment(String sender, int subscriptionId, PduHeaderParser.ConcatInfo concat, String body) {
+        if (registry.isEmpty()) {
+            holdForLateReply(subscriptionId);
+            return;
+        }
+
+        long now = clock.getAsLong();
+        String complete = segments.add(sender, subscriptionId, concat, body, now);
+        if (complete != null) {
+            collectPart(complete, subscriptionId, now);
+        } else {
+            scheduleSegmentExpiry();
+        }
+    }
+
+    // Eksik segmenti gelmeyen mesajlar süre sonunda eldeki haliyle işlenir
+    private void scheduleSegmentExpiry() {
+        if (segmentExpiryScheduled) {
+            return;
+        }
+        segmentExpiryScheduled = true;
+        host.postDelayed(segmentExpiryRunnable, SEGMENT_TIMEOUT / 4);
+    }
+
+    private void expireSegments() {
+        segmentExpiryScheduled = false;
+        segments.expire(clock.getAsLong(), SEGMENT_TIMEOUT,
+                (subscriptionId, text, firstAt) -> collectPart(text, subscriptionId, firstAt));
+        if (segments.hasPending()) {
+            scheduleSegmentExpiry();
+        }
+    }
+
+    // receivedAt: parçanın (eksik segmentli mesajda ilk segmentin) geliş zamanı
+    private void collectPart(String part, int subscriptionId, long receivedAt) {
+        ReplyText.Header header = ReplyText.parseHeader(part);
+        int msgNum = header != null ? header.number : 0;
+        int totalNum = header != null ? header.total : 0;
+
+        int held = registry.heldCount();
+        ActiveQuery active = registry.route(part, msgNum, totalNum, subscriptionId, receivedAt);
+        if (active == null) {
+            // Sahibi henüz ayırt edilemedi; sonraki parçalarla belli olunca eklenir
+            if (registry.heldCount() > held) {
+                return;
+            }
+            metrics.increment(RelayMetrics.Counter.UNMATCHED_PARTS);
+            listener.onUnmatchedPart(part);
+            holdForLateReply(subscriptionId);
+            return;
+        }
+
+        applyPart(active, part, header);
+        applyResolvedParts();
+    }
+
+    // Bekletilen parçalardan sahibi belli olanları ekler; eklenen her parça
+    // başka bekleyenlerin sahibini de belirleyebilir
+    private void applyResolvedParts() {
+        List<QueryRegistry.Resolved> resolved;
+        while (!(resolved = registry.resolveHeld()).isEmpty()) {
+            for (QueryRegistry.Resolved r : resolved) {
+                if (registry.find(r.active.getQueryId()) == r.active) {
+                    applyPart(r.active, r.part, ReplyText.parseHeader(r.part));
+                }
+            }
+        }
+    }
+
+    private void applyPart(ActiveQuery active, String part, ReplyText.Header header) {
+        int msgNum = header != null ? header.number : 0;
+        int totalNum = header != null ? header.total : 0;
+
+        recordTiming(active, clock.getAsLong());
+        // Cevap başladı; bundan sonra süreyi toplama ve vazgeçme zamanlayıcıları yönetir
+        timers.cancel(active.getQueryId(), Timers.FIRST_PART);
+
+        journal.recordPart(active.getQueryId(), msgNum, totalNum, part);
+
+        if (header != null) {
+            active.assembler.startMessage(msgNum, totalNum, part);
+        } else {
+            active.assembler.appendFragment(part);
+        }
+
+        resetCollectTimer(active);
+    }
+
+    // Sahipsiz parça sonuçlanmış bir sorgunun geç cevabıdır; cevap bitene
+    // kadar o SIM'den yeni sorgu gönderilmez
+    private void holdForLateReply(int subscriptionId) {
+        SimSlot slot = slots.find(subscriptionId);
+        if (slot != null) {
+            slot.holdUntil(clock.getAsLong() + estimator.quietPeriod());
+        }
+    }
+
+    // İlk parçaya kadar geçen süreyi ve parçalar arası boşluğu tahminciye verir.
+    // Günlükten kurtarılmış sorgularda gönderim zamanı eskidir, ölçülmez
+    private void recordTiming(ActiveQuery active, long now) {
+        if (active.lastPartAt > 0) {
+            estimator.recordGap(now - active.lastPartAt);
+        } else if (!active.assembler.hasParts()) {
+            estimator.recordFirstPart(now - active.sentAt);
+            metrics.record(RelayMetrics.Stage.FIRST_PART, now - active.sentAt);
+            active.firstPartAt = now;
+        }
+        active.lastPartAt = now;
+    }
+
+    // Son boş numara da dolduysa tam sessizlik süresi beklenmez; yalnızca son mesajın
+    // başlıksız devam parçalarına kısa bir süre tanınır
+    private void resetCollectTimer(ActiveQuery active) {
+        long quiet = estimator.quietPeriod();
+        if (active.assembler.allPartsArrived()) {
+            quiet = Math.min(quiet, FINAL_PART_QUIET);
+        }
+        timers.schedule(active.getQueryId(), Timers.COLLECT, quiet, () -> processCollectedBuffer(active));
+    }
+
+    private void processCollectedBuffer(ActiveQuery active) {
+        active.assembler.flush();
+        resetGiveUpTimer(active);
+
+        if (active.assembler.isComplete()) {
+            succeed(active);
+        }
+    }
+
+    private void resetGiveUpTimer(ActiveQuery active) {
+        // Vazgeçme süresi ölçülen parça boşluklarından türetilir;
+        // eksik parça araya düştüyse daha kısa süre beklenir
+        long giveUp = estimator.giveUpTimeout();
+        long timeout = active.assembler.hasGaps() ? Math.min(GAP_TIMEOUT, giveUp) : giveUp;
+        timers.schedule(active.getQueryId(), Timers.GIVE_UP, timeout, () -> fail(active));
+    }
+
+    private void succeed(ActiveQuery active) {
+        // Başka sorgunun parçasıyla karışmış olabilecek cevap başarılı sayılmaz
+        if (active.ambiguous) {
+            fail(active);
+            return;
+        }
+        // Sorgu kayıttan düştüyse (ör. zaman aşımı) tekrar işleme
+        if (registry.remove(active.getQueryId()) == null) {
+            return;
+        }
+        timers.cancelAll(active.getQueryId());
+
+        // Yasal uyarı kısmı reklam metniyle değiştirilir
+        String message = ReplyText.replaceFooter(active.assembler.combine());
+        resultCache.put(active.query.vehicleId, message, clock.getAsLong());
+
+        // Aynı plaka için bağlanan her sorgu aynı sonucu alır; aynı numaraya bir kez gönderilir
+        Set<String> notified = new HashSet<>();
+        for (PendingQuery query : active.allQueries()) {
+            dedupIndex.markFinished(query.queryId);
+
+            if (query.userPhone != null && !query.userPhone.isEmpty()
+                    && notified.add(ReplyText.normalizePhoneNumber(query.userPhone))) {
+                host.sendSms(active.subscriptionId, query.userPhone, message);
+            }
+            // Sonuç giden kutusuna yazılmadan sorgu günlükten düşülmez
+            host.reportSucceeded(query);
+            journal.recordDone(query.queryId);
+        }
+
+        finish(active, true);
+    }
+
+    // Cevap hiç gelmediyse hata mesajı, kısmen geldiyse eldeki kısım ve not gönderilir
+    private void fail(ActiveQuery active) {
+        if (registry.remove(active.getQueryId()) == null) {
+            return;
+        }
+        timers.cancelAll(active.getQueryId());
+        active.assembler.flush();
+
+        boolean partial = active.assembler.hasParts();
+        String combined = partial ? active.assembler.combine() : "";
+        String message = combined.isEmpty() ? "" : ReplyText.replaceFooter(combined);
+
+        Set<String> notified = new HashSet<>();
+        for (PendingQuery query : active.allQueries()) {
+            dedupIndex.markFinished(query.queryId);
+
+            if (query.userPhone != null && !query.userPhone.isEmpty()
+                    && notified.add(ReplyText.normalizePhoneNumber(query.userPhone))) {
+                if (!partial) {
+                    host.sendSms(active.subscriptionId, query.userPhone, ERROR_MESSAGE);
+                } else {
+                    if (!message.isEmpty()) {
+                        host.sendSms(active.subscriptionId, query.userPhone, message);
+                    }
+                    host.sendSms(active.subscriptionId, query.userPhone, PARTIAL_NOTE);
+                }
+            }
+            host.reportFailed(query, partial ? "timeout" : "failed");
+            journal.recordDone(query.queryId);
+        }
+
+        finish(active, false);
+    }
+
+    private void finish(ActiveQuery active, boolean success) {
+        long now = clock.getAsLong();
+        SimSlot slot = slots.find(active.subscriptionId);
+        if (slot != null) {
+            if (success) {
+                slot.scheduler.onCompleted(now, now - active.sentAt);
+            } else {
+                slot.scheduler.onTimeout(now);
+            }
+        }
+        if (!success) {
+            // Cevap geç de olsa gelebilir; o süre boyunca SIM'den yeni sorgu
+            // gönderilmez ve gelen plakasız parçalar için olası sahip sayılır
+            long lateUntil = now + (active.assembler.hasParts()
+                    ? estimator.quietPeriod() : estimator.firstPartTimeout());
+            if (slot != null) {
+                slot.holdUntil(lateUntil);
+            }
+            registry.retire(active, lateUntil);
+        }
+
+        int queries = active.allQueries().size();
+        if (success) {
+            metrics.add(RelayMetrics.Counter.SUCCEEDED, queries);
+            if (active.firstPartAt > 0) {
+                metrics.record(RelayMetrics.Stage.REPLY, active.lastPartAt - active.firstPartAt);
+            }
+        } else {
+            metrics.add(RelayMetrics.Counter.FAILED, queries);
+            metrics.increment(active.assembler.hasParts()
+                    ? RelayMetrics.Counter.PARTIAL_RESULTS : RelayMetrics.Counter.TIMEOUTS);
+        }
+
+        listener.onFinished(active, success);
+        // Sonuçlanan sorgu bekletilen parçaların olası sahiplerinden düştü
+        applyResolvedParts();
+        scheduleDispatch(0);
+    }
+}
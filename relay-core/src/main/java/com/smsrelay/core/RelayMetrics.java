@@ -0,0 +1,193 @@
+package com.smsrelay.core;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Akışın aşama gecikmeleri, olay sayaçları ve anlık göstergeler. Kayıt
+// kilitsizdir; Prometheus metin biçiminde ya da backend'e gönderilecek
+// JSON özeti olarak dışa verilir.
+public class RelayMetrics {
+    private static final RelayMetrics INSTANCE = new RelayMetrics();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Gecikmesi ölçülen aşamalar
+    public enum Stage {
+        BACKEND_FETCH("backend_fetch", "Backend'den sorgu çekme isteği"),
+        QUEUED("queued", "Kuyrukta bekleme"),
+        FIRST_PART("first_part", "Sorgu SMS'inden ilk cevap parçasına"),
+        REPLY("reply", "İlk parçadan son parçaya"),
+        REPORT("report", "Sonuç bildirimi isteği");
+
+        final String label;
+        final String help;
+
+        Stage(String label, String help) {
+            this.label = label;
+            this.help = help;
+        }
+    }
+
+    public enum Counter {
+        SUCCEEDED("succeeded", "Başarıyla cevaplanan sorgular"),
+        FAILED("failed", "Başarısız bildirilen sorgular"),
+        TIMEOUTS("timeouts", "Hiç cevap gelmeden zaman aşımına düşen gönderimler"),
+        PARTIAL_RESULTS("partial_results", "Eksik cevapla sonuçlanan gönderimler"),
+        DUPLICATES("duplicates", "Tekrar geldiği için elenen sorgular"),
+        COALESCED("coalesced", "Uçuştaki aynı plakalı sorguya bağlananlar"),
+        CACHE_HITS("cache_hits", "Önbellekten cevaplanan sorgular"),
+        SHED("shed", "Son tarihi geçtiği için gönderilmeyen sorgular"),
+        UNMATCHED_PARTS("unmatched_parts", "Hiçbir sorguyla eşleşmeyen cevap parçaları"),
+        FETCH_ERRORS("fetch_errors", "Başarısız sorgu çekme istekleri"),
+        REPORT_ERRORS("report_errors", "Başarısız sonuç bildirim istekleri");
+
+        final String label;
+        final String help;
+
+        Counter(String label, String help) {
+            this.label = label;
+            this.help = help;
+        }
+    }
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final Map<Counter, AtomicLong> counters = new EnumMap<>(Counter.class);
+    // Okunduğu anda değeri alınan göstergeler (kuyruk boyu vb.)
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    public static RelayMetrics get() {
+        return INSTANCE;
+    }
+
+    public RelayMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new AtomicLong());
+        }
+    }
+
+    public void record(Stage stage, long millis) {
+        stages.get(stage).record(millis);
+    }
+
+    public void increment(Counter counter) {
+        counters.get(counter).incrementAndGet();
+    }
+
+    public void add(Counter counter, long delta) {
+        counters.get(counter).addAndGet(delta);
+    }
+
+    public long count(Counter counter) {
+        return counters.get(counter).get();
+    }
+
+    public LatencyHistogram histogram(Stage stage) {
+        return stages.get(stage);
+    }
+
+    public synchronized void setGauge(String name, LongSupplier value) {
+        if (value != null) {
+            gauges.put(name, value);
+        } else {
+            gauges.remove(name);
+        }
+    }
+
+    // Prometheus metin biçimi (0.0.4); gecikmeler saniye cinsinden summary olarak
+    public synchronized String prometheus() {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP smsrelay_stage_latency_seconds Aşama gecikmeleri\n");
+        out.append("# TYPE smsrelay_stage_latency_seconds summary\n");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = stages.get(stage);
+            for (double q : QUANTILES) {
+                out.append("smsrelay_stage_latency_seconds{stage=\"").append(stage.label)
+                        .append("\",quantile=\"").append(q).append("\"} ")
+                        .append(seconds(histogram.valueAt(q))).append('\n');
+            }
+            out.append("smsrelay_stage_latency_seconds_sum{stage=\"").append(stage.label).append("\"} ")
+                    .append(seconds(histogram.getSum())).append('\n');
+            out.append("smsrelay_stage_latency_seconds_count{stage=\"").append(stage.label).append("\"} ")
+                    .append(histogram.getCount()).append('\n');
+        }
+
+        for (Counter counter : Counter.values()) {
+            String name = "smsrelay_" + counter.label + "_total";
+            out.append("# HELP ").append(name).append(' ').append(counter.help).append('\n');
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(count(counter)).append('\n');
+        }
+
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            String name = "smsrelay_" + gauge.getKey();
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+
+        out.append("# TYPE smsrelay_uptime_seconds gauge\n");
+        out.append("smsrelay_uptime_seconds ").append((System.currentTimeMillis() - startedAt) / 1000).append('\n');
+        return out.toString();
+    }
+
+    // Backend'e gönderilen özet; gecikmeler milisaniye
+    public synchronized String toJson(String relayId) {
+        try {
+            StringWriter buffer = new StringWriter();
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.beginObject();
+            writer.name("relay_id").value(relayId);
+            writer.name("time").value(System.currentTimeMillis());
+            writer.name("uptime_ms").value(System.currentTimeMillis() - startedAt);
+
+            writer.name("stages").beginObject();
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram histogram = stages.get(stage);
+                writer.name(stage.label).beginObject();
+                writer.name("count").value(histogram.getCount());
+                writer.name("sum_ms").value(histogram.getSum());
+                writer.name("max_ms").value(histogram.getMax());
+                writer.name("p50_ms").value(histogram.valueAt(0.5));
+                writer.name("p90_ms").value(histogram.valueAt(0.9));
+                writer.name("p99_ms").value(histogram.valueAt(0.99));
+                writer.name("p999_ms").value(histogram.valueAt(0.999));
+                writer.endObject();
+            }
+            writer.endObject();
+
+            writer.name("counters").beginObject();
+            for (Counter counter : Counter.values()) {
+                writer.name(counter.label).value(count(counter));
+            }
+            writer.endObject();
+
+            writer.name("gauges").beginObject();
+            for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+                writer.name(gauge.getKey()).value(gauge.getValue().getAsLong());
+            }
+            writer.endObject();
+
+            writer.endObject();
+            writer.close();
+            return buffer.toString();
+        } catch (IOException e) {
+            // StringWriter'a yazarken oluşmaz
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String seconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+}
@@ -0,0 +1,136 @@
+package com.smsrelay.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Tek bir sorgunun "Mesaj (n/m)" parçalarını birleştirir
+public class ReplyAssembler {
+    private final Map<Integer, String> receivedMessages = new HashMap<>();
+    private StringBuilder currentMessageBuffer = new StringBuilder();
+    private int lastDetectedMessageNum = 0;
+    private int expectedMessageCount = 0;
+    // Başlığı görülen parça numaraları; tamamlanma ve boşluk tespiti için
+    private final BitSet arrived = new BitSet();
+
+    // Başlıklı yeni parça: önceki buffer kaydedilir, yenisi başlar
+    public void startMessage(int msgNum, int totalNum, String part) {
+        if (currentMessageBuffer.length() > 0 && lastDetectedMessageNum > 0) {
+            saveBufferedMessage();
+        }
+
+        currentMessageBuffer = new StringBuilder();
+        currentMessageBuffer.append(part);
+        lastDetectedMessageNum = msgNum;
+        arrived.set(msgNum);
+
+        if (totalNum > expectedMessageCount) {
+            expectedMessageCount = totalNum;
+        }
+    }
+
+    // Başlıksız parça: mevcut buffer'a eklenir
+    public boolean appendFragment(String part) {
+        if (currentMessageBuffer.length() > 0) {
+            currentMessageBuffer.append(" ").append(part);
+            return true;
+        }
+        return false;
+    }
+
+    // Günlükten kurtarılan parçaları geliş sırasıyla yeniden uygular
+    public void replay(List<QueryJournal.Part> parts) {
+        for (QueryJournal.Part part : parts) {
+            if (part.msgNum > 0) {
+                startMessage(part.msgNum, part.totalNum, part.text);
+            } else {
+                appendFragment(part.text);
+            }
+        }
+    }
+
+    public void flush() {
+        if (currentMessageBuffer.length() > 0 && lastDetectedMessageNum > 0) {
+            saveBufferedMessage();
+        }
+    }
+
+    private void saveBufferedMessage() {
+        String fullMessage = currentMessageBuffer.toString().trim();
+
+        if (!receivedMessages.containsKey(lastDetectedMessageNum)) {
+            receivedMessages.put(lastDetectedMessageNum, fullMessage);
+        }
+
+        currentMessageBuffer = new StringBuilder();
+    }
+
+    public boolean hasMessage(int msgNum) {
+        return receivedMessages.containsKey(msgNum)
+                || (msgNum == lastDetectedMessageNum && currentMessageBuffer.length() > 0);
+    }
+
+    // Bu numaranın başlıklı parçası geldi mi
+    public boolean hasArrived(int msgNum) {
+        return arrived.get(msgNum);
+    }
+
+    public boolean hasParts() {
+        return !receivedMessages.isEmpty() || currentMessageBuffer.length() > 0;
+    }
+
+    // Duyurulan toplamdaki tüm numaralar geldi mi (buffer'daki son parça dahil)
+    public boolean allPartsArrived() {
+        return expectedMessageCount > 0 && arrived.get(1, expectedMessageCount + 1).cardinality() >= expectedMessageCount;
+    }
+
+    // Gelmiş en büyük numaranın altında eksik numara var mı
+    // ya da son parça geldiği halde eksik kalan var mı
+    public boolean hasGaps() {
+        int highest = arrived.length() - 1;
+        if (highest < 1) {
+            return false;
+        }
+        int firstMissing = arrived.nextClearBit(1);
+        return firstMissing < highest || (highest >= expectedMessageCount && !allPartsArrived());
+    }
+
+    public List<Integer> missingParts() {
+        List<Integer> missing = new ArrayList<>();
+        int last = Math.max(expectedMessageCount, arrived.length() - 1);
+        for (int i = arrived.nextClearBit(1); i <= last; i = arrived.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        return missing;
+    }
+
+    public boolean isComplete() {
+        return expectedMessageCount > 0 && receivedMessages.size() >= expectedMessageCount;
+    }
+
+    public int getReceivedCount() {
+        return receivedMessages.size();
+    }
+
+    public int getExpectedCount() {
+        return expectedMessageCount;
+    }
+
+    // Parçaları sırasıyla birleştirir; eksik numaralar atlanır
+    public String combine() {
+        StringBuilder combined = new StringBuilder();
+        int last = Math.max(expectedMessageCount, receivedMessages.size() + 1);
+
+        for (int i = 1; i <= last; i++) {
+            if (receivedMessages.containsKey(i)) {
+                if (combined.length() > 0) {
+                    combined.append("\n\n");
+                }
+                combined.append(receivedMessages.get(i));
+            }
+        }
+        return combined.toString();
+    }
+}
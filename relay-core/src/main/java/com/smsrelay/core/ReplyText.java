@@ -0,0 +1,69 @@
+package com.smsrelay.core;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Gelen cevap metinleri üzerindeki saf işlemler: gönderen eşleştirme,
+// "Mesaj (n/m)" başlığını okuma ve footer değiştirme. Android'e bağımlı değildir.
+public final class ReplyText {
+    private static final Pattern MESSAGE_PATTERN = Pattern.compile("Mesaj\\s*\\((\\d+)/(\\d+)\\)");
+
+    // Değiştirilecek metin pattern'i
+    private static final Pattern REPLACE_PATTERN = Pattern.compile(
+            "Detayli yasal bilgi icin https://sbm\\.org\\.tr/yu58.*?B002",
+            Pattern.DOTALL
+    );
+
+    // Yeni reklam metni
+    private static final String REPLACEMENT_TEXT =
+            "Aracinizla ilgili tum hasar, kaza ve kayit sorgulamalarinizi hizli, guvenli ve kolay bir sekilde gerceklestirmek icin kazasorgulama.com.tr adresini ziyaret edebilirsiniz.";
+
+    // Parçanın "Mesaj (n/m)" başlığı
+    public static final class Header {
+        public final int number;
+        public final int total;
+
+        Header(int number, int total) {
+            this.number = number;
+            this.total = total;
+        }
+    }
+
+    private ReplyText() {
+    }
+
+    // Başlık yoksa null döner (önceki mesajın devamı olan parça)
+    public static Header parseHeader(String part) {
+        Matcher matcher = MESSAGE_PATTERN.matcher(part);
+        if (!matcher.find()) {
+            return null;
+        }
+        return new Header(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+
+    // Mesajdaki yasal uyarı kısmını reklam metniyle değiştirir; eşleşme yoksa aynı metni döner
+    public static String replaceFooter(String message) {
+        Matcher matcher = REPLACE_PATTERN.matcher(message);
+        if (matcher.find()) {
+            return matcher.replaceAll(REPLACEMENT_TEXT);
+        }
+        return message;
+    }
+
+    // Parça sorgu numarasından (ya da TRAMER'den) mı geldi
+    public static boolean isFromTarget(String sender, String targetNumber) {
+        if (sender == null) {
+            return false;
+        }
+        return sender.contains("5664") || sender.contains("TRAMER") ||
+                normalizePhoneNumber(sender).equals(normalizePhoneNumber(targetNumber));
+    }
+
+    public static String normalizePhoneNumber(String number) {
+        if (number == null) return "";
+        String normalized = number.replaceAll("[^0-9]", "");
+        if (normalized.startsWith("90")) normalized = normalized.substring(2);
+        if (normalized.startsWith("0")) normalized = normalized.substring(1);
+        return normalized;
+    }
+}
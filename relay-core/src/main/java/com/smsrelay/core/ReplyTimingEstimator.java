@@ -0,0 +1,136 @@
+package com.smsrelay.core;
+
+// 5664 cevap sürelerini izler: gönderimden ilk parçaya kadar geçen süre ve
+// parçalar arası boşluklar. Seçilen yüzdelik dilim + pay ile sessizlik ve
+// vazgeçme sürelerini türetir. Yeterli örnek yokken eski sabitler kullanılır.
+// Zaman aşımına düşen gönderimler de örnek sayılır; yalnızca süresinde gelen
+// cevaplar ölçülse tahmin kendi kestiği veriyle giderek kısalırdı.
+public class ReplyTimingEstimator {
+    private static final int MIN_SAMPLES = 20;
+    // Ölçümler bu kadar örnekte bir tazelenir; ağ değişirse tahmin de izler
+    private static final int WINDOW = 500;
+
+    // Eski sabit değerler; aynı zamanda üst sınır
+    public static final long DEFAULT_FIRST_PART_TIMEOUT = 120000;
+    public static final long DEFAULT_QUIET_PERIOD = 15000;
+    public static final long DEFAULT_GIVE_UP = 600000;
+
+    private static final long MIN_FIRST_PART_TIMEOUT = 30000;
+    private static final long MIN_QUIET_PERIOD = 3000;
+    private static final long MIN_GIVE_UP = 30000;
+
+    private static final ReplyTimingEstimator INSTANCE = new ReplyTimingEstimator();
+
+    private WindowedQuantile firstPart;
+    private WindowedQuantile interPart;
+    private double percentile = 0.99;
+    private long margin = 2000;
+
+    public static ReplyTimingEstimator get() {
+        return INSTANCE;
+    }
+
+    public ReplyTimingEstimator() {
+        reset();
+    }
+
+    // Yüzdelik değişirse ölçümler sıfırdan başlar
+    public synchronized void configure(double percentile, long margin) {
+        this.margin = Math.max(0, margin);
+        if (percentile != this.percentile) {
+            this.percentile = percentile;
+            reset();
+        }
+    }
+
+    private void reset() {
+        firstPart = new WindowedQuantile(percentile);
+        interPart = new WindowedQuantile(percentile);
+    }
+
+    public synchronized void recordFirstPart(long elapsed) {
+        firstPart.add(elapsed);
+    }
+
+    // İlk parça süresinde gelmedi: gerçek süre en az timeout kadardır
+    public synchronized void recordFirstPartTimeout(long timeout) {
+        firstPart.add(timeout);
+    }
+
+    public synchronized void recordGap(long gap) {
+        interPart.add(gap);
+    }
+
+    // Gönderimden sonra ilk parça için en fazla ne kadar beklenecek
+    public synchronized long firstPartTimeout() {
+        return derive(firstPart, MIN_FIRST_PART_TIMEOUT, DEFAULT_FIRST_PART_TIMEOUT);
+    }
+
+    // Son parçadan sonra ne kadar sessizlikte buffer işlenecek
+    public synchronized long quietPeriod() {
+        return derive(interPart, MIN_QUIET_PERIOD, DEFAULT_QUIET_PERIOD);
+    }
+
+    // Parçalar gelmeye başladıktan sonra eksikler için vazgeçme süresi
+    public synchronized long giveUpTimeout() {
+        if (interPart.getCount() < MIN_SAMPLES) {
+            return DEFAULT_GIVE_UP;
+        }
+        // Bir parça boşluğu kaçırılmış olabilir: p-yüzdelik boşluğun iki katı
+        long estimate = (long) (2 * interPart.getValue()) + margin;
+        return Math.max(MIN_GIVE_UP, Math.min(DEFAULT_GIVE_UP, estimate));
+    }
+
+    private long derive(WindowedQuantile sketch, long min, long max) {
+        if (sketch.getCount() < MIN_SAMPLES) {
+            return max;
+        }
+        long estimate = (long) sketch.getValue() + margin;
+        return Math.max(min, Math.min(max, estimate));
+    }
+
+    public synchronized String summary() {
+        return "ilk parça p" + Math.round(percentile * 100) + "=" + format(firstPart) +
+                " boşluk p" + Math.round(percentile * 100) + "=" + format(interPart) +
+                " | timeout=" + firstPartTimeout() + "ms sessizlik=" + quietPeriod() +
+                "ms vazgeçme=" + giveUpTimeout() + "ms";
+    }
+
+    private static String format(WindowedQuantile sketch) {
+        return sketch.getCount() == 0 ? "-" : Math.round(sketch.getValue()) + "ms(n=" + sketch.getCount() + ")";
+    }
+
+    // İki P² ölçümü sırayla doldurulur: dolan ölçüm değeri vermeye devam
+    // ederken yenisi sıfırdan başlar, yarısı dolunca onun yerini alır.
+    // Böylece tahmin en fazla son iki pencereyi yansıtır
+    private static class WindowedQuantile {
+        private final double p;
+        private P2Quantile current;
+        private P2Quantile previous;
+
+        WindowedQuantile(double p) {
+            this.p = p;
+            this.current = new P2Quantile(p);
+        }
+
+        void add(double x) {
+            if (current.getCount() >= WINDOW) {
+                previous = current;
+                current = new P2Quantile(p);
+            }
+            current.add(x);
+        }
+
+        private P2Quantile active() {
+            return previous == null || current.getCount() >= WINDOW / 2 ? current : previous;
+        }
+
+        long getCount() {
+            return active().getCount();
+        }
+
+        double getValue() {
+            return active().getValue();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.smsrelay.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hedef numaradan gelen ham PDU'ların iz dosyası. Sahada görülen tuhaf
+// parçalanmalar cihaz dışında TraceReplayer ile yeniden oynatılır.
+// Kayıt başına tek yazma yapılır, fsync yoktur; dosya MAX_BYTES'ı aşınca
+// ".1" uzantılı eski dosyanın yerine geçer ve yenisi başlar.
+//
+// Biçim: MAGIC, VERSION, başlangıç zamanı (long); ardından her kayıt için
+// önceki kayda göre zaman farkı, SIM, biçim, gönderen ve PDU. Sayılar
+// değişken uzunlukta yazılır; gönderen dosya içinde bir kez yazılıp sonra
+// sıra numarasıyla anılır.
+public class ReplyTrace {
+    private static final int MAGIC = 0x53525452; // "SRTR"
+    private static final int VERSION = 1;
+    private static final long MAX_BYTES = 512 * 1024;
+
+    private static final int FORMAT_3GPP = 0;
+    private static final int FORMAT_3GPP2 = 1;
+
+    // İzdeki tek bir PDU
+    public static class Record {
+        public final long time;
+        public final String sender;
+        public final int subscriptionId;
+        public final String format;
+        public final byte[] pdu;
+
+        public Record(long time, String sender, int subscriptionId, String format, byte[] pdu) {
+            this.time = time;
+            this.sender = sender;
+            this.subscriptionId = subscriptionId;
+            this.format = format;
+            this.pdu = pdu;
+        }
+    }
+
+    private final File file;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(buffer);
+    private final Map<String, Integer> senders = new HashMap<>();
+
+    private FileOutputStream out;
+    private long written;
+    private long lastTime;
+
+    private static ReplyTrace instance;
+
+    public ReplyTrace(File file) {
+        this.file = file;
+    }
+
+    public static synchronized ReplyTrace get(File filesDir) {
+        if (instance == null) {
+            instance = new ReplyTrace(new File(filesDir, "reply_trace.bin"));
+        }
+        return instance;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Döndürülmüş önceki iz dosyası
+    public File getPreviousFile() {
+        return new File(file.getPath() + ".1");
+    }
+
+    public synchronized void record(long time, String sender, int subscriptionId, String format, byte[] pdu) {
+        try {
+            if (out == null || written >= MAX_BYTES) {
+                open(time);
+            }
+
+            buffer.reset();
+            writeVarLong(record, zigzag(time - lastTime));
+            writeVarLong(record, zigzag(subscriptionId));
+            record.writeByte("3gpp2".equals(format) ? FORMAT_3GPP2 : FORMAT_3GPP);
+
+            String key = sender != null ? sender : "";
+            Integer index = senders.get(key);
+            if (index != null) {
+                writeVarLong(record, index);
+            } else {
+                writeVarLong(record, senders.size());
+                record.writeUTF(key);
+                senders.put(key, senders.size());
+            }
+
+            writeVarLong(record, pdu.length);
+            record.write(pdu);
+
+            buffer.writeTo(out);
+            written += buffer.size();
+            lastTime = time;
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+    }
+
+    // Sınırı aşan dosya eskisinin yerine geçer; yarım dosyaya devam edilmez,
+    // çünkü gönderen tablosu ve zaman tabanı dosya başındadır
+    private void open(long time) throws IOException {
+        close();
+        if (file.exists() && file.length() > 0) {
+            File previous = getPreviousFile();
+            previous.delete();
+            if (!file.renameTo(previous)) {
+                file.delete();
+            }
+        }
+
+        out = new FileOutputStream(file);
+        senders.clear();
+        lastTime = time;
+
+        buffer.reset();
+        record.writeInt(MAGIC);
+        record.writeInt(VERSION);
+        record.writeLong(time);
+        buffer.writeTo(out);
+        written = buffer.size();
+    }
+
+    // Önceki ve güncel dosyayı sırayla okur
+    public synchronized List<Record> readAll() throws IOException {
+        List<Record> records = new ArrayList<>();
+        if (out != null) {
+            out.flush();
+        }
+        File previous = getPreviousFile();
+        if (previous.exists()) {
+            records.addAll(read(previous));
+        }
+        if (file.exists()) {
+            records.addAll(read(file));
+        }
+        return records;
+    }
+
+    public static List<Record> read(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    // Yarım kalmış son kayıt atlanır
+    public static List<Record> read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        List<Record> records = new ArrayList<>();
+        List<String> senders = new ArrayList<>();
+
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("İz dosyası tanınmadı");
+            }
+            long time = in.readLong();
+
+            while (true) {
+                time += unzigzag(readVarLong(in));
+                int subscriptionId = (int) unzigzag(readVarLong(in));
+                String format = in.readUnsignedByte() == FORMAT_3GPP2 ? "3gpp2" : "3gpp";
+
+                int index = (int) readVarLong(in);
+                if (index == senders.size()) {
+                    senders.add(in.readUTF());
+                } else if (index > senders.size()) {
+                    throw new IOException("Bozuk iz kaydı: gönderen " + index);
+                }
+                String sender = senders.get(index);
+
+                byte[] pdu = new byte[(int) readVarLong(in)];
+                in.readFully(pdu);
+                records.add(new Record(time, sender, subscriptionId, format, pdu));
+            }
+        } catch (EOFException e) {
+            return records;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Bozuk iz kaydı: sayı çok uzun");
+    }
+}
@@ -0,0 +1,238 @@
+package com.smsrelay.core;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Plakaya göre tamamlanmış 5664 cevapları. Aynı plaka süre dolmadan tekrar
+// sorulursa kullanıcı 5664'e SMS atılmadan buradan cevaplanır. Boyut (LRU)
+// ve süreye göre temizlenir, servis yeniden başladığında dosyadan yüklenir.
+public class ResultCache {
+    private static final int DEFAULT_CAPACITY = 500;
+    private static final long DEFAULT_TTL = 6 * 60 * 60 * 1000L; // 6 saat
+    private static final long SAVE_DELAY_MS = 1000;
+
+    private final File file;
+    // Ayar değişiminde ve yüklemede süre aşımı için; RelayEngine ile aynı saat verilmelidir
+    private final LongSupplier clock;
+    // Erişim sıralı: en uzun süredir kullanılmayan kayıt baştadır
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService saveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "result-cache");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int capacity = DEFAULT_CAPACITY;
+    private long ttl = DEFAULT_TTL;
+    private boolean loaded = false;
+    private boolean saveScheduled = false;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public static class Entry {
+        public final String message;
+        public final long storedAt;
+
+        public Entry(String message, long storedAt) {
+            this.message = message;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private static ResultCache instance;
+
+    public ResultCache(File file) {
+        this(file, System::currentTimeMillis);
+    }
+
+    public ResultCache(File file, LongSupplier clock) {
+        this.file = file;
+        this.clock = clock;
+    }
+
+    public static synchronized ResultCache get(File filesDir) {
+        if (instance == null) {
+            instance = new ResultCache(new File(filesDir, "result_cache.json"));
+        }
+        return instance;
+    }
+
+    // capacity 0 ya da ttl 0 önbelleği kapatır
+    public synchronized void configure(int capacity, long ttl) {
+        this.capacity = Math.max(0, capacity);
+        this.ttl = Math.max(0, ttl);
+        evict(clock.getAsLong());
+    }
+
+    public synchronized boolean isEnabled() {
+        return capacity > 0 && ttl > 0;
+    }
+
+    // Süresi dolmamış cevap varsa döner; isabet/ıska sayılır
+    public synchronized String lookup(String vehicleId, long now) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ensureLoaded();
+
+        String key = QueryRegistry.normalizePlate(vehicleId);
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.storedAt >= ttl) {
+            entries.remove(key);
+            evictions++;
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.message;
+    }
+
+    public synchronized void put(String vehicleId, String message, long now) {
+        if (!isEnabled() || vehicleId == null || message == null || message.isEmpty()) {
+            return;
+        }
+        ensureLoaded();
+
+        entries.put(QueryRegistry.normalizePlate(vehicleId), new Entry(message, now));
+        evict(now);
+        scheduleSave();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized String summary() {
+        return "isabet " + hits + "/" + (hits + misses) +
+                " (%" + Math.round(getHitRate() * 100) + ") | kayıt: " + entries.size() +
+                " | çıkarılan: " + evictions;
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entries.size() > capacity || now - entry.storedAt >= ttl) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        if (!file.exists()) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String plate = null;
+                String message = null;
+                long storedAt = 0;
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                        continue;
+                    }
+                    switch (name) {
+                        case "plate":
+                            plate = reader.nextString();
+                            break;
+                        case "message":
+                            message = reader.nextString();
+                            break;
+                        case "stored_at":
+                            storedAt = reader.nextLong();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                if (plate != null && message != null && now - storedAt < ttl) {
+                    entries.put(plate, new Entry(message, storedAt));
+                }
+            }
+            reader.endArray();
+        } catch (IOException | IllegalStateException e) {
+            // Bozuk dosya: okunabilen kayıtlar geçerlidir, kalan önbellek boş başlar
+        }
+        evict(now);
+    }
+
+    private void scheduleSave() {
+        if (saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        saveExecutor.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void save() {
+        List<Map.Entry<String, Entry>> snapshot = new ArrayList<>();
+        synchronized (this) {
+            saveScheduled = false;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                snapshot.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+            }
+        }
+
+        // Önce geçici dosyaya yazılır; yarım kalan yazma eski dosyayı bozmaz
+        File tmp = new File(file.getPath() + ".tmp");
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (Map.Entry<String, Entry> e : snapshot) {
+                writer.beginObject();
+                writer.name("plate").value(e.getKey());
+                writer.name("message").value(e.getValue().message);
+                writer.name("stored_at").value(e.getValue().storedAt);
+                writer.endObject();
+            }
+            writer.endArray();
+        } catch (IOException e) {
+            return;
+        }
+        tmp.renameTo(file);
+    }
+}
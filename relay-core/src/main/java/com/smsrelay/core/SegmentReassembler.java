@@ -0,0 +1,86 @@
+package com.smsrelay.core;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// Çok parçalı SMS segmentlerini gönderen + SIM + referans numarasına göre
+// toplar ve tüm segmentler geldiği anda sıralı, tam metni verir.
+// Segmentler karışık ya da ters sırada gelse bile yanlış mesaja eklenmez.
+public class SegmentReassembler {
+    public interface Sink {
+        // firstAt: grubun ilk segmentinin geliş zamanı
+        void accept(int subscriptionId, String text, long firstAt);
+    }
+
+    private final Map<String, Group> groups = new HashMap<>();
+
+    private static class Group {
+        final String[] segments;
+        final int subscriptionId;
+        final long firstAt;
+        int received = 0;
+
+        Group(int total, int subscriptionId, long firstAt) {
+            this.segments = new String[total];
+            this.subscriptionId = subscriptionId;
+            this.firstAt = firstAt;
+        }
+
+        String join() {
+            StringBuilder text = new StringBuilder();
+            for (String segment : segments) {
+                if (segment != null) {
+                    text.append(segment);
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    // Mesaj tamamlandıysa tam metni, segment eksikse null döner.
+    // info null ise (tek parçalı SMS) gövde olduğu gibi döner.
+    public String add(String sender, int subscriptionId, PduHeaderParser.ConcatInfo info, String body, long now) {
+        if (info == null) {
+            return body;
+        }
+
+        String key = sender + "|" + subscriptionId + "|" + info.reference + "|" + info.total;
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(info.total, subscriptionId, now);
+            groups.put(key, group);
+        }
+
+        int index = info.sequence - 1;
+        if (group.segments[index] == null) {
+            group.segments[index] = body != null ? body : "";
+            group.received++;
+        }
+
+        if (group.received == group.segments.length) {
+            groups.remove(key);
+            return group.join();
+        }
+        return null;
+    }
+
+    // maxAge'den uzun süredir eksik kalan grupları eldeki segmentlerle verir
+    public int expire(long now, long maxAge, Sink sink) {
+        int expired = 0;
+        Iterator<Group> it = groups.values().iterator();
+        while (it.hasNext()) {
+            Group group = it.next();
+            if (now - group.firstAt >= maxAge) {
+                it.remove();
+                sink.accept(group.subscriptionId, group.join(), group.firstAt);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    public boolean hasPending() {
+        return !groups.isEmpty();
+    }
+}
@@ -0,0 +1,26 @@
+package com.smsrelay.core;
+
+import java.util.ArrayDeque;
+
+// Son bir saatteki gönderim zamanları; saatlik hızı raporlamak için
+public class SendWindow {
+    private static final long WINDOW = 3600000;
+
+    private final ArrayDeque<Long> sends = new ArrayDeque<>();
+
+    public void record(long now) {
+        sends.addLast(now);
+        expire(now);
+    }
+
+    public int count(long now) {
+        expire(now);
+        return sends.size();
+    }
+
+    private void expire(long now) {
+        while (!sends.isEmpty() && now - sends.peekFirst() >= WINDOW) {
+            sends.pollFirst();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.smsrelay.core;
+
+// Tek bir SIM (abonelik): kendi gönderim planlayıcısı ve sağlık durumu vardır.
+// Cevabı hâlâ gelebilecek bir sorgu varken SIM'den yeni sorgu gönderilmez
+public class SimSlot {
+    // Abonelik seçilemediğinde kullanılan varsayılan SIM
+    public static final int DEFAULT_SUBSCRIPTION = -1;
+
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private static final long COOLDOWN = 300000; // 5 dakika
+
+    public final int subscriptionId;
+    public final String name;
+    public final DispatchScheduler scheduler;
+
+    private int consecutiveFailures = 0;
+    private long unhealthyUntil = 0;
+    // Sonuçlanmış sorgunun geç cevabı için ayrılmış süre
+    private long heldUntil = 0;
+
+    public SimSlot(int subscriptionId, String name, DispatchScheduler scheduler) {
+        this.subscriptionId = subscriptionId;
+        this.name = name;
+        this.scheduler = scheduler;
+    }
+
+    // Sağlıklı ve geç cevap beklemiyor
+    public synchronized boolean isAvailable(long now) {
+        return now >= unhealthyUntil && now >= heldUntil;
+    }
+
+    public synchronized long availableIn(long now) {
+        return Math.max(0, Math.max(unhealthyUntil, heldUntil) - now);
+    }
+
+    // Geç cevabın parçaları başka sorguya karışmasın diye SIM bu ana kadar kullanılmaz
+    public synchronized void holdUntil(long until) {
+        heldUntil = Math.max(heldUntil, until);
+    }
+
+    public synchronized void onSendResult(boolean ok, long now) {
+        if (ok) {
+            consecutiveFailures = 0;
+            return;
+        }
+
+        consecutiveFailures++;
+        if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+            // Bekleme sonunda tek bir denemeyle tekrar sınanır
+            unhealthyUntil = now + COOLDOWN;
+            consecutiveFailures = MAX_CONSECUTIVE_FAILURES - 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "#" + subscriptionId;
+    }
+}
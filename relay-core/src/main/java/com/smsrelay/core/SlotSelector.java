@@ -0,0 +1,80 @@
+package com.smsrelay.core;
+
+import java.util.List;
+
+// Aktif SIM'ler arasında sıradaki sorgunun hangisinden gönderileceğini seçer.
+// Her SIM'in kendi hız sınırı ve sağlık durumu vardır; uçuştaki sorgu
+// sayıları kayıttan okunur. Plakasız cevap parçaları en kolay geldiği SIM'den
+// ayırt edildiği için sorgular önce boş SIM'lere dağıtılır.
+public class SlotSelector {
+    private final List<SimSlot> slots;
+    private final QueryRegistry registry;
+
+    public SlotSelector(List<SimSlot> slots, QueryRegistry registry) {
+        this.slots = slots;
+        this.registry = registry;
+    }
+
+    public List<SimSlot> getSlots() {
+        return slots;
+    }
+
+    public SimSlot find(int subscriptionId) {
+        for (SimSlot slot : slots) {
+            if (slot.subscriptionId == subscriptionId) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    // Kullanılabilir, hız sınırı izin veren ve en az sorgu bekleyen SIM
+    public SimSlot pickReady(long now, int maxPerSlot) {
+        SimSlot best = null;
+        int bestInFlight = Integer.MAX_VALUE;
+
+        for (SimSlot slot : slots) {
+            int inFlight = registry.countBySubscription(slot.subscriptionId);
+            if (!slot.isAvailable(now) || inFlight >= maxPerSlot || slot.scheduler.delayUntilNextSend(now) > 0) {
+                continue;
+            }
+            if (inFlight < bestInFlight) {
+                best = slot;
+                bestInFlight = inFlight;
+            }
+        }
+        return best;
+    }
+
+    // Boş yeri olan SIM'lerden en erken hazır olanın bekleme süresi.
+    // Hepsi doluysa -1: bir sorgu bitince gönderim zaten tetiklenir
+    public long nextReadyDelay(long now, int maxPerSlot) {
+        long min = -1;
+        for (SimSlot slot : slots) {
+            if (registry.countBySubscription(slot.subscriptionId) >= maxPerSlot) {
+                continue;
+            }
+            long delay = Math.max(slot.availableIn(now), slot.scheduler.delayUntilNextSend(now));
+            if (min < 0 || delay < min) {
+                min = delay;
+            }
+        }
+        return min;
+    }
+
+    public int capacity(long now, int maxPerSlot) {
+        int available = 0;
+        for (SimSlot slot : slots) {
+            if (slot.isAvailable(now)) available++;
+        }
+        return Math.max(1, available) * maxPerSlot;
+    }
+
+    public int getQueriesPerHour(long now) {
+        int total = 0;
+        for (SimSlot slot : slots) {
+            total += slot.scheduler.getQueriesPerHour(now);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,185 @@
+package com.smsrelay.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hashed timing wheel: sorgu başına zaman aşımları tek yapıda tutulur.
+// Kurma ve iptal O(1); her zamanlayıcı sorgu ID'si + tür ile anahtarlanır,
+// aynı anahtara yeniden kurmak eskisini iptal eder. Android'e bağımlı değildir,
+// zamanı advanceTo() ile ilerleten taraf sürer.
+public class TimingWheel {
+    private final long tickMs;
+    private final Node[] buckets;
+    private final int mask;
+    private final Map<String, Node[]> byQuery = new HashMap<>();
+    private final int kinds;
+    // Henüz işlenmemiş ilk tick
+    private long currentTick;
+    private int size = 0;
+
+    private static final class Node {
+        final String queryId;
+        final int kind;
+        final Runnable task;
+        long rounds;
+        int bucket;
+        // Süresi doldu, bu advanceTo() içinde çalışmayı bekliyor
+        boolean expired;
+        Node prev;
+        Node next;
+
+        Node(String queryId, int kind, Runnable task) {
+            this.queryId = queryId;
+            this.kind = kind;
+            this.task = task;
+        }
+    }
+
+    // wheelSize ikinin kuvvetine yuvarlanır; kinds: sorgu başına zamanlayıcı türü sayısı
+    public TimingWheel(long tickMs, int wheelSize, int kinds, long now) {
+        int n = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.buckets = new Node[n];
+        this.mask = n - 1;
+        this.kinds = kinds;
+        this.currentTick = now / tickMs;
+    }
+
+    public void schedule(String queryId, int kind, long deadline, Runnable task) {
+        cancel(queryId, kind);
+
+        // Süresi geçmiş zamanlayıcı bir sonraki tick'te çalışır
+        long tick = Math.max(currentTick, (deadline + tickMs - 1) / tickMs);
+        long ticks = tick - currentTick;
+
+        Node node = new Node(queryId, kind, task);
+        node.rounds = ticks / buckets.length;
+        node.bucket = (int) (tick & mask);
+        link(node);
+
+        Node[] slots = byQuery.get(queryId);
+        if (slots == null) {
+            slots = new Node[kinds];
+            byQuery.put(queryId, slots);
+        }
+        slots[kind] = node;
+        size++;
+    }
+
+    public boolean cancel(String queryId, int kind) {
+        Node[] slots = byQuery.get(queryId);
+        if (slots == null || slots[kind] == null) {
+            return false;
+        }
+        remove(slots, slots[kind]);
+        return true;
+    }
+
+    public void cancelAll(String queryId) {
+        Node[] slots = byQuery.get(queryId);
+        if (slots == null) {
+            return;
+        }
+        for (Node node : slots) {
+            if (node != null) {
+                remove(slots, node);
+            }
+        }
+    }
+
+    public boolean isScheduled(String queryId, int kind) {
+        Node[] slots = byQuery.get(queryId);
+        return slots != null && slots[kind] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // now'a kadar olan tick'leri işler ve süresi dolan görevleri çalıştırır.
+    // Görevler çalışmadan hemen önce yapı dışına alınır; içlerinden yeniden kurulum
+    // yapılabilir. Aynı tick'te önce çalışan görevin iptal ettiği ya da yeniden
+    // kurduğu zamanlayıcı çalışmaz
+    public int advanceTo(long now) {
+        long target = now / tickMs;
+        List<Node> due = new ArrayList<>();
+
+        while (currentTick <= target && size > due.size()) {
+            Node node = buckets[(int) (currentTick & mask)];
+            while (node != null) {
+                if (node.expired) {
+                    // Çark bu çağrıda bir turdan fazla döndü; zaten sırada
+                } else if (node.rounds == 0) {
+                    node.expired = true;
+                    due.add(node);
+                } else {
+                    node.rounds--;
+                }
+                node = node.next;
+            }
+            currentTick++;
+        }
+        // Boş çarkta tick'ler tek tek dolaşılmaz
+        if (currentTick <= target) {
+            currentTick = target + 1;
+        }
+
+        int ran = 0;
+        for (Node node : due) {
+            Node[] slots = byQuery.get(node.queryId);
+            if (slots == null || slots[node.kind] != node) {
+                continue;
+            }
+            remove(slots, node);
+            node.task.run();
+            ran++;
+        }
+        return ran;
+    }
+
+    // Sıradaki tick'in zamanı; sürücü bir sonraki uyanmayı buna göre planlar
+    public long nextTickAt() {
+        return currentTick * tickMs;
+    }
+
+    private void link(Node node) {
+        Node head = buckets[node.bucket];
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        buckets[node.bucket] = node;
+    }
+
+    private void remove(Node[] slots, Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            buckets[node.bucket] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+
+        slots[node.kind] = null;
+        boolean empty = true;
+        for (Node other : slots) {
+            if (other != null) {
+                empty = false;
+                break;
+            }
+        }
+        if (empty) {
+            byQuery.remove(node.queryId);
+        }
+        size--;
+    }
+}
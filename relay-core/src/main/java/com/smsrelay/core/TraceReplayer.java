@@ -0,0 +1,137 @@
+package com.smsrelay.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Kayıtlı iz dosyasındaki PDU'ları çözüp segment olarak yeniden verir.
+// Gerçek hızda (kayıtlar arası süre beklenerek) ya da beklemeden oynatılabilir;
+// hedef RelayEngine::onSegment ya da yalnızca birleştirmeyi çalıştıran Reassembly olabilir.
+public class TraceReplayer {
+    public interface Target {
+        void onSegment(String sender, int subscriptionId, PduHeaderParser.ConcatInfo concat, String body);
+    }
+
+    public interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    // Oynatma özeti
+    public static class Result {
+        public int records;
+        public int decoded;
+        public int skipped;
+        public long elapsedNanos;
+
+        public double perSecond() {
+            return elapsedNanos > 0 ? decoded * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return records + " kayıt, " + decoded + " segment, " + skipped + " atlandı, " +
+                    Math.round(perSecond()) + " segment/sn";
+        }
+    }
+
+    private final Target target;
+    private Sleeper sleeper = Thread::sleep;
+
+    public TraceReplayer(Target target) {
+        this.target = target;
+    }
+
+    public void setSleeper(Sleeper sleeper) {
+        this.sleeper = sleeper;
+    }
+
+    // realTime: kayıtlar arasındaki gerçek süre kadar beklenir
+    public Result replay(List<ReplyTrace.Record> records, boolean realTime) throws InterruptedException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        long previous = records.isEmpty() ? 0 : records.get(0).time;
+
+        for (ReplyTrace.Record record : records) {
+            result.records++;
+            if (realTime && record.time > previous) {
+                sleeper.sleep(record.time - previous);
+            }
+            previous = record.time;
+
+            // 3GPP2 PDU'ları cihaz dışında çözülemez
+            PduDecoder.Decoded decoded = "3gpp2".equals(record.format) ? null : PduDecoder.decode(record.pdu);
+            if (decoded == null) {
+                result.skipped++;
+                continue;
+            }
+            result.decoded++;
+            target.onSegment(record.sender, record.subscriptionId, decoded.concat, decoded.body);
+        }
+
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Sorgu eşleştirmesi olmadan yalnızca birleştirme yolu: segmentler tam
+    // mesaja, "Mesaj (n/m)" başlıklı mesajlar SIM başına tek cevaba toplanır.
+    // Sahadaki bir izin hangi cevaplara dönüştüğünü görmek için kullanılır.
+    public static class Reassembly implements Target {
+        public interface Listener {
+            void onReply(int subscriptionId, String reply, boolean complete);
+        }
+
+        private final SegmentReassembler segments = new SegmentReassembler();
+        private final Map<Integer, ReplyAssembler> replies = new HashMap<>();
+        private final Listener listener;
+        private long now = 0;
+
+        public Reassembly(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSegment(String sender, int subscriptionId, PduHeaderParser.ConcatInfo concat, String body) {
+            String complete = segments.add(sender, subscriptionId, concat, body, now++);
+            if (complete == null) {
+                return;
+            }
+
+            ReplyText.Header header = ReplyText.parseHeader(complete);
+            ReplyAssembler assembler = replies.get(subscriptionId);
+
+            if (header == null) {
+                if (assembler == null || !assembler.appendFragment(complete)) {
+                    listener.onReply(subscriptionId, complete, false);
+                }
+                return;
+            }
+
+            // Yeni bir cevabın ilk mesajı önceki yarım cevabı kapatır
+            if (assembler != null && header.number == 1 && assembler.hasMessage(1)) {
+                emit(subscriptionId, assembler);
+                assembler = null;
+            }
+            if (assembler == null) {
+                assembler = new ReplyAssembler();
+                replies.put(subscriptionId, assembler);
+            }
+
+            // Son numara gelse de cevap kapatılmaz; ardından başlıksız devam parçası gelebilir
+            assembler.startMessage(header.number, header.total, complete);
+        }
+
+        // İz bitince eksik kalan segmentler ve cevaplar eldeki haliyle verilir
+        public void finish() {
+            segments.expire(Long.MAX_VALUE, 0, (subscriptionId, text, firstAt) -> onSegment(null, subscriptionId, null, text));
+            for (Map.Entry<Integer, ReplyAssembler> entry : new HashMap<>(replies).entrySet()) {
+                emit(entry.getKey(), entry.getValue());
+            }
+        }
+
+        private void emit(int subscriptionId, ReplyAssembler assembler) {
+            replies.remove(subscriptionId);
+            assembler.flush();
+            listener.onReply(subscriptionId, assembler.combine(), assembler.isComplete());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlertAggregatorTest {
+    private static final long WINDOW = 10 * 60 * 1000;
+
+    @Test
+    public void repeatedAlertsFoldIntoOnePerWindow() {
+        AlertAggregator alerts = new AlertAggregator(WINDOW);
+        alerts.record("query_failed", "34ABC123", 0);
+        for (int i = 1; i <= 40; i++) {
+            alerts.record("query_failed", "06XYZ" + i, i * 1000);
+        }
+
+        // İlk uyarı hemen çıkar, kalanlar pencere sonunu bekler
+        List<AlertAggregator.Alert> first = alerts.drain(0, false);
+        assertEquals(1, first.size());
+        assertEquals(1, first.get(0).count);
+        assertEquals(WINDOW - 40 * 1000, alerts.nextDueDelay(40 * 1000));
+        assertTrue(alerts.drain(WINDOW - 1, false).isEmpty());
+
+        List<AlertAggregator.Alert> folded = alerts.drain(WINDOW, false);
+        assertEquals(1, folded.size());
+        assertEquals(40, folded.get(0).count);
+        assertEquals(1000, folded.get(0).firstAt);
+        assertEquals("06XYZ40", folded.get(0).detail);
+        assertEquals(-1, alerts.nextDueDelay(WINDOW));
+
+        // Pencere kapandıktan sonraki ilk uyarı yine hemen çıkar
+        alerts.record("query_failed", "35DEF456", WINDOW + 1);
+        assertEquals(1, alerts.drain(WINDOW + 1, false).size());
+    }
+
+    @Test
+    public void kindsAreAggregatedSeparately() {
+        AlertAggregator alerts = new AlertAggregator(WINDOW);
+        alerts.record("query_failed", null, 0);
+        alerts.record("query_partial", null, 5);
+        alerts.record("query_failed", null, 10);
+
+        assertEquals(2, alerts.drain(10, false).size());
+        assertEquals(1, alerts.size());
+    }
+
+    @Test
+    public void restoredAlertsMergeWithPendingOfSameKind() {
+        AlertAggregator alerts = new AlertAggregator(WINDOW);
+        alerts.record("query_failed", "a", 0);
+        List<AlertAggregator.Alert> undelivered = alerts.drain(0, false);
+        alerts.record("query_failed", "b", 1000);
+        alerts.record("query_failed", "c", 2000);
+
+        alerts.restore(undelivered, 3000);
+        assertEquals(0, alerts.nextDueDelay(3000));
+
+        List<AlertAggregator.Alert> all = alerts.drain(3000, false);
+        assertEquals(1, all.size());
+        assertEquals(3, all.get(0).count);
+        assertEquals(0, all.get(0).firstAt);
+        assertEquals(2000, all.get(0).lastAt);
+        assertEquals("c", all.get(0).detail);
+    }
+}
@@ -0,0 +1,94 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    private static final long BASE_MS = 5000;
+    private static final long MAX_MS = 60000;
+
+    @Test
+    public void opensAfterThresholdAndClosesOnSuccessfulProbe() {
+        CircuitBreaker breaker = new CircuitBreaker(3, BASE_MS, MAX_MS, 10000, new Random(1));
+        long now = 1000;
+
+        breaker.onFailure(now);
+        breaker.onFailure(now);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(now));
+        assertTrue(breaker.allowRequest(now));
+
+        breaker.onFailure(now);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(now));
+        assertFalse(breaker.allowRequest(now));
+        long wait = breaker.retryDelay(now);
+        assertTrue(wait > 0);
+
+        // Süre dolunca yalnızca tek deneme isteği geçer
+        now += wait;
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(now));
+        assertTrue(breaker.allowRequest(now));
+        assertFalse(breaker.allowRequest(now));
+
+        breaker.onSuccess(now);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(now));
+        assertTrue(breaker.allowRequest(now));
+        assertEquals(0, breaker.retryDelay(now));
+        // Kapandıktan hemen sonra yük düşük başlar, ramp süresinde tama çıkar
+        assertEquals(0.1, breaker.rampFactor(now), 1e-9);
+        assertEquals(0.55, breaker.rampFactor(now + 5000), 1e-9);
+        assertEquals(1.0, breaker.rampFactor(now + 10000), 1e-9);
+    }
+
+    @Test
+    public void failedProbeReopensWithLargerCeiling() {
+        CircuitBreaker breaker = new CircuitBreaker(1, BASE_MS, MAX_MS, 10000, new Random(2));
+        long now = 0;
+        breaker.onFailure(now);
+        now += breaker.retryDelay(now);
+
+        assertTrue(breaker.allowRequest(now));
+        breaker.onFailure(now);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(now));
+        assertTrue(breaker.retryDelay(now) <= 2 * BASE_MS);
+
+        // Açıkken başarı (ör. devreden önce başlamış istek) devreyi kapatır
+        breaker.onSuccess(now);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(now));
+    }
+
+    @Test
+    public void openDurationIsFullJitterUpToDoublingCeiling() {
+        Random random = new Random(3);
+        for (int trips = 1; trips <= 6; trips++) {
+            long ceiling = Math.min(MAX_MS, BASE_MS << (trips - 1));
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            for (int i = 0; i < 2000; i++) {
+                long wait = openAfterTrips(trips, random);
+                assertTrue("alt sınır: " + wait, wait >= CircuitBreaker.MIN_OPEN_MS);
+                assertTrue("üst sınır: " + wait, wait <= ceiling);
+                min = Math.min(min, wait);
+                max = Math.max(max, wait);
+            }
+            // Süreler tavanın tamamına yayılır; yarısı sabit değildir
+            assertTrue(min < ceiling / 4);
+            assertTrue(max > ceiling * 9 / 10);
+        }
+    }
+
+    // Devreyi trips kez açtırır ve son açık kalma süresini döner
+    private static long openAfterTrips(int trips, Random random) {
+        CircuitBreaker breaker = new CircuitBreaker(1, BASE_MS, MAX_MS, 10000, random);
+        long now = 0;
+        breaker.onFailure(now);
+        for (int i = 1; i < trips; i++) {
+            now += breaker.retryDelay(now);
+            breaker.allowRequest(now);
+            breaker.onFailure(now);
+        }
+        return breaker.retryDelay(now);
+    }
+}
@@ -0,0 +1,126 @@
+package com.smsrelay.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// 5664'ün yerini tutan sahte SMS geçidi. Gelen plaka sorgusuna "Mesaj (n/m)"
+// başlıklı, istenirse çok segmentli bir cevap üretir ve segmentleri sanal
+// saatte ayarlanabilir gecikme, kayıp ve sıra bozulmasıyla teslim eder.
+class FakeSmsGateway {
+    static final String SENDER = "5664";
+
+    // Cevap biçimi ve ağ koşulları
+    static class Settings {
+        long firstPartMin = 5000;
+        long firstPartMax = 40000;
+        long gapMin = 500;
+        long gapMax = 6000;
+        int maxMessages = 5;
+        int segmentsPerMessage = 2;
+        // Segment başına kaybolma olasılığı
+        double lossRate = 0;
+        // Segmentin bir sonrakinden sonra gelecek kadar gecikme olasılığı
+        double reorderRate = 0;
+        // Cevabın hiç gelmeme olasılığı
+        double silentRate = 0;
+    }
+
+    interface Receiver {
+        void onSegment(String sender, int subscriptionId, PduHeaderParser.ConcatInfo concat, String body);
+    }
+
+    private final SimulationClock clock;
+    private final Settings settings;
+    private final Random random;
+    private final Receiver receiver;
+    private int nextReference = 0;
+    // Her cevabın tüm mesajlarında geçen dosya numarası -> sorgulanan plaka
+    private final Map<String, String> replies = new HashMap<>();
+
+    private long requests = 0;
+    private long segmentsSent = 0;
+    private long segmentsLost = 0;
+
+    FakeSmsGateway(SimulationClock clock, Settings settings, long seed, Receiver receiver) {
+        this.clock = clock;
+        this.settings = settings;
+        this.random = new Random(seed);
+        this.receiver = receiver;
+    }
+
+    long getRequests() {
+        return requests;
+    }
+
+    long getSegmentsSent() {
+        return segmentsSent;
+    }
+
+    long getSegmentsLost() {
+        return segmentsLost;
+    }
+
+    // Dosya numarasının ait olduğu plaka; bilinmiyorsa null
+    String plateOf(String file) {
+        return replies.get(file);
+    }
+
+    // Sahadaki cevaba benzer "Mesaj (n/m)" metni; plaka yalnızca ilk mesajdadır.
+    // Dosya numarası her mesajda geçer, yanlış sorguya eklenen parçayı ayırt ettirir
+    static String replyMessage(String plate, String file, int n, int m) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Mesaj (").append(n).append('/').append(m).append(") ");
+        if (n == 1) {
+            sb.append(plate).append(" plakali aracin hasar kayitlari: ");
+        }
+        sb.append("Dosya ").append(file).append(" 0").append(n)
+                .append(".02.2023 tarihli kaza, onarim bedeli 12.345 TL, parca degisimi: on tampon. ");
+        if (n == m) {
+            sb.append("Detayli yasal bilgi icin https://sbm.org.tr/yu58 adresini ziyaret ediniz. B002");
+        }
+        return sb.toString();
+    }
+
+    // Relay'in seçtiği SIM'den hedef numaraya giden sorgu SMS'i
+    void request(int subscriptionId, String plate) {
+        requests++;
+        if (random.nextDouble() < settings.silentRate) {
+            return;
+        }
+
+        String file = "D" + requests;
+        replies.put(file, plate);
+        int messages = 1 + random.nextInt(settings.maxMessages);
+        long at = clock.now() + between(settings.firstPartMin, settings.firstPartMax);
+
+        for (int n = 1; n <= messages; n++) {
+            String text = replyMessage(plate, file, n, messages);
+            int segments = Math.max(1, settings.segmentsPerMessage);
+            int reference = nextReference++ & 0xFF;
+            int size = (text.length() + segments - 1) / segments;
+
+            for (int s = 0; s < segments; s++) {
+                String body = text.substring(Math.min(text.length(), s * size), Math.min(text.length(), (s + 1) * size));
+                PduHeaderParser.ConcatInfo concat = segments > 1 ? new PduHeaderParser.ConcatInfo(reference, segments, s + 1) : null;
+
+                segmentsSent++;
+                if (random.nextDouble() < settings.lossRate) {
+                    segmentsLost++;
+                } else {
+                    long deliverAt = at + random.nextInt(400);
+                    if (random.nextDouble() < settings.reorderRate) {
+                        deliverAt += between(settings.gapMin, settings.gapMax);
+                    }
+                    clock.postAt(() -> receiver.onSegment(SENDER, subscriptionId, concat, body), deliverAt);
+                }
+                at += 50 + random.nextInt(200);
+            }
+            at += between(settings.gapMin, settings.gapMax);
+        }
+    }
+
+    private long between(long min, long max) {
+        return max <= min ? min : min + (long) (random.nextDouble() * (max - min));
+    }
+}
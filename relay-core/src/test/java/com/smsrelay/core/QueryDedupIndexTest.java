@@ -0,0 +1,83 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueryDedupIndexTest {
+    private static final long TTL = 60000;
+
+    private long now = 1000;
+
+    @Test
+    public void pendingAndRecentlyFinishedQueriesAreRejected() {
+        QueryDedupIndex index = new QueryDedupIndex(10, TTL, () -> now);
+        assertTrue(index.tryAdd("q1"));
+        assertFalse(index.tryAdd("q1"));
+        assertEquals(1, index.pendingCount());
+
+        index.markFinished("q1");
+        assertEquals(0, index.pendingCount());
+        assertTrue(index.contains("q1"));
+        assertFalse(index.tryAdd("q1"));
+    }
+
+    @Test
+    public void finishedEntryExpiresOnInjectedClock() {
+        QueryDedupIndex index = new QueryDedupIndex(10, TTL, () -> now);
+        index.tryAdd("q1");
+        index.markFinished("q1");
+        now += 10000;
+        index.tryAdd("q2");
+        index.markFinished("q2");
+
+        // Süre, duvar saatine değil verilen saate göre dolar
+        now = 1000 + TTL - 1;
+        assertTrue(index.contains("q1"));
+        now = 1000 + TTL;
+        assertFalse(index.contains("q1"));
+        assertTrue(index.contains("q2"));
+        assertTrue(index.tryAdd("q1"));
+
+        now = 11000 + TTL;
+        assertTrue(index.tryAdd("q2"));
+    }
+
+    @Test
+    public void refinishingRestartsTtl() {
+        QueryDedupIndex index = new QueryDedupIndex(10, TTL, () -> now);
+        index.tryAdd("q1");
+        index.markFinished("q1");
+        now += TTL / 2;
+        index.tryAdd("q2");
+        index.markFinished("q2");
+        // q1 tekrar bitti: listenin sonuna taşınır, süresi baştan başlar
+        index.markFinished("q1");
+
+        now += TTL / 2 + 1;
+        assertTrue(index.contains("q1"));
+        assertTrue(index.contains("q2"));
+    }
+
+    @Test
+    public void oldestFinishedEntryIsDroppedAtCapacity() {
+        QueryDedupIndex index = new QueryDedupIndex(3, TTL, () -> now);
+        for (int i = 0; i < 4; i++) {
+            index.tryAdd("q" + i);
+            index.markFinished("q" + i);
+            now++;
+        }
+        assertFalse(index.contains("q0"));
+        assertTrue(index.contains("q1"));
+        assertTrue(index.contains("q3"));
+    }
+
+    @Test
+    public void forgottenQueryIsAcceptedAgain() {
+        QueryDedupIndex index = new QueryDedupIndex(10, TTL, () -> now);
+        index.tryAdd("q1");
+        index.forget("q1");
+        assertFalse(index.contains("q1"));
+        assertTrue(index.tryAdd("q1"));
+    }
+}
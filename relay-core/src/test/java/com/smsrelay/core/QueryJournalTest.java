@@ -0,0 +1,208 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueryJournalTest {
+    private static final int MAGIC = 0x534A524E;
+
+    private long now = 1000;
+
+    @Test
+    public void recoversQueueAndPartsAfterKill() throws Exception {
+        File file = newFile();
+        QueryJournal journal = new QueryJournal(file, () -> now);
+        journal.recordEnqueue(query("q1", "34ABC123"));
+        journal.recordEnqueue(query("q2", "06XYZ99"));
+        now = 2000;
+        assertTrue(journal.recordDispatch("q1", 3));
+        now = 3000;
+        journal.recordPart("q1", 1, 2, "Mesaj (1/2) 34ABC123 plakali");
+        journal.recordEnqueue(query("q3", "35DEF45"));
+        // Gönderim kaydı diske yazılana kadar bekler; önceki kayıtlar da onunla yazılır
+        assertTrue(journal.recordDispatch("q2", 1));
+
+        // Süreç kapatılmadan öldürüldü: aynı dosyayı yeni günlük okur
+        List<QueryJournal.Entry> entries = new QueryJournal(file, () -> now).recover();
+        assertEquals(3, entries.size());
+
+        QueryJournal.Entry first = entries.get(0);
+        assertEquals("q1", first.query.queryId);
+        assertEquals("34ABC123", first.query.vehicleId);
+        assertEquals(1000, first.enqueuedAt);
+        assertEquals(2000, first.dispatchedAt);
+        assertEquals(3, first.subscriptionId);
+        assertEquals(1, first.parts.size());
+        assertEquals(2, first.parts.get(0).totalNum);
+        assertEquals(3000, first.parts.get(0).receivedAt);
+
+        assertTrue(entries.get(1).isDispatched());
+        assertEquals("q3", entries.get(2).query.queryId);
+        assertFalse(entries.get(2).isDispatched());
+    }
+
+    @Test
+    public void doneRemovesEntryAndCompactionShrinksFile() throws Exception {
+        File file = newFile();
+        QueryJournal journal = new QueryJournal(file, () -> now);
+        journal.recordEnqueue(query("keep", "34KEEP1"));
+        for (int i = 0; i < 200; i++) {
+            journal.recordEnqueue(query("q" + i, "34AB" + i));
+            journal.recordDone("q" + i);
+        }
+        long beforeCompaction = file.length();
+        // Her DONE iki kaydı ölü bırakır; eşik aşılınca dosya canlı kayıtlardan yeniden yazılır
+        for (int i = 200; i < 300; i++) {
+            journal.recordEnqueue(query("q" + i, "34AB" + i));
+            journal.recordDone("q" + i);
+        }
+        journal.close();
+
+        assertTrue(file.length() < beforeCompaction);
+        List<QueryJournal.Entry> entries = new QueryJournal(file, () -> now).recover();
+        assertEquals(1, entries.size());
+        assertEquals("keep", entries.get(0).query.queryId);
+    }
+
+    @Test
+    public void truncatedFinalRecordIsIgnored() throws Exception {
+        File file = newFile();
+        QueryJournal journal = new QueryJournal(file, () -> now);
+        journal.recordEnqueue(query("q1", "34ABC123"));
+        journal.recordEnqueue(query("q2", "06XYZ99"));
+        journal.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        List<QueryJournal.Entry> entries = new QueryJournal(file, () -> now).recover();
+        assertEquals(1, entries.size());
+        assertEquals("q1", entries.get(0).query.queryId);
+
+        // Kurtarma dosyayı sıkıştırır; sonraki kayıtlar yarım kaydın arkasına eklenmez
+        QueryJournal reopened = new QueryJournal(file, () -> now);
+        reopened.recover();
+        reopened.recordEnqueue(query("q3", "35DEF45"));
+        reopened.close();
+        assertEquals(2, new QueryJournal(file, () -> now).recover().size());
+    }
+
+    @Test
+    public void readsOlderVersions() throws Exception {
+        File v1 = newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(v1))) {
+            out.writeInt(MAGIC);
+            out.writeInt(1);
+            writeEnqueue(out, 500, "q1");
+            // Sürüm 1'de DISPATCH kaydında SIM yoktu
+            writeHeader(out, 2, 600, "q1");
+        }
+        QueryJournal.Entry entry = new QueryJournal(v1, () -> now).recover().get(0);
+        assertEquals(600, entry.dispatchedAt);
+        assertEquals(SimSlot.DEFAULT_SUBSCRIPTION, entry.subscriptionId);
+        assertEquals(PendingQuery.UNSET_PRIORITY, entry.query.priority);
+
+        File v2 = newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(v2))) {
+            out.writeInt(MAGIC);
+            out.writeInt(2);
+            writeEnqueue(out, 500, "q1");
+            writeHeader(out, 2, 600, "q1");
+            out.writeInt(7);
+            writeEnqueue(out, 700, "q2");
+            writeHeader(out, 4, 800, "q2");
+        }
+        List<QueryJournal.Entry> entries = new QueryJournal(v2, () -> now).recover();
+        assertEquals(1, entries.size());
+        assertEquals(7, entries.get(0).subscriptionId);
+
+        // Kurtarma dosyayı güncel sürümle yeniden yazar
+        List<QueryJournal.Entry> again = new QueryJournal(v2, () -> now).recover();
+        assertEquals(7, again.get(0).subscriptionId);
+        assertEquals(600, again.get(0).dispatchedAt);
+    }
+
+    @Test
+    public void failedDispatchWriteIsReportedAndNotRecorded() throws Exception {
+        File dir = new File(Files.createTempDirectory("query-journal").toFile(), "missing");
+        File file = new File(dir, "query_journal.bin");
+        List<String> errors = new ArrayList<>();
+        QueryJournal journal = new QueryJournal(file, () -> now);
+        journal.setErrorListener((operation, e) -> errors.add(operation));
+
+        journal.recordEnqueue(query("q1", "34ABC123"));
+        assertFalse(journal.recordDispatch("q1", 1));
+        assertEquals(2, errors.size());
+        assertEquals("dispatch", errors.get(1));
+
+        // Dizin geri gelince dosya bellekteki durumdan baştan yazılır
+        assertTrue(dir.mkdirs());
+        journal.recordEnqueue(query("q2", "06XYZ99"));
+        assertTrue(journal.recordDispatch("q2", 2));
+
+        List<QueryJournal.Entry> entries = new QueryJournal(file, () -> now).recover();
+        assertEquals(2, entries.size());
+        assertFalse(entries.get(0).isDispatched());
+        assertEquals(2, entries.get(1).subscriptionId);
+    }
+
+    @Test
+    public void recoveryTimeIsBoundedByLiveEntries() throws Exception {
+        File file = newFile();
+        QueryJournal journal = new QueryJournal(file, () -> now);
+        for (int i = 0; i < 20000; i++) {
+            journal.recordEnqueue(query("done" + i, "34AB" + i));
+            journal.recordDone("done" + i);
+        }
+        for (int i = 0; i < 2000; i++) {
+            journal.recordEnqueue(query("q" + i, "06CD" + i));
+            if (i % 2 == 0) {
+                journal.recordPart("q" + i, 1, 1, "Mesaj (1/1) 06CD" + i + " plakali aracin kaydi yok");
+            }
+        }
+        journal.close();
+
+        long start = System.nanoTime();
+        List<QueryJournal.Entry> entries = new QueryJournal(file, () -> now).recover();
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(2000, entries.size());
+        // Tamamlanmış 20000 sorgu sıkıştırmayla düştü; okuma canlı kayıt sayısıyla orantılı
+        assertTrue("kurtarma: " + elapsedMs + "ms", elapsedMs < 2000);
+        assertTrue("dosya: " + file.length(), file.length() < 2000 * 200);
+    }
+
+    private static PendingQuery query(String id, String plate) {
+        return new PendingQuery(id, plate, "5551234567", plate, "https://example.com");
+    }
+
+    private static File newFile() throws IOException {
+        return new File(Files.createTempDirectory("query-journal").toFile(), "query_journal.bin");
+    }
+
+    private static void writeHeader(DataOutputStream out, int type, long time, String queryId) throws IOException {
+        out.writeByte(type);
+        out.writeLong(time);
+        out.writeUTF(queryId);
+    }
+
+    // Sürüm 3'ten önce ENQUEUE kaydında öncelik ve son tarih yoktu
+    private static void writeEnqueue(DataOutputStream out, long time, String queryId) throws IOException {
+        writeHeader(out, 1, time, queryId);
+        out.writeUTF("34ABC123");
+        out.writeUTF("5551234567");
+        out.writeUTF("34ABC123");
+        out.writeUTF("");
+    }
+}
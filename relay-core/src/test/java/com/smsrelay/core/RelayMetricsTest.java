@@ -0,0 +1,93 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RelayMetricsTest {
+
+    @Test
+    public void histogramQuantilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (-Math.log(1 - random.nextDouble()) * 20000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            long estimate = histogram.valueAt(q);
+            assertTrue(q + ": " + estimate + " ~ " + exact, Math.abs(estimate - exact) <= exact * 0.07 + 1);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+    }
+
+    @Test
+    public void bucketsCoverValueRangeInOrder() {
+        int previous = -1;
+        for (long value = 0; value < (1L << 33); value = value * 9 / 8 + 1) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value + " <= " + LatencyHistogram.upperBound(index), value <= LatencyHistogram.upperBound(index));
+            assertTrue(index >= previous);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void exposesPrometheusTextAndJsonOverHttp() throws Exception {
+        RelayMetrics metrics = new RelayMetrics();
+        metrics.record(RelayMetrics.Stage.FIRST_PART, 12000);
+        metrics.record(RelayMetrics.Stage.FIRST_PART, 18000);
+        metrics.increment(RelayMetrics.Counter.TIMEOUTS);
+        metrics.add(RelayMetrics.Counter.SUCCEEDED, 2);
+        metrics.setGauge("queued_queries", () -> 7);
+
+        MetricsServer server = new MetricsServer(metrics, () -> metrics.toJson("relay-1"));
+        server.start(0);
+        try {
+            String text = get(server, "/metrics", 200);
+            assertTrue(text.contains("smsrelay_stage_latency_seconds_count{stage=\"first_part\"} 2\n"));
+            assertTrue(text.contains("smsrelay_stage_latency_seconds_sum{stage=\"first_part\"} 30.000\n"));
+            assertTrue(text.contains("smsrelay_timeouts_total 1\n"));
+            assertTrue(text.contains("smsrelay_succeeded_total 2\n"));
+            assertTrue(text.contains("smsrelay_queued_queries 7\n"));
+
+            String json = get(server, "/metrics.json", 200);
+            assertTrue(json.contains("\"relay_id\":\"relay-1\""));
+            assertTrue(json.contains("\"first_part\":{\"count\":2,\"sum_ms\":30000,\"max_ms\":18000"));
+            assertTrue(json.contains("\"timeouts\":1"));
+
+            get(server, "/yok", 404);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static String get(MetricsServer server, String path, int expectedCode) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        assertEquals(expectedCode, connection.getResponseCode());
+        try (InputStream in = expectedCode < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+            return body.toString(StandardCharsets.UTF_8.name());
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.smsrelay.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Uçtan uca yük simülasyonu: gerçek RelayEngine'i (kuyruk, SIM seçimi, parça
+// birleştirme, zaman aşımları, günlük, önbellek) sanal saat, sahte SMS geçidi
+// ve bellek içi backend ile sürer. Aynı ayar ve tohumla her koşu aynı sonucu verir.
+class RelaySimulation {
+    private static final long POLL_INTERVAL = 5000;
+    private static final int MAX_QUEUED = 200;
+    private static final long START = 1_700_000_000_000L;
+    private static final Pattern REPLY_FILE = Pattern.compile("Dosya (D\\d+)");
+
+    static class Config {
+        int queries = 1000;
+        // Backend'e saatte gelen yeni sorgu sayısı
+        double arrivalsPerHour = 400;
+        // Farklı plaka sayısı; sorgu sayısından azsa tekrar eden plakalar olur
+        int distinctPlates = Integer.MAX_VALUE;
+        int sims = 2;
+        int maxConcurrentQueries = 1;
+        boolean adaptive = true;
+        int minPerHour = 60;
+        int maxPerHour = 240;
+        long fixedWait = 30000;
+        long defaultDeadline = 0;
+        long seed = 1;
+        // Sanal süre sınırı; aşılırsa bitmemiş sorgular kayıp sayılır
+        long maxDuration = 7 * 24 * 3600 * 1000L;
+        FakeSmsGateway.Settings gateway = new FakeSmsGateway.Settings();
+    }
+
+    static class Report {
+        int published;
+        int succeeded;
+        int partial;
+        int failed;
+        int expired;
+        int fromCache;
+        int coalesced;
+        long dispatched;
+        int duplicateDispatches;
+        int duplicateReports;
+        int duplicateReplies;
+        int misrouted;
+        int lost;
+        // Aynı anda cevap bekleyen en fazla sorgu sayısı
+        int peakInFlight;
+        long p50;
+        long p99;
+        double perHour;
+        long virtualMs;
+        long wallMs;
+        long events;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d sorgu | başarılı %d, eksik %d, cevapsız %d, süresi geçen %d | önbellek %d, birleşen %d, 5664'e %d SMS" +
+                            " | %.1f sorgu/saat, p50 %ds, p99 %ds | tekrar: gönderim %d, bildirim %d, cevap %d" +
+                            " | yanlış eşleşme %d, kayıp %d, en fazla uçuşta %d | sanal %.1f saat, gerçek %dms, %d olay",
+                    published, succeeded, partial, failed, expired, fromCache, coalesced, dispatched,
+                    perHour, p50 / 1000, p99 / 1000, duplicateDispatches, duplicateReports, duplicateReplies,
+                    misrouted, lost, peakInFlight, virtualMs / 3600000.0, wallMs, events);
+        }
+
+        // Sonuç koşudan koşuya aynı olmalı; gerçek süre hariç
+        String deterministicPart() {
+            String text = toString();
+            return text.substring(0, text.indexOf(", gerçek"));
+        }
+    }
+
+    private final Config config;
+    private final SimulationClock clock = new SimulationClock(START);
+    private final SimulatedBackend backend = new SimulatedBackend();
+    private final Report report = new Report();
+    private final RelayMetrics metrics = new RelayMetrics();
+    private RelayEngine engine;
+    private FakeSmsGateway gateway;
+
+    RelaySimulation(Config config) {
+        this.config = config;
+    }
+
+    SimulatedBackend getBackend() {
+        return backend;
+    }
+
+    RelayMetrics getMetrics() {
+        return metrics;
+    }
+
+    Report run() throws IOException {
+        long wallStart = System.nanoTime();
+        File dir = Files.createTempDirectory("relay-sim").toFile();
+        QueryJournal journal = new QueryJournal(new File(dir, "query_journal.bin"), clock::now);
+        ResultCache cache = new ResultCache(new File(dir, "result_cache.json"), clock::now);
+        try {
+            build(journal, cache);
+            publishAll();
+
+            clock.post(this::poll);
+            long end = START + config.maxDuration;
+            while (!finished() && clock.runNext(end)) {
+                // olaylar sırayla işlenir
+            }
+        } finally {
+            journal.close();
+            deleteRecursively(dir);
+        }
+
+        summarize();
+        report.wallMs = (System.nanoTime() - wallStart) / 1_000_000;
+        report.events = clock.getExecuted();
+        return report;
+    }
+
+    private void build(QueryJournal journal, ResultCache cache) {
+        QueryRegistry registry = new QueryRegistry();
+        List<SimSlot> slots = new ArrayList<>();
+        for (int i = 0; i < config.sims; i++) {
+            DispatchScheduler scheduler = config.adaptive
+                    ? new AdaptiveDispatchScheduler(config.minPerHour, config.maxPerHour)
+                    : new FixedDispatchScheduler(config.fixedWait);
+            slots.add(new SimSlot(i + 1, "SIM" + (i + 1), scheduler));
+        }
+
+        ReplyTimingEstimator estimator = new ReplyTimingEstimator();
+        estimator.configure(0.99, 2000);
+
+        engine = new RelayEngine(clock::now, new Host(), new SimulatedTimers(clock), new SlotSelector(slots, registry),
+                registry, new QueryDedupIndex(2000, 30 * 60 * 1000L, clock::now), estimator, journal, cache, metrics);
+        engine.configure(FakeSmsGateway.SENDER, config.maxConcurrentQueries, 0, config.defaultDeadline);
+        engine.setListener(new RelayEngine.Listener() {
+            @Override
+            public void onCoalesced(PendingQuery query, ActiveQuery into) {
+                report.coalesced++;
+            }
+
+            @Override
+            public void onDispatched(ActiveQuery active, SimSlot slot) {
+                SimulatedBackend.Query query = backend.find(active.getQueryId());
+                if (query != null && ++query.dispatches > 1) {
+                    report.duplicateDispatches++;
+                }
+                report.peakInFlight = Math.max(report.peakInFlight, engine.getRegistry().size());
+            }
+
+            @Override
+            public void onAnsweredFromCache(PendingQuery query) {
+                report.fromCache++;
+            }
+        });
+
+        gateway = new FakeSmsGateway(clock, config.gateway, config.seed * 31 + 7, engine::onSegment);
+    }
+
+    // Sorgular Poisson süreciyle yayınlanır
+    private void publishAll() {
+        Random random = new Random(config.seed);
+        long at = START;
+        double meanGap = 3600000.0 / config.arrivalsPerHour;
+        for (int i = 0; i < config.queries; i++) {
+            at += (long) (-Math.log(1 - random.nextDouble()) * meanGap);
+            int plate = config.distinctPlates >= config.queries ? i : random.nextInt(config.distinctPlates);
+            backend.publish("q-" + i, plate(plate), String.format(Locale.ROOT, "+90532%07d", i), at);
+        }
+    }
+
+    static String plate(int i) {
+        return String.format(Locale.ROOT, "%02d SIM %04d", 1 + i % 81, i);
+    }
+
+    // Uygulamadaki poll döngüsü: kuyrukta boş yer kadar sorgu istenir
+    private void poll() {
+        int free = MAX_QUEUED - engine.queuedCount();
+        if (free > 0) {
+            try {
+                int count = PendingQuery.readAll(new StringReader(backend.pending(clock.now(), free)),
+                        SimulatedBackend.URL, engine::enqueue);
+                if (count > 0) {
+                    clock.post(engine::processNextQuery);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        clock.postDelayed(this::poll, POLL_INTERVAL);
+    }
+
+    private boolean finished() {
+        if (!backend.drained()) {
+            return false;
+        }
+        for (SimulatedBackend.Query query : backend.getQueries()) {
+            if (query.status == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void summarize() {
+        List<Long> latencies = new ArrayList<>();
+        long lastReport = START;
+
+        for (SimulatedBackend.Query query : backend.getQueries()) {
+            report.published++;
+            if (query.reports > 1) report.duplicateReports++;
+            if (query.replies > 1) report.duplicateReplies++;
+
+            if (query.status == null) {
+                report.lost++;
+                continue;
+            }
+            lastReport = Math.max(lastReport, query.reportedAt);
+            switch (query.status) {
+                case "received":
+                    report.succeeded++;
+                    latencies.add(query.reportedAt - query.publishedAt);
+                    // Başarılı bildirilip kullanıcıya ulaşmayan cevap da kayıptır
+                    if (query.replies == 0) report.lost++;
+                    break;
+                case "timeout":
+                    report.partial++;
+                    break;
+                case "expired":
+                    report.expired++;
+                    break;
+                default:
+                    report.failed++;
+            }
+        }
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        report.p50 = percentile(sorted, 0.50);
+        report.p99 = percentile(sorted, 0.99);
+        report.dispatched = gateway.getRequests();
+        report.virtualMs = lastReport - START;
+        report.perHour = report.virtualMs > 0 ? report.succeeded * 3600000.0 / report.virtualMs : 0;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    // Motorun dış dünyası: relay thread'i sanal olay döngüsü, SMS'ler sahte geçit
+    private class Host implements RelayEngine.Host {
+        @Override
+        public void post(Runnable task) {
+            clock.post(task);
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delay) {
+            clock.postDelayed(task, delay);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            clock.removeCallbacks(task);
+        }
+
+        @Override
+        public void sendQuery(SimSlot slot, String targetNumber, String message) {
+            gateway.request(slot.subscriptionId, message);
+        }
+
+        @Override
+        public void sendSms(int subscriptionId, String phoneNumber, String message) {
+            SimulatedBackend.Query query = backend.findByPhone(phoneNumber);
+            if (query == null) {
+                return;
+            }
+            if (!message.contains("Mesaj (")) {
+                query.otherMessages++;
+                return;
+            }
+            query.replies++;
+            // Cevaptaki her parça bu plakanın sorgusuna verilmiş cevaptan gelmeli
+            Matcher matcher = REPLY_FILE.matcher(message);
+            while (matcher.find()) {
+                if (!query.plate.equals(gateway.plateOf(matcher.group(1)))) {
+                    report.misrouted++;
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void reportSucceeded(PendingQuery query) {
+            backend.report(query.queryId, "received", clock.now());
+        }
+
+        @Override
+        public void reportFailed(PendingQuery query, String status) {
+            backend.report(query.queryId, status, clock.now());
+        }
+    }
+}
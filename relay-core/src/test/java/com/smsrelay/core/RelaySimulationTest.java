@@ -0,0 +1,139 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RelaySimulationTest {
+
+    @Test
+    public void cleanNetworkReportsEveryQueryOnce() throws Exception {
+        RelaySimulation.Config config = new RelaySimulation.Config();
+        config.queries = 3000;
+        config.sims = 2;
+        config.arrivalsPerHour = 200;
+
+        RelaySimulation simulation = new RelaySimulation(config);
+        RelaySimulation.Report report = simulation.run();
+        System.out.println("Temiz ağ: " + report);
+
+        assertEquals(3000, report.published);
+        assertEquals(report.published, report.succeeded + report.failed);
+        // İlk parça süresi p99'dan türetilir; tahmin oturana kadar birkaç sorgu zaman aşımına düşebilir
+        assertTrue("cevapsız: " + report.failed, report.failed <= report.published / 500);
+        // Zaman aşımından sonra gelen cevap aynı SIM'deki sonraki sorguya eklenmez
+        assertEquals(0, report.misrouted);
+        assertEquals(0, report.lost);
+        assertDuplicateFree(report);
+
+        // Metrikler backend'in gördüğüyle tutarlı
+        RelayMetrics metrics = simulation.getMetrics();
+        assertEquals(report.succeeded, metrics.count(RelayMetrics.Counter.SUCCEEDED));
+        assertEquals(report.failed, metrics.count(RelayMetrics.Counter.TIMEOUTS));
+        assertEquals(3000, metrics.histogram(RelayMetrics.Stage.QUEUED).getCount());
+        assertEquals(report.succeeded, metrics.histogram(RelayMetrics.Stage.REPLY).getCount());
+        assertTrue(metrics.histogram(RelayMetrics.Stage.FIRST_PART).valueAt(0.5) <= 45000);
+        assertTrue("Simülasyon saniyeler içinde bitmeli: " + report.wallMs, report.wallMs < 30000);
+    }
+
+    @Test
+    public void parallelSimsNeverMixReplies() throws Exception {
+        RelaySimulation.Config config = new RelaySimulation.Config();
+        config.queries = 3000;
+        config.sims = 4;
+        config.arrivalsPerHour = 800;
+
+        RelaySimulation.Report report = new RelaySimulation(config).run();
+        System.out.println("Paralel SIM: " + report);
+
+        // Her SIM'de bir sorgu beklerken diğer SIM'lerin cevapları aynı anda gelir
+        assertTrue(report.peakInFlight >= 3);
+        assertEquals(0, report.misrouted);
+        assertEquals(0, report.lost);
+        assertEquals(report.published, report.succeeded + report.failed);
+        assertTrue("cevapsız: " + report.failed, report.failed <= report.published / 500);
+        assertDuplicateFree(report);
+    }
+
+    @Test
+    public void lossAndReorderingNeverDuplicateOrLose() throws Exception {
+        RelaySimulation.Config config = new RelaySimulation.Config();
+        config.queries = 3000;
+        config.sims = 3;
+        config.arrivalsPerHour = 500;
+        config.gateway.lossRate = 0.02;
+        config.gateway.reorderRate = 0.1;
+        config.gateway.silentRate = 0.01;
+
+        RelaySimulation.Report report = new RelaySimulation(config).run();
+        System.out.println("Kayıplı ağ: " + report);
+
+        // Eksik ya da gelmeyen cevaplar başarısız bildirilir ama hiçbir sorgu kaybolmaz
+        assertEquals(0, report.lost);
+        assertEquals(report.published, report.succeeded + report.partial + report.failed + report.expired);
+        assertTrue(report.partial + report.failed > 0);
+        // Kayıp ya da geç gelen parça başka kullanıcının cevabına eklenmez
+        assertEquals(0, report.misrouted);
+        assertDuplicateFree(report);
+    }
+
+    @Test
+    public void concurrentQueriesOnOneSimNeverMixReplies() throws Exception {
+        RelaySimulation.Config config = new RelaySimulation.Config();
+        config.queries = 2000;
+        config.sims = 1;
+        config.maxConcurrentQueries = 3;
+        config.arrivalsPerHour = 400;
+        config.gateway.reorderRate = 0.1;
+
+        RelaySimulation.Report report = new RelaySimulation(config).run();
+        System.out.println("Tek SIM, eşzamanlı: " + report);
+
+        // Aynı SIM'e aynı anda birden fazla cevap gelir; plakasız parçalar
+        // sahibi belli olana kadar bekletilir, tahminle eklenmez
+        assertTrue(report.peakInFlight >= 2);
+        assertEquals(0, report.misrouted);
+        assertEquals(0, report.lost);
+        assertEquals(report.published, report.succeeded + report.partial + report.failed + report.expired);
+        // Ayırt edilemeyen parçalar cevabı eksik bırakır ama çoğu sorgu tamamlanır
+        assertTrue("başarılı: " + report.succeeded, report.succeeded >= report.published * 3 / 4);
+        assertDuplicateFree(report);
+    }
+
+    @Test
+    public void repeatedPlatesAreCoalescedOrServedFromCache() throws Exception {
+        RelaySimulation.Config config = new RelaySimulation.Config();
+        config.queries = 2000;
+        config.distinctPlates = 300;
+        config.arrivalsPerHour = 1200;
+
+        RelaySimulation.Report report = new RelaySimulation(config).run();
+        System.out.println("Tekrar eden plakalar: " + report);
+
+        assertEquals(0, report.lost);
+        assertEquals(0, report.misrouted);
+        // Cevapsız kalan plaka sonraki sorguda yeniden gönderilir
+        assertTrue(report.dispatched <= 300 + report.failed);
+        assertEquals(report.published, report.succeeded + report.failed);
+        assertEquals(report.published - report.dispatched, report.fromCache + report.coalesced);
+        assertDuplicateFree(report);
+    }
+
+    @Test
+    public void sameSeedGivesSameReport() throws Exception {
+        RelaySimulation.Config config = new RelaySimulation.Config();
+        config.queries = 500;
+        config.gateway.lossRate = 0.05;
+        config.gateway.reorderRate = 0.2;
+
+        String first = new RelaySimulation(config).run().deterministicPart();
+        String second = new RelaySimulation(config).run().deterministicPart();
+        assertEquals(first, second);
+    }
+
+    private static void assertDuplicateFree(RelaySimulation.Report report) {
+        assertEquals(0, report.duplicateDispatches);
+        assertEquals(0, report.duplicateReports);
+        assertEquals(0, report.duplicateReplies);
+    }
+}
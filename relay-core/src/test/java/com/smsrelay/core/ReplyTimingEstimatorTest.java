@@ -0,0 +1,48 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReplyTimingEstimatorTest {
+
+    @Test
+    public void timeoutsKeepFirstPartTimeoutFromShrinking() {
+        ReplyTimingEstimator estimator = new ReplyTimingEstimator();
+        estimator.configure(0.99, 2000);
+        Random random = new Random(1);
+
+        // Uzun kuyruklu cevap süreleri: ortalama 18 sn, gerçek p99 ~72 sn
+        for (int i = 0; i < 5000; i++) {
+            long elapsed = 3000 + (long) (-Math.log(1 - random.nextDouble()) * 15000);
+            long timeout = estimator.firstPartTimeout();
+            if (elapsed <= timeout) {
+                estimator.recordFirstPart(elapsed);
+            } else {
+                estimator.recordFirstPartTimeout(timeout);
+            }
+        }
+
+        long timeout = estimator.firstPartTimeout();
+        assertTrue("timeout " + timeout, timeout >= 62000);
+    }
+
+    @Test
+    public void estimateFollowsFasterNetwork() {
+        ReplyTimingEstimator estimator = new ReplyTimingEstimator();
+        estimator.configure(0.99, 2000);
+
+        for (int i = 0; i < 2000; i++) {
+            estimator.recordFirstPart(50000);
+        }
+        assertEquals(52000, estimator.firstPartTimeout());
+
+        // Eski ölçümler birkaç pencere sonra tahmini etkilemez
+        for (int i = 0; i < 1500; i++) {
+            estimator.recordFirstPart(10000);
+        }
+        assertEquals(30000, estimator.firstPartTimeout());
+    }
+}
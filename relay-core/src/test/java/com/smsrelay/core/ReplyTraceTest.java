@@ -0,0 +1,177 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplyTraceTest {
+    private static final String GSM =
+            "@£$¥èéùìòÇ\nØø\rÅåΔ_ΦΓΛΩΠΨΣΘΞ\u001BÆæßÉ !\"#¤%&'()*+,-./0123456789:;<=>?" +
+            "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§¿abcdefghijklmnopqrstuvwxyzäöñüà";
+
+    @Test
+    public void decodesGsmSegmentWithConcatHeader() {
+        byte[] pdu = gsmPdu("5664", "Mesaj (1/2) 34 ABC 123 plakali", new int[]{0x2A, 2, 1});
+
+        PduDecoder.Decoded decoded = PduDecoder.decode(pdu);
+        assertNotNull(decoded);
+        assertEquals("5664", decoded.sender);
+        assertEquals("Mesaj (1/2) 34 ABC 123 plakali", decoded.body);
+        assertEquals(0x2A, decoded.concat.reference);
+        assertEquals(2, decoded.concat.total);
+        assertEquals(1, decoded.concat.sequence);
+    }
+
+    @Test
+    public void decodesUcs2AndInternationalSender() {
+        byte[] pdu = ucs2Pdu("+905321234567", "Araç kaydı bulunamadı");
+
+        PduDecoder.Decoded decoded = PduDecoder.decode(pdu);
+        assertNotNull(decoded);
+        assertEquals("+905321234567", decoded.sender);
+        assertEquals("Araç kaydı bulunamadı", decoded.body);
+        assertNull(decoded.concat);
+    }
+
+    @Test
+    public void recordedTraceReadsBackAndRotates() throws Exception {
+        File dir = Files.createTempDirectory("reply-trace").toFile();
+        ReplyTrace trace = new ReplyTrace(new File(dir, "reply_trace.bin"));
+
+        byte[] pdu = gsmPdu("5664", "Mesaj (1/1) kayit yok", null);
+        trace.record(1000, "5664", 2, "3gpp", pdu);
+        long afterFirst = trace.getFile().length();
+        trace.record(900, "5664", -1, "3gpp", pdu);
+        // Aynı gönderen dosyada bir kez yazılır; kayıt başına yük birkaç bayttır
+        assertTrue(trace.getFile().length() - afterFirst <= pdu.length + 6);
+        trace.record(4000, "OPERATOR", 1, "3gpp2", new byte[]{1, 2, 3});
+
+        List<ReplyTrace.Record> records = trace.readAll();
+        assertEquals(3, records.size());
+        assertEquals(1000, records.get(0).time);
+        assertEquals(900, records.get(1).time);
+        assertEquals(-1, records.get(1).subscriptionId);
+        assertEquals("OPERATOR", records.get(2).sender);
+        assertEquals("3gpp2", records.get(2).format);
+        assertArrayEquals(pdu, records.get(0).pdu);
+
+        // Boyut sınırı aşılınca eski dosya ".1" olur, iki dosya birlikte okunur
+        byte[] large = new byte[4000];
+        for (int i = 0; i < 200; i++) {
+            trace.record(5000 + i, "5664", 1, "3gpp", large);
+        }
+        trace.close();
+        assertTrue(trace.getPreviousFile().exists());
+        List<ReplyTrace.Record> all = trace.readAll();
+        assertEquals(203, all.size());
+        assertEquals(5199, all.get(all.size() - 1).time);
+
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void replayReassemblesFragmentedReply() throws Exception {
+        // İki mesajlık cevap, her mesaj iki segment; segmentler karışık sırada
+        String first = "Mesaj (1/2) 34 ABC 123 plakali aracin hasar kayitlari: 01.02.2023 tarihli kaza.";
+        String second = "Mesaj (2/2) Onarim bedeli 12.345 TL. Detayli yasal bilgi icin B002";
+        List<ReplyTrace.Record> records = new ArrayList<>();
+        records.add(segment(0, second, 8, 2, 2));
+        records.add(segment(1200, first, 7, 2, 1));
+        records.add(segment(1500, first, 7, 2, 2));
+        records.add(segment(6500, second, 8, 2, 1));
+        records.add(new ReplyTrace.Record(7000, "5664", 1, "3gpp2", new byte[]{0}));
+
+        List<String> replies = new ArrayList<>();
+        TraceReplayer.Reassembly reassembly = new TraceReplayer.Reassembly((subscriptionId, reply, complete) -> {
+            assertTrue(complete);
+            replies.add(reply);
+        });
+        List<Long> sleeps = new ArrayList<>();
+        TraceReplayer replayer = new TraceReplayer(reassembly);
+        replayer.setSleeper(sleeps::add);
+
+        TraceReplayer.Result result = replayer.replay(records, true);
+        reassembly.finish();
+
+        assertEquals(5, result.records);
+        assertEquals(4, result.decoded);
+        assertEquals(1, result.skipped);
+        assertEquals(1, replies.size());
+        assertTrue(replies.get(0).startsWith(first));
+        assertTrue(replies.get(0).endsWith(second));
+
+        // Gerçek hızda kayıtlar arası süre korunur
+        long slept = 0;
+        for (long sleep : sleeps) slept += sleep;
+        assertEquals(7000, slept);
+    }
+
+    private static ReplyTrace.Record segment(long time, String text, int reference, int total, int sequence) {
+        int size = (text.length() + total - 1) / total;
+        String body = text.substring((sequence - 1) * size, Math.min(text.length(), sequence * size));
+        return new ReplyTrace.Record(time, "5664", 1, "3gpp",
+                gsmPdu("5664", body, new int[]{reference, total, sequence}));
+    }
+
+    // SMS-DELIVER; concat verilirse 8 bitlik birleştirme başlığı eklenir
+    static byte[] gsmPdu(String sender, String text, int[] concat) {
+        ByteArrayOutputStream pdu = header(sender, concat != null, 0x00);
+        byte[] udh = concat != null ? new byte[]{5, 0x00, 3, (byte) concat[0], (byte) concat[1], (byte) concat[2]} : new byte[0];
+        int skip = (udh.length * 8 + 6) / 7;
+
+        int[] septets = new int[skip + text.length()];
+        for (int i = 0; i < text.length(); i++) {
+            septets[skip + i] = GSM.indexOf(text.charAt(i));
+        }
+        byte[] packed = new byte[(septets.length * 7 + 7) / 8];
+        for (int s = 0; s < septets.length; s++) {
+            int bit = s * 7;
+            packed[bit / 8] |= (byte) (septets[s] << (bit % 8));
+            if (bit % 8 > 1) {
+                packed[bit / 8 + 1] |= (byte) (septets[s] >> (8 - bit % 8));
+            }
+        }
+        System.arraycopy(udh, 0, packed, 0, udh.length);
+
+        pdu.write(septets.length);
+        pdu.write(packed, 0, packed.length);
+        return pdu.toByteArray();
+    }
+
+    static byte[] ucs2Pdu(String sender, String text) {
+        ByteArrayOutputStream pdu = header(sender, false, 0x08);
+        byte[] body = text.getBytes(StandardCharsets.UTF_16BE);
+        pdu.write(body.length);
+        pdu.write(body, 0, body.length);
+        return pdu.toByteArray();
+    }
+
+    private static ByteArrayOutputStream header(String sender, boolean udh, int dcs) {
+        ByteArrayOutputStream pdu = new ByteArrayOutputStream();
+        pdu.write(0);                      // SMSC yok
+        pdu.write(udh ? 0x44 : 0x04);      // SMS-DELIVER
+        boolean international = sender.startsWith("+");
+        String digits = international ? sender.substring(1) : sender;
+        pdu.write(digits.length());
+        pdu.write(international ? 0x91 : 0x81);
+        for (int i = 0; i < digits.length(); i += 2) {
+            int low = digits.charAt(i) - '0';
+            int high = i + 1 < digits.length() ? digits.charAt(i + 1) - '0' : 0x0F;
+            pdu.write(low | (high << 4));
+        }
+        pdu.write(0);                      // PID
+        pdu.write(dcs);
+        pdu.write(new byte[7], 0, 7);      // zaman damgası
+        return pdu;
+    }
+}
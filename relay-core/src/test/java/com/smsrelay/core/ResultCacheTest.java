@@ -0,0 +1,93 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+    private static final long TTL = 60000;
+
+    private long now = 1000;
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedAtCapacity() throws Exception {
+        ResultCache cache = newCache();
+        cache.configure(2, TTL);
+        cache.put("34ABC123", "cevap 1", now);
+        cache.put("06XYZ99", "cevap 2", now);
+        // Okuma erişim sırasını yeniler: en eski kullanılan artık 06XYZ99
+        assertEquals("cevap 1", cache.lookup("34ABC123", now));
+        cache.put("35DEF45", "cevap 3", now);
+
+        assertEquals(2, cache.size());
+        assertEquals("cevap 1", cache.lookup("34ABC123", now));
+        assertNull(cache.lookup("06XYZ99", now));
+        assertEquals("cevap 3", cache.lookup("35DEF45", now));
+    }
+
+    @Test
+    public void expiredEntryIsEvictedOnLookup() throws Exception {
+        ResultCache cache = newCache();
+        cache.configure(10, TTL);
+        cache.put("34 abc 123", "cevap", now);
+
+        // Plaka boşluk ve büyük/küçük harf farkıyla aynı kayda düşer
+        assertEquals("cevap", cache.lookup("34ABC123", now + TTL - 1));
+        assertNull(cache.lookup("34ABC123", now + TTL));
+        assertEquals(0, cache.size());
+        assertTrue(cache.summary().contains("çıkarılan: 1"));
+    }
+
+    @Test
+    public void shrinkingCapacityOrTtlEvictsImmediately() throws Exception {
+        ResultCache cache = newCache();
+        cache.configure(10, TTL);
+        for (int i = 0; i < 5; i++) {
+            cache.put("34AB" + i, "cevap " + i, now + i);
+        }
+
+        cache.configure(3, TTL);
+        assertEquals(3, cache.size());
+        assertNull(cache.lookup("34AB0", now));
+        assertEquals("cevap 4", cache.lookup("34AB4", now));
+
+        // Yapılandırma saate göre süre aşımı uygular
+        now += TTL + 3;
+        cache.configure(3, TTL);
+        assertEquals(1, cache.size());
+
+        cache.configure(0, TTL);
+        assertFalse(cache.isEnabled());
+        assertEquals(0, cache.size());
+        assertNull(cache.lookup("34AB4", now));
+    }
+
+    @Test
+    public void loadSkipsExpiredEntriesAndKeepsCapacity() throws Exception {
+        File file = new File(Files.createTempDirectory("result-cache").toFile(), "result_cache.json");
+        Files.write(file.toPath(), ("[" +
+                "{\"plate\":\"34AAA1\",\"message\":\"eski\",\"stored_at\":" + (now - TTL) + "}," +
+                "{\"plate\":\"34AAA2\",\"message\":\"bir\",\"stored_at\":" + (now - 10) + "}," +
+                "{\"plate\":\"34AAA3\",\"message\":\"iki\",\"stored_at\":" + (now - 5) + "}," +
+                "{\"plate\":\"34AAA4\",\"message\":\"uc\",\"stored_at\":" + now + "}" +
+                "]").getBytes(StandardCharsets.UTF_8));
+
+        ResultCache cache = new ResultCache(file, () -> now);
+        cache.configure(2, TTL);
+        assertNull(cache.lookup("34AAA1", now));
+        assertEquals(2, cache.size());
+        assertNull(cache.lookup("34AAA2", now));
+        assertEquals("iki", cache.lookup("34AAA3", now));
+        assertEquals("uc", cache.lookup("34AAA4", now));
+    }
+
+    private ResultCache newCache() throws IOException {
+        File dir = Files.createTempDirectory("result-cache").toFile();
+        return new ResultCache(new File(dir, "result_cache.json"), () -> now);
+    }
+}
@@ -0,0 +1,130 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentReassemblerTest {
+    private static final String SENDER = "5664";
+
+    @Test
+    public void parsesEightAndSixteenBitConcatHeaders() {
+        PduHeaderParser.ConcatInfo info = PduHeaderParser.parseConcat(pdu(0x00, 0x2A, 3, 2, "b"));
+        assertNotNull(info);
+        assertEquals(0x2A, info.reference);
+        assertEquals(3, info.total);
+        assertEquals(2, info.sequence);
+
+        info = PduHeaderParser.parseConcat(pdu(0x08, 0x1234, 2, 1, "a"));
+        assertNotNull(info);
+        assertEquals(0x1234, info.reference);
+        assertEquals(2, info.total);
+        assertEquals(1, info.sequence);
+    }
+
+    @Test
+    public void singlePartAndMalformedPdusHaveNoConcatInfo() {
+        byte[] plain = pdu(0x00, 1, 2, 1, "a");
+        plain[1] = 0x04; // UDHI biti yok
+        assertNull(PduHeaderParser.parseConcat(plain));
+
+        // Sıra numarası toplamdan büyük
+        assertNull(PduHeaderParser.parseConcat(pdu(0x00, 1, 2, 3, "a")));
+
+        byte[] full = pdu(0x00, 1, 2, 1, "a");
+        byte[] truncated = new byte[20];
+        System.arraycopy(full, 0, truncated, 0, truncated.length);
+        assertNull(PduHeaderParser.parseConcat(truncated));
+    }
+
+    @Test
+    public void outOfOrderSegmentsAreJoinedInSequence() {
+        SegmentReassembler reassembler = new SegmentReassembler();
+        assertNull(add(reassembler, 1, pdu(0x00, 7, 3, 3, "ci"), "ci", 100));
+        assertNull(add(reassembler, 1, pdu(0x00, 7, 3, 1, "a"), "Mesaj ", 200));
+        assertTrue(reassembler.hasPending());
+
+        String text = add(reassembler, 1, pdu(0x00, 7, 3, 2, "b"), "34ABC123 plakali ara", 300);
+        assertEquals("Mesaj 34ABC123 plakali araci", text);
+        assertFalse(reassembler.hasPending());
+    }
+
+    @Test
+    public void duplicateSegmentIsIgnored() {
+        SegmentReassembler reassembler = new SegmentReassembler();
+        assertNull(add(reassembler, 1, pdu(0x00, 7, 2, 1, "a"), "ilk ", 100));
+        // Ağ aynı segmenti iki kez teslim etti; ilk gelen korunur, grup tamamlanmaz
+        assertNull(add(reassembler, 1, pdu(0x00, 7, 2, 1, "a"), "kopya ", 150));
+        assertEquals("ilk son", add(reassembler, 1, pdu(0x00, 7, 2, 2, "b"), "son", 200));
+    }
+
+    @Test
+    public void interleavedMessagesAreKeptApart() {
+        SegmentReassembler reassembler = new SegmentReassembler();
+        // Aynı referans farklı SIM'den, farklı referans aynı SIM'den
+        assertNull(add(reassembler, 1, pdu(0x00, 7, 2, 2, "b"), "A2", 100));
+        assertNull(add(reassembler, 2, pdu(0x00, 7, 2, 1, "a"), "B1", 110));
+        assertNull(add(reassembler, 1, pdu(0x00, 8, 2, 1, "a"), "C1", 120));
+
+        assertEquals("B1B2", add(reassembler, 2, pdu(0x00, 7, 2, 2, "b"), "B2", 130));
+        assertEquals("C1C2", add(reassembler, 1, pdu(0x00, 8, 2, 2, "b"), "C2", 140));
+        assertEquals("A1A2", add(reassembler, 1, pdu(0x00, 7, 2, 1, "a"), "A1", 150));
+        assertFalse(reassembler.hasPending());
+    }
+
+    @Test
+    public void incompleteGroupIsFlushedAfterMaxAge() {
+        SegmentReassembler reassembler = new SegmentReassembler();
+        add(reassembler, 3, pdu(0x00, 9, 3, 1, "a"), "bas ", 1000);
+        add(reassembler, 3, pdu(0x00, 9, 3, 3, "c"), "son", 1500);
+
+        List<String> flushed = new ArrayList<>();
+        assertEquals(0, reassembler.expire(5999, 5000, (sub, text, firstAt) -> flushed.add(text)));
+        assertEquals(1, reassembler.expire(6000, 5000, (sub, text, firstAt) -> {
+            assertEquals(3, sub);
+            assertEquals(1000, firstAt);
+            flushed.add(text);
+        }));
+        assertEquals("bas son", flushed.get(0));
+        assertFalse(reassembler.hasPending());
+    }
+
+    @Test
+    public void bodyWithoutConcatInfoPassesThrough() {
+        assertEquals("tek", new SegmentReassembler().add(SENDER, 1, null, "tek", 0));
+    }
+
+    private static String add(SegmentReassembler reassembler, int sub, byte[] pdu, String body, long now) {
+        return reassembler.add(SENDER, sub, PduHeaderParser.parseConcat(pdu), body, now);
+    }
+
+    // SMSC'siz, 8 bit veri kodlamalı SMS-DELIVER; UDH'de tek birleştirme öğesi
+    private static byte[] pdu(int iei, int reference, int total, int sequence, String data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x00);                      // SMSC uzunluğu
+        out.write(0x44);                      // SMS-DELIVER + UDHI
+        out.write(4);                         // adres hane sayısı
+        out.write(0x81);                      // adres türü
+        out.write(0x65);
+        out.write(0x46);                      // "5664"
+        out.write(0x00);                      // PID
+        out.write(0x04);                      // DCS: 8 bit
+        for (int i = 0; i < 7; i++) {
+            out.write(0x00);                  // zaman damgası
+        }
+        byte[] header = iei == 0x08
+                ? new byte[] {0x08, 4, (byte) (reference >> 8), (byte) reference, (byte) total, (byte) sequence}
+                : new byte[] {0x00, 3, (byte) reference, (byte) total, (byte) sequence};
+        byte[] payload = data.getBytes(StandardCharsets.US_ASCII);
+        out.write(1 + header.length + payload.length); // UDL
+        out.write(header.length);
+        out.write(header, 0, header.length);
+        out.write(payload, 0, payload.length);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,107 @@
+package com.smsrelay.core;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Bellek içi backend: /api/queries/pending-5664 ile aynı biçimde bekleyen
+// sorgu listesi verir (since imleci + limit) ve sonuç bildirimlerini kaydeder.
+// Sorgular önceden belirlenen zamanlarda yayınlanır.
+class SimulatedBackend {
+    static final String URL = "http://backend.sim";
+
+    // Backend'in gözünden bir sorgu ve başına gelenler
+    static class Query {
+        final String id;
+        final String plate;
+        final String phone;
+        final long publishedAt;
+        int dispatches = 0;
+        int reports = 0;
+        String status = null;
+        long reportedAt = 0;
+        // Kullanıcıya giden "Mesaj (n/m)" içerikli SMS sayısı
+        int replies = 0;
+        int otherMessages = 0;
+
+        Query(String id, String plate, String phone, long publishedAt) {
+            this.id = id;
+            this.plate = plate;
+            this.phone = phone;
+            this.publishedAt = publishedAt;
+        }
+    }
+
+    private final List<Query> queries = new ArrayList<>();
+    private final Map<String, Query> byId = new HashMap<>();
+    private final Map<String, Query> byPhone = new HashMap<>();
+    private int cursor = 0;
+    private long pendingRequests = 0;
+
+    void publish(String id, String plate, String phone, long at) {
+        Query query = new Query(id, plate, phone, at);
+        queries.add(query);
+        byId.put(id, query);
+        byPhone.put(ReplyText.normalizePhoneNumber(phone), query);
+    }
+
+    List<Query> getQueries() {
+        return queries;
+    }
+
+    Query find(String id) {
+        return byId.get(id);
+    }
+
+    Query findByPhone(String phone) {
+        return byPhone.get(ReplyText.normalizePhoneNumber(phone));
+    }
+
+    long getPendingRequests() {
+        return pendingRequests;
+    }
+
+    // İmleçten sonra yayınlanmış en fazla limit sorgu
+    String pending(long now, int limit) throws IOException {
+        pendingRequests++;
+        StringWriter body = new StringWriter();
+        JsonWriter writer = new JsonWriter(body);
+        writer.beginArray();
+        int count = 0;
+        while (cursor < queries.size() && count < limit && queries.get(cursor).publishedAt <= now) {
+            Query query = queries.get(cursor++);
+            writer.beginObject();
+            writer.name("id").value(query.id);
+            writer.name("sms_message").value(query.plate);
+            writer.name("user_phone").value(query.phone);
+            writer.name("vehicle_id").value(query.plate);
+            writer.endObject();
+            count++;
+        }
+        writer.endArray();
+        writer.close();
+        return body.toString();
+    }
+
+    // Tüm sorgular yayınlandı ve relay'e verildi mi
+    boolean drained() {
+        return cursor >= queries.size();
+    }
+
+    void report(String id, String status, long now) {
+        Query query = byId.get(id);
+        if (query == null) {
+            return;
+        }
+        query.reports++;
+        if (query.status == null) {
+            query.status = status;
+            query.reportedAt = now;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.smsrelay.core;
+
+// Uygulamadaki RelayTimers'ın sanal saat üzerindeki karşılığı: zaman aşımları
+// aynı tick çözünürlüğüyle tek bir TimingWheel'de tutulur.
+class SimulatedTimers implements RelayEngine.Timers {
+    private static final long TICK_MS = 250;
+    private static final int WHEEL_SIZE = 512;
+
+    private final SimulationClock clock;
+    private final TimingWheel wheel;
+    private final Runnable tickRunnable = this::tick;
+    private boolean ticking = false;
+
+    SimulatedTimers(SimulationClock clock) {
+        this.clock = clock;
+        this.wheel = new TimingWheel(TICK_MS, WHEEL_SIZE, KINDS, clock.now());
+    }
+
+    @Override
+    public void schedule(String queryId, int kind, long delay, Runnable task) {
+        wheel.schedule(queryId, kind, clock.now() + delay, task);
+        ensureTicking();
+    }
+
+    @Override
+    public void cancel(String queryId, int kind) {
+        wheel.cancel(queryId, kind);
+    }
+
+    @Override
+    public void cancelAll(String queryId) {
+        wheel.cancelAll(queryId);
+    }
+
+    private void ensureTicking() {
+        if (!ticking && !wheel.isEmpty()) {
+            ticking = true;
+            clock.postAt(tickRunnable, wheel.nextTickAt());
+        }
+    }
+
+    private void tick() {
+        ticking = false;
+        wheel.advanceTo(clock.now());
+        ensureTicking();
+    }
+}
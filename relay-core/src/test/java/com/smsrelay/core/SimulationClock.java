@@ -0,0 +1,76 @@
+package com.smsrelay.core;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+// Simülasyonun sanal saati ve tek thread'li olay döngüsü. Relay thread'indeki
+// Handler'ın yerini tutar: işler zaman + ekleme sırasıyla çalışır, bekleme
+// gerçek zamanda değil olaydan olaya atlanarak geçer.
+class SimulationClock {
+    private static final class Event {
+        final long at;
+        final long sequence;
+        final Runnable task;
+
+        Event(long at, long sequence, Runnable task) {
+            this.at = at;
+            this.sequence = sequence;
+            this.task = task;
+        }
+    }
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>((a, b) -> a.at != b.at
+            ? Long.compare(a.at, b.at) : Long.compare(a.sequence, b.sequence));
+    private long now;
+    private long sequence = 0;
+    private long executed = 0;
+
+    SimulationClock(long start) {
+        this.now = start;
+    }
+
+    long now() {
+        return now;
+    }
+
+    long getExecuted() {
+        return executed;
+    }
+
+    void post(Runnable task) {
+        postAt(task, now);
+    }
+
+    void postDelayed(Runnable task, long delay) {
+        postAt(task, now + Math.max(0, delay));
+    }
+
+    void postAt(Runnable task, long at) {
+        events.add(new Event(Math.max(now, at), sequence++, task));
+    }
+
+    // Handler.removeCallbacks gibi: aynı Runnable'ın bekleyen tüm kayıtları silinir
+    void removeCallbacks(Runnable task) {
+        Iterator<Event> it = events.iterator();
+        while (it.hasNext()) {
+            if (it.next().task == task) {
+                it.remove();
+            }
+        }
+    }
+
+    // Sıradaki olayı çalıştırır; olay kalmadıysa ya da sıradaki olay end'den
+    // sonraysa saat end'e ilerler ve false döner
+    boolean runNext(long end) {
+        Event next = events.peek();
+        if (next == null || next.at > end) {
+            now = Math.max(now, end);
+            return false;
+        }
+        events.poll();
+        now = next.at;
+        executed++;
+        next.task.run();
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package com.smsrelay.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+    private static final long TICK = 100;
+
+    @Test
+    public void runsTaskAtItsDeadlineNotBefore() {
+        TimingWheel wheel = new TimingWheel(TICK, 8, 2, 0);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule("q1", 0, 450, () -> fired.add("q1"));
+        assertTrue(wheel.isScheduled("q1", 0));
+
+        assertEquals(0, wheel.advanceTo(400));
+        assertTrue(fired.isEmpty());
+        assertEquals(1, wheel.advanceTo(500));
+        assertEquals(1, fired.size());
+        assertFalse(wheel.isScheduled("q1", 0));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void pastDeadlineRunsOnNextAdvance() {
+        TimingWheel wheel = new TimingWheel(TICK, 8, 1, 1000);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule("q1", 0, 200, () -> fired.add("q1"));
+        assertEquals(1, wheel.advanceTo(1000));
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void cancelledTaskNeverRuns() {
+        TimingWheel wheel = new TimingWheel(TICK, 8, 2, 0);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule("q1", 0, 300, () -> fired.add("q1/0"));
+        wheel.schedule("q1", 1, 300, () -> fired.add("q1/1"));
+        wheel.schedule("q2", 0, 300, () -> fired.add("q2/0"));
+
+        assertTrue(wheel.cancel("q1", 0));
+        assertFalse(wheel.cancel("q1", 0));
+        wheel.cancelAll("q2");
+        assertEquals(1, wheel.size());
+
+        wheel.advanceTo(1000);
+        assertEquals(1, fired.size());
+        assertEquals("q1/1", fired.get(0));
+    }
+
+    @Test
+    public void reschedulingSameKeyReplacesEarlierTimer() {
+        TimingWheel wheel = new TimingWheel(TICK, 8, 1, 0);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule("q1", 0, 300, () -> fired.add("first"));
+        wheel.schedule("q1", 0, 900, () -> fired.add("second"));
+        assertEquals(1, wheel.size());
+
+        wheel.advanceTo(500);
+        assertTrue(fired.isEmpty());
+        wheel.advanceTo(900);
+        assertEquals(1, fired.size());
+        assertEquals("second", fired.get(0));
+    }
+
+    @Test
+    public void taskCancelledByEarlierTaskInSameTickDoesNotRun() {
+        TimingWheel wheel = new TimingWheel(TICK, 8, 2, 0);
+        List<String> fired = new ArrayList<>();
+        // Aynı tick'te iki görev; hangisi önce çalışırsa diğerini iptal eder
+        wheel.schedule("q1", 0, 250, () -> {
+            fired.add("q1");
+            wheel.cancel("q2", 0);
+        });
+        wheel.schedule("q2", 0, 250, () -> {
+            fired.add("q2");
+            wheel.cancel("q1", 0);
+        });
+
+        assertEquals(1, wheel.advanceTo(300));
+        assertEquals(1, fired.size());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void taskRescheduledByEarlierTaskInSameTickWaitsForNewDeadline() {
+        TimingWheel wheel = new TimingWheel(TICK, 8, 2, 0);
+        List<String> fired = new ArrayList<>();
+        // Dilimde son kurulan başta durur ve önce çalışır
+        wheel.schedule("q1", 1, 250, () -> fired.add("q1/early"));
+        wheel.schedule("q1", 0, 250, () -> {
+            fired.add("q1");
+            wheel.schedule("q1", 1, 800, () -> fired.add("q1/late"));
+        });
+
+        wheel.advanceTo(300);
+        assertEquals(1, fired.size());
+        assertTrue(wheel.isScheduled("q1", 1));
+        wheel.advanceTo(800);
+        assertEquals("q1/late", fired.get(1));
+    }
+
+    @Test
+    public void deadlinesSpanningManyRotationsFireOnTime() {
+        // 8 dilimlik çark: 800ms'lik bir tur; süreler onlarca tur sonrasına düşer
+        TimingWheel wheel = new TimingWheel(TICK, 8, 1, 0);
+        Random random = new Random(7);
+        long[] deadlines = new long[500];
+        long[] firedAt = new long[500];
+        long[] now = {0};
+        for (int i = 0; i < deadlines.length; i++) {
+            int id = i;
+            deadlines[i] = 1 + random.nextInt(60000);
+            wheel.schedule("q" + i, 0, deadlines[i], () -> firedAt[id] = now[0]);
+        }
+
+        // Düzensiz adımlarla ilerlenir; bazı adımlar bir turdan uzundur
+        while (!wheel.isEmpty()) {
+            now[0] += 1 + random.nextInt(2000);
+            wheel.advanceTo(now[0]);
+        }
+
+        for (int i = 0; i < deadlines.length; i++) {
+            long dueTick = (deadlines[i] + TICK - 1) / TICK * TICK;
+            assertTrue("erken: " + i, firedAt[i] >= dueTick);
+            // Görev, tick'ini geçen ilk advanceTo çağrısında çalışır
+            assertTrue("geç: " + i, firedAt[i] - dueTick < 2000 + TICK);
+        }
+    }
+
+    @Test
+    public void tickByTickAdvanceFiresInExactTick() {
+        TimingWheel wheel = new TimingWheel(TICK, 4, 1, 0);
+        long[] firedAt = {-1};
+        wheel.schedule("q1", 0, 12345, () -> firedAt[0] = wheel.nextTickAt());
+        for (long t = 0; t <= 20000 && firedAt[0] < 0; t += TICK) {
+            wheel.advanceTo(t);
+        }
+        // Görev 12400 tick'inde çalıştı; ardından sıradaki tick 12500
+        assertEquals(12500, firedAt[0]);
+    }
+}